@@ -37,6 +37,7 @@ dependencies {
     implementation("com.fasterxml.jackson.core:jackson-databind:2.20.0")
     implementation("com.fasterxml.jackson.core:jackson-core:2.20.0")
     implementation("com.fasterxml.jackson.core:jackson-annotations:3.0-rc5")
+    implementation("com.h2database:h2-mvstore:2.3.232")
     testImplementation("org.junit.jupiter:junit-jupiter-api:${junitVersion}")
     testImplementation("org.junit.jupiter:junit-jupiter-engine:${junitVersion}")
     testRuntimeOnly("org.junit.platform:junit-platform-launcher")
@@ -46,4 +47,17 @@ tasks.withType<Test> {
     useJUnitPlatform()
 }
 
+// Copy saved orders between stores, e.g. ./gradlew migrateStore -Pfrom=json -Pto=mvstore
+tasks.register<JavaExec>("migrateStore") {
+    group = "application"
+    description = "Migrates saved orders between the json and mvstore backends"
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("com.abc.OrderStoreMigration")
+    args = listOf(
+        (project.findProperty("from") ?: "json").toString(),
+        (project.findProperty("to") ?: "mvstore").toString()
+    )
+    workingDir = projectDir
+}
+
 
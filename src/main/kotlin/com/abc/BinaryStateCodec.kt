@@ -0,0 +1,268 @@
+package com.abc
+
+import java.io.ByteArrayOutputStream
+import java.io.IOException
+import java.nio.ByteBuffer
+
+// Compact binary encoding of the order state. Layout (version 1):
+//
+//   "OSB" version:u8
+//   dictionary: count:varint, then count x (length:varint, UTF-8 bytes)
+//   three lists (pending, in progress, completed): count:varint, then per order
+//     id: zigzag varint delta from the previous order's id
+//     type, source, sourceFile: dictionary index + 1 as varint (0 = null)
+//     sourceIndex + 1: varint (0 = null)
+//     order_date: zigzag varint delta from the previous order's date
+//     itemCount + 1: varint (0 = null item list)
+//     per item: name index:varint, quantity:varint, price in cents:varint
+//
+// Item names and sources repeat heavily, so each distinct string is stored once. Order status
+// follows from the list an order is in.
+object BinaryStateCodec {
+    private val MAGIC = byteArrayOf('O'.code.toByte(), 'S'.code.toByte(), 'B'.code.toByte())
+    private const val VERSION: Byte = 1
+    private val STATUSES = listOf(Order.OrderStatus.PENDING, Order.OrderStatus.IN_PROGRESS, Order.OrderStatus.COMPLETED)
+
+    fun isBinary(bytes: ByteArray): Boolean {
+        return bytes.size > MAGIC.size && MAGIC.indices.all { bytes[it] == MAGIC[it] }
+    }
+
+    fun encode(state: OrderPersistence.OrderState): ByteArray {
+        val lists = listOf(state.pendingOrders, state.inProgressOrders, state.completedOrders)
+
+        val dictionary = LinkedHashMap<String, Int>()
+        fun intern(value: String) = dictionary.getOrPut(value) { dictionary.size }
+        lists.forEach { orders ->
+            orders.forEach { order ->
+                order.type?.let(::intern)
+                order.source?.let(::intern)
+                order.sourceFile?.let(::intern)
+                order.items?.forEach { item -> intern(item.name ?: "") }
+            }
+        }
+
+        val out = ByteArrayOutputStream(64 * 1024)
+        out.write(MAGIC)
+        out.write(VERSION.toInt())
+
+        writeVarint(out, dictionary.size.toLong())
+        dictionary.keys.forEach { value ->
+            val bytes = value.toByteArray(Charsets.UTF_8)
+            writeVarint(out, bytes.size.toLong())
+            out.write(bytes)
+        }
+
+        var previousDate = 0L
+        var previousId = 0L
+        for (orders in lists) {
+            writeVarint(out, orders.size.toLong())
+            for (order in orders) {
+                writeVarint(out, zigzag(order.id - previousId))
+                previousId = order.id
+                writeVarint(out, order.type?.let { dictionary.getValue(it) + 1L } ?: 0L)
+                writeVarint(out, order.source?.let { dictionary.getValue(it) + 1L } ?: 0L)
+                writeVarint(out, order.sourceFile?.let { dictionary.getValue(it) + 1L } ?: 0L)
+                writeVarint(out, order.sourceIndex?.let { it + 1L } ?: 0L)
+                writeVarint(out, zigzag(order.order_date - previousDate))
+                previousDate = order.order_date
+
+                val items = order.items
+                writeVarint(out, items?.let { it.size + 1L } ?: 0L)
+                items?.forEach { item ->
+                    writeVarint(out, dictionary.getValue(item.name ?: "").toLong())
+                    writeVarint(out, item.quantity.toLong())
+                    writeVarint(out, item.priceCents)
+                }
+            }
+        }
+        return out.toByteArray()
+    }
+
+    fun decode(bytes: ByteArray): OrderPersistence.OrderState {
+        val decoder = Decoder(bytes)
+        val lists = STATUSES.map { status -> List(decoder.readVarint().toInt()) { decoder.readOrder(status, lazyItems = false) } }
+        return OrderPersistence.OrderState(lists[0], lists[1], lists[2])
+    }
+
+    // Pending and in-progress orders are decoded right away. Completed orders come back as a
+    // PagedOrderList decoded page by page from bytes, with items decoded when first used; a
+    // pass over them only notes where each page starts, sums them up for the list summary and
+    // collects their ids by source file.
+    fun decodeLazily(bytes: ByteArray, pageSize: Int = PagedOrderList.DEFAULT_PAGE_SIZE): OrderPersistence.OrderState {
+        val decoder = Decoder(bytes)
+        val pending = List(decoder.readVarint().toInt()) { decoder.readOrder(Order.OrderStatus.PENDING, lazyItems = false) }
+        val inProgress = List(decoder.readVarint().toInt()) { decoder.readOrder(Order.OrderStatus.IN_PROGRESS, lazyItems = false) }
+
+        val count = decoder.readVarint().toInt()
+        val pageCount = (count + pageSize - 1) / pageSize
+        val pageStarts = IntArray(pageCount)
+        val pageDates = LongArray(pageCount)
+        val pageIds = LongArray(pageCount)
+        var summary = OrderSummary.EMPTY
+        val sourceFiles = HashMap<String, MutableList<Long>>()
+        for (index in 0 until count) {
+            if (index % pageSize == 0) {
+                pageStarts[index / pageSize] = decoder.position
+                pageDates[index / pageSize] = decoder.previousDate
+                pageIds[index / pageSize] = decoder.previousId
+            }
+            decoder.skipOrder()
+            summary += OrderSummary(1, decoder.skippedTotalCents, decoder.skippedUnits)
+            decoder.skippedSourceFile?.let { sourceFiles.getOrPut(it) { ArrayList() }.add(decoder.previousId) }
+        }
+
+        val completed = PagedOrderList(count, pageSize) { offset, limit ->
+            val page = decoder.at(pageStarts[offset / pageSize], pageDates[offset / pageSize], pageIds[offset / pageSize])
+            List(limit) { page.readOrder(Order.OrderStatus.COMPLETED, lazyItems = true) }
+        }
+        completed.summary = summary
+        completed.sourceFiles = sourceFiles
+        return OrderPersistence.OrderState(pending, inProgress, completed)
+    }
+
+    private class Decoder private constructor(
+        private val bytes: ByteArray,
+        private val input: ByteBuffer,
+        dictionary: Array<String>?,
+        var previousDate: Long,
+        var previousId: Long
+    ) {
+        val dictionary: Array<String> = dictionary ?: readDictionary()
+
+        val position: Int
+            get() = input.position()
+
+        // At the start of the state, checking the header
+        constructor(bytes: ByteArray) : this(bytes, header(bytes), null, 0L, 0L)
+
+        // Another decoder over the same state at an order inside it, with the dictionary already read
+        fun at(position: Int, previousDate: Long, previousId: Long): Decoder =
+            Decoder(bytes, ByteBuffer.wrap(bytes).position(position), dictionary, previousDate, previousId)
+
+        private fun readDictionary(): Array<String> = Array(readVarint().toInt()) {
+            val length = readVarint().toInt()
+            val value = String(bytes, input.position(), length, Charsets.UTF_8)
+            input.position(input.position() + length)
+            value
+        }
+
+        private fun lookup(index: Long): String? = if (index == 0L) null else dictionary[(index - 1).toInt()]
+
+        private fun readId(): Long {
+            previousId += unzigzag(readVarint())
+            return previousId
+        }
+
+        private fun readSourceIndex(): Int? {
+            val index = readVarint()
+            return if (index == 0L) null else (index - 1).toInt()
+        }
+
+        fun readOrder(status: Order.OrderStatus, lazyItems: Boolean): Order {
+            val id = readId()
+            val type = lookup(readVarint())
+            val source = lookup(readVarint())
+            val sourceFile = lookup(readVarint())
+            val sourceIndex = readSourceIndex()
+            previousDate += unzigzag(readVarint())
+
+            val itemCount = readVarint().toInt()
+            val items = when {
+                itemCount == 0 -> null
+                lazyItems -> {
+                    val start = input.position()
+                    skipItems(itemCount - 1)
+                    LazyItemList(itemCount - 1, skippedTotalCents, skippedUnits) {
+                        at(start, 0L, 0L).readItems(itemCount - 1)
+                    }
+                }
+                else -> readItems(itemCount - 1)
+            }
+
+            return Order(type, previousDate, items, source, status).also {
+                it.id = id
+                it.sourceFile = sourceFile
+                it.sourceIndex = sourceIndex
+            }
+        }
+
+        fun readItems(count: Int): List<Item> = List(count) {
+            val name = dictionary[readVarint().toInt()]
+            val quantity = readVarint().toInt()
+            Item.ofCents(name, quantity, readVarint())
+        }
+
+        // Source file of the order last skipped
+        var skippedSourceFile: String? = null
+            private set
+
+        // Step over an order, keeping the running date and id
+        fun skipOrder() {
+            readId()
+            repeat(2) { readVarint() }
+            skippedSourceFile = lookup(readVarint())
+            readSourceIndex()
+            previousDate += unzigzag(readVarint())
+            val itemCount = readVarint().toInt()
+            skipItems(maxOf(itemCount - 1, 0))
+        }
+
+        // Total in cents and units of the items last skipped (summed like Order.totalCents)
+        var skippedTotalCents = 0L
+            private set
+        var skippedUnits = 0L
+            private set
+
+        // Step over items, keeping their sums
+        private fun skipItems(count: Int) {
+            var total = 0L
+            var units = 0L
+            repeat(count) {
+                readVarint()
+                val quantity = maxOf(readVarint().toInt(), 0)
+                total += quantity * maxOf(readVarint(), 0L)
+                units += quantity
+            }
+            skippedTotalCents = total
+            skippedUnits = units
+        }
+
+        fun readVarint(): Long = readVarint(input)
+
+        companion object {
+            private fun header(bytes: ByteArray): ByteBuffer {
+                if (!isBinary(bytes)) throw IOException("Not a binary order state")
+                val input = ByteBuffer.wrap(bytes)
+                input.position(MAGIC.size)
+                val version = input.get()
+                if (version != VERSION) throw IOException("Unsupported binary order state version $version")
+                return input
+            }
+        }
+    }
+
+    private fun writeVarint(out: ByteArrayOutputStream, value: Long) {
+        var remaining = value
+        while (remaining and 0x7FL.inv() != 0L) {
+            out.write(((remaining and 0x7F) or 0x80).toInt())
+            remaining = remaining ushr 7
+        }
+        out.write(remaining.toInt())
+    }
+
+    private fun readVarint(input: ByteBuffer): Long {
+        var result = 0L
+        var shift = 0
+        while (true) {
+            val b = input.get().toInt()
+            result = result or ((b and 0x7F).toLong() shl shift)
+            if (b and 0x80 == 0) return result
+            shift += 7
+            if (shift > 63) throw IOException("Malformed varint in binary order state")
+        }
+    }
+
+    private fun zigzag(value: Long): Long = (value shl 1) xor (value shr 63)
+
+    private fun unzigzag(value: Long): Long = (value ushr 1) xor -(value and 1)
+}
@@ -0,0 +1,275 @@
+package com.abc
+
+import com.fasterxml.jackson.databind.DeserializationFeature
+import com.fasterxml.jackson.databind.ObjectMapper
+import java.io.BufferedWriter
+import java.io.Closeable
+import java.io.IOException
+import java.io.InputStream
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+import java.nio.file.StandardOpenOption
+import java.util.concurrent.TimeUnit
+import java.util.zip.GZIPInputStream
+import java.util.zip.GZIPOutputStream
+
+// Canceled orders as rolling NDJSON segments. A cancel is one appended line in the active
+// segment; once that passes segmentMaxBytes it is gzip-compressed and listed in segments.idx
+// with its order count. Readers stream segment by segment, and the counts in the index let a
+// page skip whole segments without opening them. Sealed segments older than retentionDays
+// are dropped when the archive is opened and whenever a segment is sealed (0 keeps everything).
+class CanceledOrderArchive(
+    private val directory: Path,
+    private val segmentMaxBytes: Long = DEFAULT_SEGMENT_BYTES,
+    private val retentionDays: Int = 0
+) : Closeable {
+
+    private data class Segment(val file: Path, val count: Int)
+
+    private val mapper = ObjectMapper().apply {
+        configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+    }
+    private val reader = mapper.readerFor(Order::class.java)
+
+    private val indexPath = directory.resolve(INDEX_FILE)
+    private val sealed = mutableListOf<Segment>()
+    private var activeNumber = 1
+    private var activeCount = 0
+    private var writer: BufferedWriter? = null
+
+    init {
+        open()
+    }
+
+    // Total number of archived orders
+    val size: Int
+        @Synchronized get() = sealed.sumOf { it.count } + activeCount
+
+    // Append orders to the active segment with one write
+    @Synchronized
+    fun append(orders: List<Order>): Boolean {
+        if (orders.isEmpty()) return true
+        return try {
+            val out = writer ?: Files.newBufferedWriter(
+                activePath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND
+            ).also { writer = it }
+            for (order in orders) {
+                out.write(mapper.writeValueAsString(order))
+                out.newLine()
+            }
+            out.flush()
+            activeCount += orders.size
+
+            if (Files.size(activePath()) >= segmentMaxBytes) {
+                roll()
+            }
+            true
+        } catch (e: IOException) {
+            System.err.println("Error appending to canceled orders archive: ${e.message}")
+            false
+        }
+    }
+
+    // Stream every archived order, oldest first
+    @Synchronized
+    fun forEach(consumer: (Order) -> Unit) {
+        page(0, Int.MAX_VALUE, consumer)
+    }
+
+    // Stream up to limit orders starting at offset (oldest first)
+    @Synchronized
+    fun page(offset: Int, limit: Int, consumer: (Order) -> Unit) {
+        writer?.flush()
+        var skip = offset
+        var remaining = limit
+
+        val segments = sealed + Segment(activePath(), activeCount)
+        for (segment in segments) {
+            if (remaining <= 0) break
+            // Whole segment before the page: skip it using the indexed count
+            if (skip >= segment.count) {
+                skip -= segment.count
+                continue
+            }
+            if (!Files.exists(segment.file)) continue
+
+            openSegment(segment.file).bufferedReader().use { lines ->
+                for (line in lines.lineSequence()) {
+                    if (remaining <= 0) break
+                    if (line.isBlank()) continue
+                    if (skip > 0) {
+                        skip--
+                        continue
+                    }
+
+                    val order = try {
+                        reader.readValue<Order>(line)
+                    } catch (e: Exception) {
+                        // A torn line from a crash mid-append; the records around it are intact
+                        System.err.println("Skipping unreadable canceled order in ${segment.file}: ${e.message}")
+                        continue
+                    }
+                    consumer(order)
+                    remaining--
+                }
+            }
+        }
+    }
+
+    // Start a run of appends that can be undone with rollBack: the active segment is sealed, so
+    // everything appended from here on is in segments numbered from the returned mark
+    @Synchronized
+    fun mark(): Int {
+        if (activeCount > 0) roll()
+        return activeNumber
+    }
+
+    // Drop every segment from mark on, leaving the archive as it was when mark was called
+    @Synchronized
+    fun rollBack(mark: Int) {
+        closeWriter()
+        val dropped = sealed.filter { numberOf(it.file) >= mark }
+        sealed.removeAll(dropped)
+        writeIndex()
+        dropped.forEach { Files.deleteIfExists(it.file) }
+        Files.list(directory).use { files ->
+            files.filter { it.fileName.toString().matches(Regex("segment-\\d+\\.ndjson")) && numberOf(it) >= mark }.toList()
+        }.forEach { Files.deleteIfExists(it) }
+        activeNumber = mark
+        activeCount = 0
+    }
+
+    @Synchronized
+    fun clear() {
+        closeWriter()
+        (sealed.map { it.file } + activePath() + indexPath).forEach { Files.deleteIfExists(it) }
+        sealed.clear()
+        activeNumber = 1
+        activeCount = 0
+    }
+
+    @Synchronized
+    override fun close() {
+        closeWriter()
+    }
+
+    private fun open() {
+        Files.createDirectories(directory)
+
+        if (Files.exists(indexPath)) {
+            Files.readAllLines(indexPath).forEach { line ->
+                val parts = line.split('\t')
+                if (parts.size == 2) {
+                    val file = directory.resolve(parts[0])
+                    if (Files.exists(file)) {
+                        sealed.add(Segment(file, parts[1].toIntOrNull() ?: 0))
+                    }
+                }
+            }
+        }
+
+        if (applyRetention()) {
+            writeIndex()
+        }
+
+        // The active segment is the newest uncompressed one; a crash mid-roll can leave
+        // the uncompressed copy of a segment that is already indexed, which is removed here
+        val indexedNumbers = sealed.map { numberOf(it.file) }.toSet()
+        val uncompressed = Files.list(directory).use { files ->
+            files.filter { it.fileName.toString().matches(Regex("segment-\\d+\\.ndjson")) }.toList()
+        }.sortedBy { numberOf(it) }
+
+        for (file in uncompressed) {
+            if (numberOf(file) in indexedNumbers) Files.delete(file)
+        }
+
+        val maxSealed = indexedNumbers.maxOrNull() ?: 0
+        val active = uncompressed.lastOrNull { numberOf(it) !in indexedNumbers }
+        activeNumber = maxOf(active?.let { numberOf(it) } ?: 0, maxSealed + 1)
+        activeCount = 0
+        if (Files.exists(activePath())) {
+            activeCount = countLines(activePath())
+            terminateLastLine(activePath())
+        }
+    }
+
+    // A crash mid-append can leave a partial last line; start the next record on a fresh one
+    private fun terminateLastLine(file: Path) {
+        FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE).use { channel ->
+            val size = channel.size()
+            if (size == 0L) return
+            val last = ByteBuffer.allocate(1)
+            channel.read(last, size - 1)
+            if (last.get(0) != '\n'.code.toByte()) {
+                channel.write(ByteBuffer.wrap(byteArrayOf('\n'.code.toByte())), size)
+            }
+        }
+    }
+
+    // Compress the active segment, add it to the index and start the next one
+    private fun roll() {
+        closeWriter()
+        val source = activePath()
+        val target = directory.resolve("${source.fileName}.gz")
+        val tmp = directory.resolve("${source.fileName}.gz.tmp")
+
+        GZIPOutputStream(Files.newOutputStream(tmp)).use { out -> Files.copy(source, out) }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+        sealed.add(Segment(target, activeCount))
+        applyRetention()
+        writeIndex()
+        Files.delete(source)
+
+        activeNumber++
+        activeCount = 0
+    }
+
+    // True if segments were dropped
+    private fun applyRetention(): Boolean {
+        if (retentionDays <= 0) return false
+        val cutoff = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(retentionDays.toLong())
+        return sealed.removeIf { segment ->
+            val expired = Files.getLastModifiedTime(segment.file).toMillis() < cutoff
+            if (expired) Files.deleteIfExists(segment.file)
+            expired
+        }
+    }
+
+    private fun writeIndex() {
+        val tmp = directory.resolve("$INDEX_FILE.tmp")
+        Files.write(tmp, sealed.map { "${it.file.fileName}\t${it.count}" })
+        Files.move(tmp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+    }
+
+    private fun openSegment(file: Path): InputStream {
+        val input = Files.newInputStream(file)
+        return if (file.fileName.toString().endsWith(".gz")) GZIPInputStream(input, 64 * 1024) else input
+    }
+
+    private fun countLines(file: Path): Int {
+        return Files.newBufferedReader(file).use { lines -> lines.lineSequence().count { it.isNotBlank() } }
+    }
+
+    private fun activePath(): Path = directory.resolve("segment-%06d.ndjson".format(activeNumber))
+
+    private fun numberOf(file: Path): Int {
+        return file.fileName.toString().removePrefix("segment-").substringBefore('.').toIntOrNull() ?: 0
+    }
+
+    private fun closeWriter() {
+        try {
+            writer?.close()
+        } catch (e: IOException) {
+            System.err.println("Error closing canceled orders archive: ${e.message}")
+        }
+        writer = null
+    }
+
+    companion object {
+        private const val INDEX_FILE = "segments.idx"
+        const val DEFAULT_SEGMENT_BYTES = 8L * 1024 * 1024
+    }
+}
@@ -0,0 +1,95 @@
+package com.abc
+
+import java.io.Closeable
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.Semaphore
+import java.util.concurrent.TimeUnit
+
+// Debounces watcher events per path and only hands a file on once it has stopped changing:
+// its size and mtime must be the same at the end of a quiet period as at the start. Ready
+// files are processed on virtual threads, so a burst of drops costs roughly one quiet period
+// plus the parse time instead of a fixed sleep per event on the watcher thread.
+class FileEventCoalescer(
+    private val quietPeriodMs: Long,
+    maxInFlight: Int,
+    private val onReady: (Path) -> Unit
+) : Closeable {
+
+    private data class Stamp(val size: Long, val lastModified: Long)
+
+    private class Pending(@Volatile var stamp: Stamp?, @Volatile var future: ScheduledFuture<*>?)
+
+    private val pending = ConcurrentHashMap<Path, Pending>()
+    private val permits = Semaphore(maxOf(maxInFlight, 1))
+    private val workers = Executors.newVirtualThreadPerTaskExecutor()
+    private val timer = Executors.newSingleThreadScheduledExecutor { runnable ->
+        Thread(runnable, "Order-File-Debounce").apply { isDaemon = true }
+    }
+
+    // Files waiting for their quiet period to pass
+    val pendingCount: Int
+        get() = pending.size
+
+    // Record an event for the path; restarts its quiet period
+    fun submit(path: Path) {
+        pending.compute(path) { _, entry ->
+            val current = entry ?: Pending(null, null)
+            current.future?.cancel(false)
+            current.stamp = stampOf(path)
+            current.future = timer.schedule({ settle(path) }, quietPeriodMs, TimeUnit.MILLISECONDS)
+            current
+        }
+    }
+
+    // Quiet period over: dispatch if the file is unchanged, otherwise wait another period
+    private fun settle(path: Path) {
+        var ready = false
+        pending.computeIfPresent(path) { _, entry ->
+            val now = stampOf(path)
+            when {
+                now == null -> null // deleted before it settled
+                now == entry.stamp -> {
+                    ready = true
+                    null
+                }
+                else -> {
+                    entry.stamp = now
+                    entry.future = timer.schedule({ settle(path) }, quietPeriodMs, TimeUnit.MILLISECONDS)
+                    entry
+                }
+            }
+        }
+
+        if (ready) {
+            workers.execute {
+                permits.acquire()
+                try {
+                    onReady(path)
+                } catch (e: Exception) {
+                    System.err.println("Error processing $path: ${e.message}")
+                } finally {
+                    permits.release()
+                }
+            }
+        }
+    }
+
+    override fun close() {
+        timer.shutdownNow()
+        workers.shutdown()
+        pending.clear()
+    }
+
+    private fun stampOf(path: Path): Stamp? {
+        return try {
+            Stamp(Files.size(path), Files.getLastModifiedTime(path).toMillis())
+        } catch (e: IOException) {
+            null
+        }
+    }
+}
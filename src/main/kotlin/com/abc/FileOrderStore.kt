@@ -0,0 +1,272 @@
+package com.abc
+
+import com.fasterxml.jackson.core.JsonToken
+import com.fasterxml.jackson.databind.DeserializationFeature
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.databind.SerializationFeature
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+
+// The file-based store. Each status list is a crash-safe snapshot (JSON or binary, see
+// OrderPersistence.stateFormat) in orders_state/, named after the save that wrote it, and the
+// manifest there names the current file of each list. A save writes new files for the changed
+// lists only and then replaces the manifest, so the files always form one consistent state.
+// Canceled orders are in the segmented archive under canceled_orders/.
+class FileOrderStore(private val directory: Path) : OrderStore {
+
+    override val name = "json"
+
+    private val mapper = ObjectMapper().apply {
+        configure(SerializationFeature.INDENT_OUTPUT, true)
+        configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+    }
+
+    init {
+        Files.createDirectories(directory.toAbsolutePath())
+    }
+
+    private val stateDirectory = directory.resolve(STATE_DIR)
+
+    // Written via temp file + rename with a checksum trailer; the previous generation is kept,
+    // and with it the list files it names
+    private val manifest = SnapshotFile(stateDirectory.resolve(MANIFEST_FILE))
+    private val stateLock = Any()
+    private var lastSyncMillis = 0L
+
+    // Single-file state from before the lists were split; read until the first save replaces it
+    private val legacyStateFile = SnapshotFile(directory.resolve(PERSISTENCE_FILE))
+
+    private data class Manifest(val generation: Long, val files: Map<Order.OrderStatus, String>)
+
+    // Segmented canceled-orders archive; opened (and the legacy file migrated) on first use
+    private var canceledOrders: CanceledOrderArchive? = null
+    private val canceledLock = Any()
+
+    override fun saveState(state: OrderPersistence.OrderState) {
+        saveState(state, Order.OrderStatus.entries.toSet())
+    }
+
+    override fun saveState(state: OrderPersistence.OrderState, changed: Set<Order.OrderStatus>) {
+        synchronized(stateLock) {
+            val current = readManifest()
+            val generation = (current?.generation ?: 0) + 1
+            val files = HashMap(current?.files ?: emptyMap())
+            val sync = syncThisSave()
+
+            Files.createDirectories(stateDirectory)
+            for (status in Order.OrderStatus.entries) {
+                if (status in changed || status !in files) {
+                    val name = "${status.name.lowercase()}-%06d".format(generation)
+                    SnapshotFile(stateDirectory.resolve(name)).write(encode(status, ordersOf(state, status)), sync)
+                    files[status] = name
+                }
+            }
+            val lines = listOf("generation=$generation") + files.map { (status, name) -> "${status.name}=$name" }
+            manifest.write(lines.joinToString("\n").toByteArray(Charsets.UTF_8), sync)
+
+            deleteUnreferenced(files.values + (current?.files?.values ?: emptyList()))
+            retireLegacyState("Order state moved to $STATE_DIR/")
+        }
+    }
+
+    // One list as a state file with the other two lists empty, so both codecs are reused as they are
+    private fun encode(status: Order.OrderStatus, orders: List<Order>): ByteArray {
+        val partition = when (status) {
+            Order.OrderStatus.PENDING -> OrderPersistence.OrderState(pendingOrders = orders)
+            Order.OrderStatus.IN_PROGRESS -> OrderPersistence.OrderState(inProgressOrders = orders)
+            Order.OrderStatus.COMPLETED -> OrderPersistence.OrderState(completedOrders = orders)
+        }
+        return when (OrderPersistence.stateFormat) {
+            OrderPersistence.StateFormat.JSON -> mapper.writeValueAsBytes(partition)
+            OrderPersistence.StateFormat.BINARY -> BinaryStateCodec.encode(partition)
+        }
+    }
+
+    private fun ordersOf(state: OrderPersistence.OrderState, status: Order.OrderStatus): List<Order> = when (status) {
+        Order.OrderStatus.PENDING -> state.pendingOrders
+        Order.OrderStatus.IN_PROGRESS -> state.inProgressOrders
+        Order.OrderStatus.COMPLETED -> state.completedOrders
+    }
+
+    // Whether this save is fsynced, decided once for the whole save so the lists and the manifest
+    // sync together; BATCHED syncs at most once per fsyncBatchIntervalMs
+    private fun syncThisSave(): Boolean {
+        return when (OrderPersistence.durability) {
+            OrderPersistence.Durability.ALWAYS -> true
+            OrderPersistence.Durability.NEVER -> false
+            OrderPersistence.Durability.BATCHED -> {
+                val now = System.currentTimeMillis()
+                (now - lastSyncMillis >= OrderPersistence.fsyncBatchIntervalMs).also { if (it) lastSyncMillis = now }
+            }
+        }
+    }
+
+    // Drop list files neither the new nor the previous manifest names (and temp files of a crashed save)
+    private fun deleteUnreferenced(keep: Collection<String>) {
+        Files.list(stateDirectory).use { files -> files.toList() }.forEach { file ->
+            val name = file.fileName.toString()
+            if (!name.startsWith(MANIFEST_FILE) && name.substringBefore('.') !in keep) {
+                Files.deleteIfExists(file)
+            }
+        }
+    }
+
+    // The single-file state is never deleted: its newest complete generation is kept as
+    // orders_state.json.migrated, and only the leftover temp and previous files go
+    private fun retireLegacyState(message: String) {
+        if (!legacyStateFile.exists()) return
+        val legacy = directory.resolve(PERSISTENCE_FILE)
+        val newest = listOf(legacy, legacy.resolveSibling("$PERSISTENCE_FILE.prev")).firstOrNull { Files.exists(it) }
+        if (newest != null) {
+            Files.move(newest, legacy.resolveSibling("$PERSISTENCE_FILE.migrated"), StandardCopyOption.REPLACE_EXISTING)
+            println(message)
+        }
+        legacyStateFile.delete()
+    }
+
+    override fun loadState(): OrderPersistence.OrderState? = load(lazy = false)
+
+    // Binary snapshots page their completed orders; JSON ones have to be parsed in full
+    override fun loadStateLazily(): OrderPersistence.OrderState? = load(lazy = true)
+
+    // The lists of the newest manifest whose files all read back; if one doesn't, the previous
+    // manifest and its files are used instead
+    private fun load(lazy: Boolean): OrderPersistence.OrderState? {
+        synchronized(stateLock) {
+            if (!manifest.exists()) {
+                return legacyStateFile.read { decodeState(it, lazy) }
+            }
+            return manifest.read { content ->
+                val files = parseManifest(content).files
+                val lists = Order.OrderStatus.entries.associateWith { status ->
+                    val name = files[status] ?: return@associateWith emptyList()
+                    val partition = SnapshotFile(stateDirectory.resolve(name)).read { decodeState(it, lazy) }
+                        ?: throw IOException("$name is missing or damaged")
+                    ordersOf(partition, status)
+                }
+                OrderPersistence.OrderState(
+                    lists.getValue(Order.OrderStatus.PENDING),
+                    lists.getValue(Order.OrderStatus.IN_PROGRESS),
+                    lists.getValue(Order.OrderStatus.COMPLETED)
+                )
+            }
+        }
+    }
+
+    // Either format loads whatever the configured format, so switching is transparent both ways
+    private fun decodeState(content: ByteArray, lazy: Boolean): OrderPersistence.OrderState {
+        return when {
+            !BinaryStateCodec.isBinary(content) -> mapper.readValue(content, OrderPersistence.OrderState::class.java)
+            lazy -> BinaryStateCodec.decodeLazily(content)
+            else -> BinaryStateCodec.decode(content)
+        }
+    }
+
+    private fun readManifest(): Manifest? = manifest.read(::parseManifest)
+
+    private fun parseManifest(content: ByteArray): Manifest {
+        val entries = String(content, Charsets.UTF_8).lines().filter { '=' in it }
+            .associate { it.substringBefore('=') to it.substringAfter('=') }
+        val files = Order.OrderStatus.entries.mapNotNull { status -> entries[status.name]?.let { status to it } }.toMap()
+        return Manifest(entries["generation"]?.toLongOrNull() ?: throw IOException("Manifest has no generation"), files)
+    }
+
+    override fun hasState(): Boolean = manifest.exists() || legacyStateFile.exists()
+
+    override fun clearState() {
+        synchronized(stateLock) {
+            if (Files.exists(stateDirectory)) {
+                Files.list(stateDirectory).use { files -> files.toList() }.forEach { Files.deleteIfExists(it) }
+            }
+            retireLegacyState("Order state cleared; $PERSISTENCE_FILE kept as $PERSISTENCE_FILE.migrated")
+        }
+    }
+
+    override fun appendCanceled(orders: List<Order>) {
+        if (!canceledArchive().append(orders)) {
+            throw IOException("Could not append to the canceled orders archive")
+        }
+    }
+
+    override fun forEachCanceled(offset: Int, limit: Int, consumer: (Order) -> Unit) {
+        canceledArchive().page(offset, limit, consumer)
+    }
+
+    override fun canceledCount(): Int = canceledArchive().size
+
+    override fun clearCanceled() {
+        canceledArchive().clear()
+        Files.deleteIfExists(directory.resolve(CANCELED_ORDERS_FILE))
+    }
+
+    override fun close() {
+        synchronized(canceledLock) {
+            canceledOrders?.close()
+            canceledOrders = null
+        }
+    }
+
+    private fun canceledArchive(): CanceledOrderArchive {
+        synchronized(canceledLock) {
+            return canceledOrders ?: CanceledOrderArchive(
+                directory.resolve(CANCELED_ORDERS_DIR),
+                retentionDays = OrderPersistence.canceledRetentionDays
+            ).also {
+                canceledOrders = it
+                migrateLegacyCanceledOrders(it)
+            }
+        }
+    }
+
+    // Move the old single-array canceledOrders.json into the segmented archive, streaming it in
+    // chunks. The original is kept next to it as canceledOrders.json.migrated; once that exists a
+    // canceledOrders.json that turns up again (a checkout restoring it) isn't migrated twice.
+    private fun migrateLegacyCanceledOrders(archive: CanceledOrderArchive) {
+        val legacy = directory.resolve(CANCELED_ORDERS_FILE)
+        if (!Files.exists(legacy)) {
+            return
+        }
+        if (Files.exists(legacy.resolveSibling("$CANCELED_ORDERS_FILE.migrated"))) {
+            System.err.println("$CANCELED_ORDERS_FILE was already migrated to $CANCELED_ORDERS_DIR/, leaving it alone")
+            return
+        }
+
+        // Orders already archived stay; a failed run only takes back what it appended
+        val mark = archive.mark()
+        try {
+            var migrated = 0
+            val chunk = mutableListOf<Order>()
+            mapper.factory.createParser(legacy.toFile()).use { parser ->
+                if (parser.nextToken() == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        chunk.add(mapper.readValue(parser, Order::class.java))
+                        if (chunk.size == 1000) {
+                            if (!archive.append(chunk)) throw IOException("archive append failed")
+                            migrated += chunk.size
+                            chunk.clear()
+                        }
+                    }
+                }
+            }
+            if (!archive.append(chunk)) throw IOException("archive append failed")
+            migrated += chunk.size
+
+            Files.move(legacy, legacy.resolveSibling("$CANCELED_ORDERS_FILE.migrated"))
+            println("Migrated $migrated canceled orders to $CANCELED_ORDERS_DIR/")
+        } catch (e: Exception) {
+            // Start over next time rather than keep a partial copy next to the original
+            System.err.println("Error migrating $CANCELED_ORDERS_FILE: ${e.message}")
+            archive.rollBack(mark)
+        }
+    }
+
+    companion object {
+        private const val PERSISTENCE_FILE = "orders_state.json"
+        private const val STATE_DIR = "orders_state"
+        private const val MANIFEST_FILE = "manifest"
+        private const val CANCELED_ORDERS_FILE = "canceledOrders.json"
+        private const val CANCELED_ORDERS_DIR = "canceled_orders"
+    }
+}
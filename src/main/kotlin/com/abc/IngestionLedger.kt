@@ -0,0 +1,325 @@
+package com.abc
+
+import java.io.Closeable
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+import java.nio.file.StandardOpenOption
+import java.security.MessageDigest
+
+// Persistent record of what has been ingested: upload file identities (path + size + mtime),
+// file content hashes and order fingerprints, all kept as 128-bit keys in an on-disk
+// open-addressing hash table. The only thing held in memory is a Bloom filter of
+// bloomBitsPerSlot bits per table slot (an eighth of the table file by default), rebuilt when
+// the table grows, that answers most "never seen" lookups without touching the disk. A restart
+// knows exactly which uploads were already imported once sync has run after recording them.
+class IngestionLedger(
+    private val path: Path,
+    private val bloomBitsPerSlot: Int = DEFAULT_BLOOM_BITS_PER_SLOT
+) : Closeable {
+
+    data class Key(val high: Long, val low: Long)
+
+    // Result of checking an upload file. known = the ledger already has this identity or content.
+    data class FileCheck(val file: Path, val identity: Key?, val content: Key?, val known: Boolean)
+
+    private lateinit var channel: FileChannel
+    private var capacity = 0
+    private var count = 0
+    private var bloomSize = 64
+    private var bloom = LongArray(1)
+    private val slot = ByteBuffer.allocate(SLOT_SIZE)
+
+    init {
+        open()
+    }
+
+    // Number of keys stored on disk
+    val size: Int
+        @Synchronized get() = count
+
+    // Cheap check used before scheduling work: stat + identity lookup, no file read
+    @Synchronized
+    fun hasFile(file: Path): Boolean {
+        val identity = identityOf(file) ?: return false
+        return contains(identity)
+    }
+
+    // Full check: identity first, then a hash of the file bytes. A known hash under a new
+    // identity (copied or touched file) is recorded so the next check is a plain lookup.
+    fun check(file: Path): FileCheck {
+        val identity = identityOf(file) ?: return FileCheck(file, null, null, false)
+        if (synchronized(this) { contains(identity) }) {
+            return FileCheck(file, identity, null, true)
+        }
+
+        // Hash outside the lock so parallel imports don't serialize on file reads
+        val content = contentOf(file) ?: return FileCheck(file, identity, null, false)
+        synchronized(this) {
+            if (contains(content)) {
+                insert(identity)
+                return FileCheck(file, identity, content, true)
+            }
+        }
+        return FileCheck(file, identity, content, false)
+    }
+
+    // Record a successfully ingested file
+    @Synchronized
+    fun recordFile(check: FileCheck) {
+        check.identity?.let { insert(it) }
+        check.content?.let { insert(it) }
+    }
+
+    // Returns true if the fingerprint was new (and is now recorded)
+    @Synchronized
+    fun addOrder(fingerprint: OrderFingerprint): Boolean {
+        return insert(Key(fingerprint.high, fingerprint.low))
+    }
+
+    @Synchronized
+    fun containsOrder(fingerprint: OrderFingerprint): Boolean {
+        return contains(Key(fingerprint.high, fingerprint.low))
+    }
+
+    // Force recorded entries to disk. Called once after recording an ingest, so a crash after its
+    // orders were saved can't drop the entries and have the file ingested again.
+    @Synchronized
+    fun sync() {
+        channel.force(false)
+    }
+
+    @Synchronized
+    fun clear() {
+        channel.close()
+        Files.deleteIfExists(path)
+        open()
+    }
+
+    @Synchronized
+    override fun close() {
+        channel.close()
+    }
+
+    // Table file
+
+    private fun open() {
+        val existing = Files.exists(path) && Files.size(path) >= HEADER_SIZE
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+        count = 0
+
+        if (existing) {
+            val header = ByteBuffer.allocate(HEADER_SIZE)
+            channel.read(header, 0)
+            header.flip()
+            val magic = header.int
+            val storedCapacity = header.int
+            if (magic == MAGIC && storedCapacity > 0 &&
+                Integer.bitCount(storedCapacity) == 1 &&
+                channel.size() == tableSize(storedCapacity)
+            ) {
+                capacity = storedCapacity
+                resetBloom()
+                loadSlots()
+                println("Ingestion ledger loaded: $count entries")
+                return
+            }
+            System.err.println("Ingestion ledger $path is damaged, starting a new one")
+            channel.truncate(0)
+        }
+
+        capacity = INITIAL_CAPACITY
+        resetBloom()
+        initTable(channel, capacity)
+    }
+
+    // Count entries and fill the Bloom filter with one sequential pass over the table
+    private fun loadSlots() {
+        forEachSlot(channel, capacity) { key ->
+            count++
+            bloomAdd(key)
+        }
+    }
+
+    private fun contains(key: Key): Boolean {
+        val stored = storable(key)
+        if (!bloomMightContain(stored)) return false
+        return findSlot(channel, capacity, stored) < 0
+    }
+
+    private fun insert(key: Key): Boolean {
+        val stored = storable(key)
+        if (bloomMightContain(stored) && findSlot(channel, capacity, stored) < 0) {
+            return false
+        }
+
+        if ((count + 1) * 10L > capacity * 7L) {
+            grow()
+        }
+
+        val index = findSlot(channel, capacity, stored)
+        writeSlot(channel, index, stored)
+        count++
+        bloomAdd(stored)
+        return true
+    }
+
+    // Rehash into a table twice the size, written next to the live one and swapped in atomically,
+    // then rebuild the Bloom filter at the new size
+    private fun grow() {
+        val newCapacity = capacity * 2
+        val tmp = path.resolveSibling("${path.fileName}.tmp")
+        FileChannel.open(
+            tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ, StandardOpenOption.WRITE
+        ).use { target ->
+            initTable(target, newCapacity)
+            forEachSlot(channel, capacity) { key ->
+                writeSlot(target, findSlot(target, newCapacity, key), key)
+            }
+            target.force(true)
+        }
+
+        channel.close()
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+        capacity = newCapacity
+        resetBloom()
+        forEachSlot(channel, capacity, ::bloomAdd)
+    }
+
+    private fun initTable(target: FileChannel, tableCapacity: Int) {
+        val header = ByteBuffer.allocate(HEADER_SIZE)
+        header.putInt(MAGIC).putInt(tableCapacity).putLong(0L)
+        header.flip()
+        target.write(header, 0)
+        // Extend to full length; unwritten slots read back as zero (empty)
+        target.write(ByteBuffer.allocate(1), tableSize(tableCapacity) - 1)
+    }
+
+    // Linear probe from the key's home slot. Returns -(index + 1) if found, else the empty slot index.
+    private fun findSlot(target: FileChannel, tableCapacity: Int, key: Key): Int {
+        val mask = tableCapacity - 1
+        var index = (key.low xor (key.low ushr 32)).toInt() and mask
+        while (true) {
+            slot.clear()
+            target.read(slot, HEADER_SIZE + index.toLong() * SLOT_SIZE)
+            slot.flip()
+            val high = slot.long
+            val low = slot.long
+            if (high == 0L && low == 0L) return index
+            if (high == key.high && low == key.low) return -(index + 1)
+            index = (index + 1) and mask
+        }
+    }
+
+    private fun writeSlot(target: FileChannel, index: Int, key: Key) {
+        slot.clear()
+        slot.putLong(key.high).putLong(key.low)
+        slot.flip()
+        target.write(slot, HEADER_SIZE + index.toLong() * SLOT_SIZE)
+    }
+
+    private fun forEachSlot(source: FileChannel, tableCapacity: Int, action: (Key) -> Unit) {
+        val chunk = ByteBuffer.allocate(SLOT_SIZE * 4096)
+        var position = HEADER_SIZE.toLong()
+        val end = tableSize(tableCapacity)
+        while (position < end) {
+            chunk.clear()
+            val read = source.read(chunk, position)
+            if (read <= 0) break
+            chunk.flip()
+            while (chunk.remaining() >= SLOT_SIZE) {
+                val high = chunk.long
+                val low = chunk.long
+                if (high != 0L || low != 0L) action(Key(high, low))
+            }
+            position += read - chunk.remaining()
+        }
+    }
+
+    // Bloom filter (3 probes, double hashing on the two key halves)
+
+    // An empty filter sized for the current table capacity
+    private fun resetBloom() {
+        bloomSize = (capacity.toLong() * bloomBitsPerSlot).coerceIn(64L, Int.MAX_VALUE - 63L).toInt()
+        bloom = LongArray((bloomSize + 63) / 64)
+    }
+
+    private fun bloomAdd(key: Key) {
+        for (i in 0 until BLOOM_PROBES) {
+            val bit = bloomBit(key, i)
+            bloom[bit ushr 6] = bloom[bit ushr 6] or (1L shl (bit and 63))
+        }
+    }
+
+    private fun bloomMightContain(key: Key): Boolean {
+        for (i in 0 until BLOOM_PROBES) {
+            val bit = bloomBit(key, i)
+            if (bloom[bit ushr 6] and (1L shl (bit and 63)) == 0L) return false
+        }
+        return true
+    }
+
+    private fun bloomBit(key: Key, probe: Int): Int {
+        return Math.floorMod(key.high + probe * (key.low or 1L), bloomSize.toLong()).toInt()
+    }
+
+    // Keys
+
+    private fun identityOf(file: Path): Key? {
+        return try {
+            val size = Files.size(file)
+            val modified = Files.getLastModifiedTime(file).toMillis()
+            hash("file\u0000${file.toAbsolutePath().normalize()}\u0000$size\u0000$modified".toByteArray(Charsets.UTF_8))
+        } catch (e: IOException) {
+            null
+        }
+    }
+
+    private fun contentOf(file: Path): Key? {
+        return try {
+            val digest = MessageDigest.getInstance("MD5")
+            digest.update("content\u0000".toByteArray(Charsets.UTF_8))
+            Files.newInputStream(file).use { input ->
+                val buffer = ByteArray(64 * 1024)
+                while (true) {
+                    val read = input.read(buffer)
+                    if (read < 0) break
+                    digest.update(buffer, 0, read)
+                }
+            }
+            toKey(digest.digest())
+        } catch (e: IOException) {
+            null
+        }
+    }
+
+    private fun hash(bytes: ByteArray): Key {
+        return toKey(MessageDigest.getInstance("MD5").digest(bytes))
+    }
+
+    private fun toKey(digest: ByteArray): Key {
+        val buffer = ByteBuffer.wrap(digest)
+        return Key(buffer.long, buffer.long)
+    }
+
+    // All-zero marks an empty slot, so that one key is stored with its low bit set
+    private fun storable(key: Key): Key {
+        return if (key.high == 0L && key.low == 0L) Key(0L, 1L) else key
+    }
+
+    private fun tableSize(tableCapacity: Int): Long = HEADER_SIZE + tableCapacity.toLong() * SLOT_SIZE
+
+    companion object {
+        private const val MAGIC = 0x4F4C4731 // "OLG1"
+        private const val HEADER_SIZE = 16
+        private const val SLOT_SIZE = 16
+        private const val INITIAL_CAPACITY = 1 shl 12
+        private const val BLOOM_PROBES = 3
+        const val DEFAULT_BLOOM_BITS_PER_SLOT = 16
+    }
+}
@@ -2,6 +2,8 @@ package com.abc
 
 import com.fasterxml.jackson.annotation.JsonIgnore
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties
+import com.fasterxml.jackson.annotation.JsonProperty
+import com.fasterxml.jackson.annotation.JsonSetter
 import kotlin.math.max
 
 @JsonIgnoreProperties(ignoreUnknown = true)
@@ -20,30 +22,58 @@ class Item(
             field = max(value, 0)
         }
 
-    var price: Double = max(price, 0.0)
+    // Unit price in whole cents; price is the same amount in dollars, as saved in JSON
+    @get:JsonIgnore
+    var priceCents: Long = Money.fromDouble(max(price, 0.0))
+        set(value) {
+            field = max(value, 0L)
+        }
+
+    // Written as a number; the setter is left out so Jackson reads price through setPriceText
+    @get:JsonProperty("price")
+    var price: Double
+        get() = Money.toDouble(priceCents)
+        @JsonIgnore
         set(value) {
-            field = max(value, 0.0)
+            priceCents = Money.fromDouble(max(value, 0.0))
         }
 
+    // JSON prices are read from their text; only a fraction of a cent goes through a double (see Money)
+    @JsonSetter("price")
+    fun setPriceText(text: String?) {
+        priceCents = text?.takeIf { it.isNotBlank() }?.let(Money::parseCents) ?: 0L
+    }
+
+    @get:JsonIgnore
+    val lineTotalCents: Long
+        get() = quantity * priceCents
+
     @get:JsonIgnore
     val lineTotal: Double
-        get() = quantity * price
+        get() = Money.toDouble(lineTotalCents)
+
+    fun copy(): Item = ofCents(name, quantity, priceCents)
 
     override fun toString(): String {
-        return "Item{name='$name', quantity=$quantity, price=${'$'}%.2f}".format(price)
+        return "Item{name='$name', quantity=$quantity, price=${Money.format(priceCents)}}"
     }
 
     override fun equals(other: Any?): Boolean {
         if (this === other) return true
         if (other == null || javaClass != other.javaClass) return false
         other as Item
-        return name == other.name && quantity == other.quantity && price == other.price
+        return name == other.name && quantity == other.quantity && priceCents == other.priceCents
     }
 
     override fun hashCode(): Int {
         var result = name.hashCode()
         result = 31 * result + quantity
-        result = 31 * result + price.hashCode()
+        result = 31 * result + priceCents.hashCode()
         return result
     }
+
+    companion object {
+        fun ofCents(name: String?, quantity: Int, priceCents: Long): Item =
+            Item(name, quantity).also { it.priceCents = priceCents }
+    }
 }
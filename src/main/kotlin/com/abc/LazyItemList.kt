@@ -0,0 +1,19 @@
+package com.abc
+
+// Items of a lazily loaded order. The count, total and units are read without creating the items;
+// the list itself is decoded on first access (showing the order, editing it, saving it).
+// The decoded items are shared by every copy of the order, like the list it stands in for.
+class LazyItemList(
+    override val size: Int,
+    val totalCents: Long,
+    val units: Long,
+    decode: () -> List<Item>
+) : AbstractList<Item>() {
+
+    private val items = lazy(decode)
+
+    val isMaterialized: Boolean
+        get() = items.isInitialized()
+
+    override fun get(index: Int): Item = items.value[index]
+}
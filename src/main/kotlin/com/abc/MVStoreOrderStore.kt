@@ -0,0 +1,252 @@
+package com.abc
+
+import com.fasterxml.jackson.databind.DeserializationFeature
+import com.fasterxml.jackson.databind.ObjectMapper
+import org.h2.mvstore.MVMap
+import org.h2.mvstore.MVStore
+import java.nio.file.Files
+import java.nio.file.Path
+
+// Embedded store on H2's MVStore: one file, in-process, no server. Each status list is a map
+// from order id to the order's compact JSON, with an index by order date that gives the list
+// its order and answers date range queries; canceled orders are keyed by a running sequence
+// number. A save writes only the orders that changed, lookups and paging are B-tree searches
+// instead of file scans, and appending a cancel never touches older entries.
+class MVStoreOrderStore(path: Path) : OrderStore {
+
+    init {
+        path.toAbsolutePath().parent?.let { Files.createDirectories(it) }
+    }
+
+    override val name = "mvstore"
+
+    private val mapper = ObjectMapper().apply {
+        configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+    }
+
+    private val store: MVStore = MVStore.Builder()
+        .fileName(path.toString())
+        .compress()
+        .open()
+
+    private val lists: Map<Order.OrderStatus, MVMap<Long, String>> = Order.OrderStatus.entries.associateWith {
+        store.openMap<Long, String>("${it.name.lowercase()}.byId")
+    }
+    // Keyed by (order date, order id), so orders of the same date stay apart; the value is the id
+    private val dates: Map<Order.OrderStatus, MVMap<LongArray, Long>> = Order.OrderStatus.entries.associateWith {
+        store.openMap<LongArray, Long>("${it.name.lowercase()}.byDate")
+    }
+    private val canceled: MVMap<Long, String> = store.openMap("canceled")
+    private val meta: MVMap<String, Long> = store.openMap("meta")
+
+    // Keys of the completed orders handed out by the last lazy load, by position. Entries of that
+    // list that still aren't loaded are those orders as stored, so a save skips them.
+    private var lazyCompletedKeys: LongArray? = null
+
+    override fun saveState(state: OrderPersistence.OrderState) {
+        saveState(state, Order.OrderStatus.entries.toSet())
+    }
+
+    @Synchronized
+    override fun saveState(state: OrderPersistence.OrderState, changed: Set<Order.OrderStatus>) {
+        if (Order.OrderStatus.PENDING in changed) writeList(Order.OrderStatus.PENDING, state.pendingOrders)
+        if (Order.OrderStatus.IN_PROGRESS in changed) writeList(Order.OrderStatus.IN_PROGRESS, state.inProgressOrders)
+        if (Order.OrderStatus.COMPLETED in changed) {
+            val summary = writeList(Order.OrderStatus.COMPLETED, state.completedOrders, storedCompletedSummary())
+            writeCompletedSummary(summary)
+        }
+        meta[SAVED_AT] = System.currentTimeMillis()
+        store.commit()
+    }
+
+    // Store the orders whose JSON differs from the stored one and drop the orders no longer in the
+    // list, adjusting summary by each order added, replaced or dropped. Orders without an id
+    // (never ingested) can't be matched to a stored one and are stored under a new key each time.
+    private fun writeList(status: Order.OrderStatus, orders: List<Order>, summary: OrderSummary = OrderSummary.EMPTY): OrderSummary {
+        val byId = lists.getValue(status)
+        val byDate = dates.getValue(status)
+        val paged = (orders as? PagedOrderList)?.takeIf { it.sourceKeys != null && it.sourceKeys === lazyCompletedKeys }
+        val keys = LongArray(orders.size)
+        var result = summary
+
+        for (index in orders.indices) {
+            val position = paged?.sourcePosition(index) ?: -1
+            if (position >= 0) {
+                keys[index] = paged!!.sourceKeys!![position]
+                continue
+            }
+            val order = orders[index]
+            val key = if (order.id != 0L) order.id else OrderIds.next()
+            keys[index] = key
+            val json = mapper.writeValueAsString(order)
+            val previous = byId[key]
+            if (previous == json) continue
+
+            byId[key] = json
+            if (previous != null) {
+                val replaced = parse(previous, status)
+                byDate.remove(dateKey(replaced.order_date, key))
+                result -= replaced
+            }
+            byDate[dateKey(order.order_date, key)] = key
+            result += order
+        }
+
+        // Every order of the list is stored now, so any more entries are orders that left it
+        if (byId.size > orders.size) {
+            // The index is the smaller map to walk
+            val kept = keys.toHashSet()
+            val dropped = byDate.entries.filter { it.value !in kept }
+            for ((dateKey, key) in dropped) {
+                byDate.remove(dateKey)
+                result -= parse(byId.remove(key)!!, status)
+            }
+        }
+        return result
+    }
+
+    private fun dateKey(date: Long, key: Long) = longArrayOf(date, key)
+
+    // Kept with the state so a lazy load can show the completed totals without parsing the orders
+    private fun writeCompletedSummary(summary: OrderSummary) {
+        meta[COMPLETED_COUNT] = summary.count.toLong()
+        meta[COMPLETED_REVENUE_CENTS] = summary.revenueCents
+        meta[COMPLETED_ITEM_UNITS] = summary.itemUnits
+    }
+
+    private fun storedCompletedSummary(): OrderSummary = OrderSummary(
+        (meta[COMPLETED_COUNT] ?: 0L).toInt(),
+        meta[COMPLETED_REVENUE_CENTS] ?: 0L,
+        meta[COMPLETED_ITEM_UNITS] ?: 0L
+    )
+
+    // Null if it doesn't match the stored orders
+    private fun readCompletedSummary(count: Int): OrderSummary? =
+        storedCompletedSummary().takeIf { it.count == count }
+
+    @Synchronized
+    override fun loadState(): OrderPersistence.OrderState? {
+        if (meta[SAVED_AT] == null) {
+            return null
+        }
+        return OrderPersistence.OrderState(
+            readList(Order.OrderStatus.PENDING),
+            readList(Order.OrderStatus.IN_PROGRESS),
+            readList(Order.OrderStatus.COMPLETED)
+        )
+    }
+
+    // Only the keys of the completed orders are read now, in date order from the index; a page
+    // reads its orders by key when it's first shown. Positions in the index shift as later saves
+    // add and drop orders, keys don't. The totals come from the saved summary.
+    @Synchronized
+    override fun loadStateLazily(): OrderPersistence.OrderState? {
+        if (meta[SAVED_AT] == null) {
+            return null
+        }
+        val index = dates.getValue(Order.OrderStatus.COMPLETED)
+        val keys = LongArray(index.size)
+        index.values.forEachIndexed { position, key -> keys[position] = key }
+        lazyCompletedKeys = keys
+        return OrderPersistence.OrderState(
+            readList(Order.OrderStatus.PENDING),
+            readList(Order.OrderStatus.IN_PROGRESS),
+            PagedOrderList(keys.size) { offset, limit -> readPage(keys, offset, limit) }.also {
+                it.summary = readCompletedSummary(keys.size)
+                it.sourceKeys = keys
+            }
+        )
+    }
+
+    @Synchronized
+    private fun readPage(keys: LongArray, offset: Int, limit: Int): List<Order> =
+        (offset until offset + limit).map { read(Order.OrderStatus.COMPLETED, keys[it]) }
+
+    // Index values come back in date order
+    private fun readList(status: Order.OrderStatus): List<Order> {
+        return dates.getValue(status).values.map { key -> read(status, key) }
+    }
+
+    private fun read(status: Order.OrderStatus, key: Long): Order {
+        val json = lists.getValue(status)[key] ?: throw IllegalStateException("Order $key is not stored")
+        return parse(json, status)
+    }
+
+    private fun parse(json: String, status: Order.OrderStatus): Order {
+        return mapper.readValue(json, Order::class.java).also { it.status = status }
+    }
+
+    // The order with this id in a status list, if it's there
+    @Synchronized
+    fun findOrder(status: Order.OrderStatus, id: Long): Order? = lists.getValue(status)[id]?.let { parse(it, status) }
+
+    // Stream the orders of a status list dated from fromDate until untilDate (exclusive), oldest first
+    @Synchronized
+    fun forEachOrderBetween(status: Order.OrderStatus, fromDate: Long, untilDate: Long, consumer: (Order) -> Unit) {
+        val cursor = dates.getValue(status).cursor(dateKey(fromDate, Long.MIN_VALUE))
+        while (cursor.hasNext()) {
+            if (cursor.next()[0] >= untilDate) break
+            consumer(read(status, cursor.value))
+        }
+    }
+
+    @Synchronized
+    override fun hasState(): Boolean = meta[SAVED_AT] != null
+
+    @Synchronized
+    override fun clearState() {
+        lists.values.forEach { it.clear() }
+        dates.values.forEach { it.clear() }
+        lazyCompletedKeys = null
+        meta.remove(SAVED_AT)
+        listOf(COMPLETED_COUNT, COMPLETED_REVENUE_CENTS, COMPLETED_ITEM_UNITS).forEach { meta.remove(it) }
+        store.commit()
+    }
+
+    @Synchronized
+    override fun appendCanceled(orders: List<Order>) {
+        var sequence = meta[CANCELED_SEQUENCE] ?: 0L
+        for (order in orders) {
+            canceled[++sequence] = mapper.writeValueAsString(order)
+        }
+        meta[CANCELED_SEQUENCE] = sequence
+        store.commit()
+    }
+
+    @Synchronized
+    override fun forEachCanceled(offset: Int, limit: Int, consumer: (Order) -> Unit) {
+        if (offset >= canceled.size || limit <= 0) return
+
+        // Position lookup in the B-tree, then a cursor from there
+        val cursor = canceled.cursor(canceled.getKey(offset.toLong()))
+        var remaining = limit
+        while (remaining > 0 && cursor.hasNext()) {
+            cursor.next()
+            consumer(mapper.readValue(cursor.value, Order::class.java))
+            remaining--
+        }
+    }
+
+    @Synchronized
+    override fun canceledCount(): Int = canceled.size
+
+    @Synchronized
+    override fun clearCanceled() {
+        canceled.clear()
+        meta.remove(CANCELED_SEQUENCE)
+        store.commit()
+    }
+
+    @Synchronized
+    override fun close() {
+        store.close()
+    }
+
+    companion object {
+        private const val SAVED_AT = "state.savedAt"
+        private const val CANCELED_SEQUENCE = "canceled.sequence"
+        private const val COMPLETED_COUNT = "completed.count"
+        private const val COMPLETED_REVENUE_CENTS = "completed.revenueCents"
+        private const val COMPLETED_ITEM_UNITS = "completed.itemUnits"
+    }
+}
@@ -0,0 +1,107 @@
+package com.abc
+
+import kotlin.math.abs
+
+// Money amounts as whole cents in a Long, so prices and totals add up exactly. Prices are read
+// from their text (JSON or XML) straight into cents; doubles are only used where the API or an
+// older file still has them. Amounts finer than a cent round as Math.round(amount * 100) on the
+// double, the way earlier builds did, so saved orders keep their fingerprints (8.995 is 899
+// cents, since the double is a hair below 8.995).
+object Money {
+    private const val MAX_DIGITS = 16
+    private const val MAX_AMOUNT = 1e16
+
+    // Per-thread scratch space for format: the sign, up to 19 digits, '$' and '.'
+    private val FORMAT_BUFFER = ThreadLocal.withInitial { CharArray(24) }
+
+    // Cents of a decimal amount such as "12.5", " -3 ", "$1,234.567" or "1e2"; surrounding
+    // whitespace, a leading '$' and grouping commas are allowed. Throws NumberFormatException
+    // if the text isn't an amount.
+    fun parseCents(text: CharSequence): Long {
+        var start = 0
+        var end = text.length
+        while (start < end && text[start].isWhitespace()) start++
+        while (end > start && text[end - 1].isWhitespace()) end--
+
+        var position = start
+        val negative = position < end && text[position] == '-'
+        if (negative || (position < end && text[position] == '+')) position++
+        if (position < end && text[position] == '$') position++
+
+        var units = 0L
+        var digits = 0
+        while (position < end && (text[position].isAsciiDigit() || (text[position] == ',' && digits > 0))) {
+            if (text[position] != ',') {
+                if (++digits > MAX_DIGITS) throw NumberFormatException("Amount out of range: $text")
+                units = units * 10 + (text[position] - '0')
+            }
+            position++
+        }
+
+        var cents = units * 100
+        var fractionDigits = 0
+        var finerThanCents = false
+        if (position < end && text[position] == '.') {
+            position++
+            while (position < end && text[position].isAsciiDigit()) {
+                val digit = text[position] - '0'
+                when (fractionDigits++) {
+                    0 -> cents += digit * 10L
+                    1 -> cents += digit
+                    else -> if (digit != 0) finerThanCents = true
+                }
+                position++
+            }
+        }
+
+        if (digits + fractionDigits == 0) throw NumberFormatException("Not an amount: $text")
+        if (position < end) {
+            // Exponent notation is rare enough to go the slow way too
+            if (text[position] == 'e' || text[position] == 'E') return parseSlowly(text, start, end)
+            throw NumberFormatException("Not an amount: $text")
+        }
+        // Finer than a cent: round through the double, like earlier builds
+        if (finerThanCents) return parseSlowly(text, start, end)
+        return if (negative) -cents else cents
+    }
+
+    private fun parseSlowly(text: CharSequence, start: Int, end: Int): Long {
+        val plain = text.subSequence(start, end).toString().replace("$", "").replace(",", "")
+        // toDouble would also take a type suffix such as "1e2d"
+        if (!plain.last().isAsciiDigit() && plain.last() != '.') throw NumberFormatException("Not an amount: $text")
+        val amount = plain.toDouble()
+        if (!amount.isFinite() || abs(amount) >= MAX_AMOUNT) throw NumberFormatException("Amount out of range: $text")
+        return fromDouble(amount)
+    }
+
+    // Cents of a dollar amount held as a double
+    fun fromDouble(amount: Double): Long {
+        if (!amount.isFinite()) return 0L
+        return Math.round(amount * 100)
+    }
+
+    fun toDouble(cents: Long): Double = cents / 100.0
+
+    // "$1234.56" (or "$-0.50"), as String.format("$%.2f") would print it, without a Formatter
+    fun format(cents: Long): String {
+        val buffer = FORMAT_BUFFER.get()
+        var position = buffer.size
+
+        // Kept at or below zero, so Long.MIN_VALUE doesn't overflow
+        var remaining = if (cents > 0) -cents else cents
+        repeat(2) {
+            buffer[--position] = '0' - (remaining % 10).toInt()
+            remaining /= 10
+        }
+        buffer[--position] = '.'
+        do {
+            buffer[--position] = '0' - (remaining % 10).toInt()
+            remaining /= 10
+        } while (remaining != 0L)
+        if (cents < 0) buffer[--position] = '-'
+        buffer[--position] = '$'
+        return String(buffer, position, buffer.size - position)
+    }
+
+    private fun Char.isAsciiDigit(): Boolean = this in '0'..'9'
+}
@@ -2,6 +2,7 @@ package com.abc
 
 import com.fasterxml.jackson.annotation.JsonIgnore
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties
+import com.fasterxml.jackson.annotation.JsonInclude
 
 @JsonIgnoreProperties(ignoreUnknown = true)
 data class Order(
@@ -15,15 +16,86 @@ data class Order(
         PENDING, IN_PROGRESS, COMPLETED
     }
 
+    // Stable identity, assigned once when the order is ingested (0 until then) and saved with the
+    // state. Orders saved before ids existed get one when they're loaded.
+    @get:JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    var id: Long = 0
+        set(value) {
+            check(field == 0L || field == value) { "Order $field already has an id" }
+            field = value
+        }
+
+    // Upload file the order was ingested from (its archive location in archive mode).
+    // Saved with the state; null for orders saved before this was recorded.
+    @get:JsonInclude(JsonInclude.Include.NON_NULL)
+    var sourceFile: String? = null
+
+    // Position of the order among the orders in its source file (array entry or <order> element,
+    // from 0), so several orders from one file can be told apart. Saved with the state.
+    @get:JsonInclude(JsonInclude.Include.NON_NULL)
+    var sourceIndex: Int? = null
+
     @JsonIgnore
     fun getTypeOrDefault(): String = type?.trim() ?: "Unknown"
 
     @JsonIgnore
     fun getItemsOrEmpty(): List<Item> = items ?: emptyList()
 
+    // Total and item units of the item list they were summed for. Items are edited by assigning
+    // a new list (OrderManager.updateOrderItems), which makes the sums stale; call refreshTotals
+    // after changing the list or its items in place.
+    private var totalsOf: List<Item>? = null
+    private var totalsValid = false
+    private var cachedTotalCents = 0L
+    private var cachedItemUnits = 0L
+
     @JsonIgnore
-    fun calculateTotal(): Double {
-        return getItemsOrEmpty().sumOf { it.quantity * it.price }
+    fun calculateTotal(): Double = Money.toDouble(totalCents())
+
+    // Total in whole cents, summed exactly
+    @JsonIgnore
+    fun totalCents(): Long {
+        updateTotals()
+        return cachedTotalCents
+    }
+
+    // Sum of the item quantities
+    @JsonIgnore
+    fun itemUnits(): Long {
+        updateTotals()
+        return cachedItemUnits
+    }
+
+    fun refreshTotals() {
+        totalsValid = false
+    }
+
+    private fun updateTotals() {
+        val current = items
+        if (totalsValid && current === totalsOf) return
+
+        // Lazily loaded items carry their sums, so the tables don't decode them
+        if (current is LazyItemList && !current.isMaterialized) {
+            cachedTotalCents = current.totalCents
+            cachedItemUnits = current.units
+        } else {
+            cachedTotalCents = current?.sumOf { it.lineTotalCents } ?: 0L
+            cachedItemUnits = current?.sumOf { it.quantity.toLong() } ?: 0L
+        }
+        totalsOf = current
+        totalsValid = true
+    }
+
+    // Copy with its own items, to write out while this order goes on changing. Items that were
+    // never decoded can't have been edited; they're shared as they are.
+    fun detached(): Order {
+        val current = items
+        val copiedItems = if (current is LazyItemList && !current.isMaterialized) current else current?.map { it.copy() }
+        return copy(items = copiedItems).also {
+            it.id = id
+            it.sourceFile = sourceFile
+            it.sourceIndex = sourceIndex
+        }
     }
 
     @JsonIgnore
@@ -32,46 +104,35 @@ data class Order(
     }
 
     override fun toString(): String {
-        return "Order{type='${getTypeOrDefault()}', source='$source', date=$order_date, items=${getItemsOrEmpty().size}, total=${'$'}%.2f}".format(calculateTotal())
+        return "Order{type='${getTypeOrDefault()}', source='$source', date=$order_date, items=${getItemsOrEmpty().size}, total=${Money.format(totalCents())}}"
     }
 
+    // The same order with the same content: equal ids (0 until ingested) and equal header, status
+    // and items. Different orders with the same content have different ids; content duplicates
+    // are found through OrderFingerprint
     override fun equals(other: Any?): Boolean {
         if (this === other) return true
         if (other == null || javaClass != other.javaClass) return false
 
         other as Order
 
-        // Compare all fields including items list content
-        if (order_date != other.order_date) return false
-        if (type != other.type) return false
-        if (source != other.source) return false
-        if (status != other.status) return false
-
-        val thisItems = getItemsOrEmpty()
-        val otherItems = other.getItemsOrEmpty()
-
-        if (thisItems.size != otherItems.size) return false
-
-        // Compare each item in the list
-        for (i in thisItems.indices) {
-            val thisItem = thisItems[i]
-            val otherItem = otherItems[i]
-            if (thisItem.name != otherItem.name ||
-                thisItem.quantity != otherItem.quantity ||
-                thisItem.price != otherItem.price) {
-                return false
-            }
-        }
+        return id == other.id && sameContentAs(other)
+    }
 
-        return true
+    // Whether both orders say the same thing, whatever their ids: header, status and every item
+    fun sameContentAs(other: Order): Boolean {
+        return order_date == other.order_date &&
+            type == other.type &&
+            source == other.source &&
+            status == other.status &&
+            getItemsOrEmpty() == other.getItemsOrEmpty()
     }
 
+    // Only fields that don't change while the order is tracked (status and items do)
     override fun hashCode(): Int {
         var result = type?.hashCode() ?: 0
         result = 31 * result + (source?.hashCode() ?: 0)
         result = 31 * result + order_date.hashCode()
-        result = 31 * result + status.hashCode()
-        result = 31 * result + getItemsOrEmpty().hashCode()
         return result
     }
 }
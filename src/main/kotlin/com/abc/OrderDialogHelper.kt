@@ -53,7 +53,7 @@ class OrderDialogHelper {
             Source: ${OrderFormatters.formatOrderSource(order)}
             Total: ${OrderFormatters.formatTotal(order)}
 
-            The order will be saved to canceledOrders.json and the source file will be removed if found.
+            The order will be saved to the canceled orders archive and the source file will be removed if found.
         """.trimIndent()
 
         val yesButton = ButtonType("Yes", ButtonBar.ButtonData.YES)
@@ -65,16 +65,16 @@ class OrderDialogHelper {
     }
 
     //Confirm deletion of multiple orders.
-    fun confirmDeleteBatch(count: Int, totalAmount: Double): Boolean {
+    fun confirmDeleteBatch(count: Int, totalCents: Long): Boolean {
         val confirmAlert = Alert(Alert.AlertType.CONFIRMATION)
         confirmAlert.title = "Confirm Batch Delete"
         confirmAlert.headerText = "Delete $count Orders"
         confirmAlert.contentText = """
             Are you sure you want to delete $count selected order(s)?
             
-            Total Value: ${OrderFormatters.formatCurrency(totalAmount)}
+            Total Value: ${OrderFormatters.formatCents(totalCents)}
             
-            All orders will be saved to canceledOrders.json and source files will be removed if found.
+            All orders will be saved to the canceled orders archive and source files will be removed if found.
         """.trimIndent()
 
         val result = confirmAlert.showAndWait()
@@ -168,9 +168,9 @@ class OrderDialogHelper {
     //Show result of order deletion.
     fun showDeleteResult(fileDeleted: Boolean, statusText: String) {
         val message = if (fileDeleted) {
-            "$statusText order deleted and saved to canceledOrders.json (source file removed)"
+            "$statusText order deleted and saved to the canceled orders archive (source file removed)"
         } else {
-            "$statusText order deleted and saved to canceledOrders.json (source file not found)"
+            "$statusText order deleted and saved to the canceled orders archive (source file not found)"
         }
         showInfo("Delete Order", message)
     }
@@ -180,7 +180,7 @@ class OrderDialogHelper {
         val message = """
             $successCount $statusText order${if (successCount == 1) "" else "s"} deleted
             $filesDeletedCount source file${if (filesDeletedCount == 1) "" else "s"} removed
-            All orders saved to canceledOrders.json
+            All orders saved to the canceled orders archive
         """.trimIndent()
         showInfo("Batch Delete Complete", message)
     }
@@ -1,51 +1,62 @@
 package com.abc
 
 import javafx.application.Platform
-import javafx.collections.ObservableList
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.Executors
 
 @Suppress("unused")
 object OrderFileManager {
 
+    // Source file deletes are blocking file-system calls, so each gets a virtual thread
+    private val fileDeleter = Executors.newVirtualThreadPerTaskExecutor()
+
+    //onAdded takes the new orders and a callback for whether they were saved; the upload files
+    //are marked ingested (and archived) only when they were
     fun loadOrders(
         uploadsDir: String,
-        pending: ObservableList<Order>,
-        inProgress: ObservableList<Order>,
-        completed: ObservableList<Order>,
-        onAdded: (List<Order>) -> Unit
+        orderExists: (Order) -> Boolean,
+        onAdded: (List<Order>, onSaved: (Boolean) -> Unit) -> Unit
     ) {
-        val orders = OrderIn.readOrdersFromDirectory(uploadsDir)
-        val newOrders = mutableListOf<Order>()
+        val ingest = OrderIn.readUploads(uploadsDir)
+        val newOrders = ingest.orders.filter { !orderExists(it) }
 
-        for (order in orders) {
-            val alreadyExists = pending.contains(order) || inProgress.contains(order) || completed.contains(order)
-            if (!alreadyExists) {
-                newOrders.add(order)
-            }
+        if (newOrders.isEmpty()) {
+            ingest.complete(true)
+            return
         }
-
-        if (newOrders.isNotEmpty()) {
-            onAdded(newOrders)
+        try {
+            onAdded(newOrders, ingest::complete)
+        } catch (e: Exception) {
+            ingest.complete(false)
+            throw e
         }
     }
 
     fun startFileWatcher(
         watchDirectory: String,
         autoRefreshEnabled: () -> Boolean,
-        onNewOrders: (List<Order>) -> Unit,
+        onNewOrders: (List<Order>, onSaved: (Boolean) -> Unit) -> Unit,
         onReload: () -> Unit
     ) {
+        // Called on the watcher thread; OrderManager is thread-safe, so new orders don't wait for the FX thread.
+        // Orders not taken (auto refresh off) leave their files to the next load.
+        OrderIn.ingestHandler = OrderIn.OrderIngestHandler { newOrders, onSaved ->
+            if (!autoRefreshEnabled()) {
+                onSaved(false)
+                return@OrderIngestHandler
+            }
+            // Let caller handle adding and dedupe
+            try {
+                onNewOrders(newOrders, onSaved)
+            } catch (e: Exception) {
+                println("Error in onNewOrders handler: ${e.message}")
+                onSaved(false)
+            }
+        }
+
         OrderIn.addOrderUpdateListener(object : OrderIn.OrderUpdateListener {
+            // New orders go through the ingest handler above
             override fun onOrdersUpdated(newOrders: List<Order>) {
-                Platform.runLater {
-                    if (autoRefreshEnabled()) {
-                        // Let caller handle adding and dedupe
-                        try {
-                            onNewOrders(newOrders)
-                        } catch (e: Exception) {
-                            println("Error in onNewOrders handler: ${e.message}")
-                        }
-                    }
-                }
             }
 
             override fun onOrdersReloaded(allOrders: List<Order>) {
@@ -64,96 +75,57 @@ object OrderFileManager {
         }
     }
 
-    //Find the source file for a specific order.
-    fun findOrderFile(order: Order): String? {
-        try {
-            val uploadsDir = java.nio.file.Paths.get("uploads")
-            if (!java.nio.file.Files.exists(uploadsDir)) {
-                return null
-            }
-
-            java.nio.file.Files.newDirectoryStream(uploadsDir, "*.{json,xml}").use { stream ->
-                val files = stream.toList()
-
-                // Strategy 1: Match by order source in filename
-                if (order.source != null) {
-                    val normalizedSource = order.source!!.lowercase().replace(" ", "").replace("_", "")
-
-                    for (filePath in files) {
-                        val fileName = filePath.fileName.toString().lowercase()
-                        val normalizedFileName = fileName.replace(" ", "").replace("_", "")
-
-                        // Check if the filename contains the source
-                        if (normalizedFileName.contains(normalizedSource)) {
-                            println("Found file for order ${order.source}: $filePath")
-                            return filePath.toString()
-                        }
-                    }
-                }
-
-
-                // Match by order date (timestamp)
-                // This is a fallback if source doesn't work
-                for (filePath in files) {
-                    val fileName = filePath.fileName.toString()
-                    // Check if filename contains the order timestamp
-                    if (fileName.contains(order.order_date.toString())) {
-                        println("Found file for order by timestamp: $filePath")
-                        return filePath.toString()
-                    }
-                }
-
-                // NO FALLBACK - if we can't find a specific match, return null
-                println("⚠️ Could not find specific file for order: ${order.source ?: "unknown"} (date: ${order.order_date})")
-                return null
-            }
-        } catch (e: Exception) {
-            System.err.println("Error finding order file: ${e.message}")
-            return null
-        }
-    }
-
-    //Delete the source file for an order.
-    fun deleteOrderFile(order: Order, orderToFileMap: MutableMap<Order, String>): Boolean {
+    //Delete the source file for an order. The path was recorded when the order was imported, so
+    //nothing is searched; a file that other tracked orders were also imported from is kept.
+    fun deleteOrderFile(order: Order, fileShared: Boolean = false): Boolean {
         println("🗑️ Attempting to delete file for order: ${order.source ?: "unknown"}")
 
         // Always save to canceled orders first
         val savedToCanceled = OrderPersistence.saveCanceledOrder(order)
         if (savedToCanceled) {
-            println("   ✅ Order saved to canceledOrders.json")
+            println("   ✅ Order saved to the canceled orders archive")
         }
 
-        // Try to get file path from tracking map first
-        var filePath = orderToFileMap[order]
-        if (filePath != null) {
-            println("   📍 Found tracked file path: $filePath")
-        } else {
-            println("   🔍 File not tracked, searching for it...")
-            filePath = findOrderFile(order)
-            if (filePath != null) {
-                println("   📍 Found file: $filePath")
-            } else {
-                println("   ⚠️ Could not find source file for order")
+        var filePath = order.sourceFile
+        when {
+            filePath == null -> println("   ⚠️ No source file recorded for order")
+            fileShared -> {
+                println("   📍 Keeping $filePath, other orders were imported from it")
+                filePath = null
             }
+            else -> println("   📍 Recorded source file: $filePath (order #${(order.sourceIndex ?: 0) + 1} in the file)")
         }
 
-        var fileDeleted = false
-        if (filePath != null) {
-            try {
-                val path = java.nio.file.Paths.get(filePath)
-                if (java.nio.file.Files.exists(path)) {
-                    java.nio.file.Files.delete(path)
-                    println("   ✅ Deleted source file: $path")
-                    fileDeleted = true
-                } else {
-                    println("   ⚠️ Source file no longer exists: $path")
-                }
-            } catch (e: java.io.IOException) {
-                System.err.println("   ❌ Error deleting source file $filePath: ${e.message}")
-                e.printStackTrace()
-            }
-        }
+        val fileDeleted = filePath != null && deleteSourceFile(filePath)
 
         return savedToCanceled || fileDeleted
     }
-}
\ No newline at end of file
+
+    //Delete source files in parallel, off the calling thread. The future completes with the
+    //paths that were deleted; failures are logged and left out.
+    fun deleteSourceFilesAsync(paths: Collection<String>): CompletableFuture<Set<String>> {
+        val deletions = paths.distinct().map { filePath ->
+            CompletableFuture.supplyAsync({ filePath.takeIf { deleteSourceFile(it) } }, fileDeleter)
+        }
+        return CompletableFuture.allOf(*deletions.toTypedArray()).thenApply {
+            deletions.mapNotNullTo(HashSet()) { it.join() }
+        }
+    }
+
+    private fun deleteSourceFile(filePath: String): Boolean {
+        try {
+            val path = java.nio.file.Paths.get(filePath)
+            if (java.nio.file.Files.exists(path)) {
+                java.nio.file.Files.delete(path)
+                println("   ✅ Deleted source file: $path")
+                return true
+            } else {
+                println("   ⚠️ Source file no longer exists: $path")
+            }
+        } catch (e: java.io.IOException) {
+            System.err.println("   ❌ Error deleting source file $filePath: ${e.message}")
+            e.printStackTrace()
+        }
+        return false
+    }
+}
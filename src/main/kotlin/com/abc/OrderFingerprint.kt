@@ -0,0 +1,78 @@
+package com.abc
+
+import java.nio.ByteBuffer
+import java.security.MessageDigest
+import java.util.IdentityHashMap
+
+// 128-bit content fingerprint of an order (type, source, date and items; status is ignored).
+// Two uploads of the same order hash the same no matter what the file was called, and the
+// check against a hash set is O(1) instead of scanning every list with Order.equals.
+data class OrderFingerprint(val high: Long, val low: Long) {
+
+    override fun toString(): String = "%016x%016x".format(high, low)
+
+    companion object {
+        fun of(order: Order): OrderFingerprint {
+            val digest = MessageDigest.getInstance("MD5")
+            digest.update(normalizedContent(order).toByteArray(Charsets.UTF_8))
+            val hash = ByteBuffer.wrap(digest.digest())
+            return OrderFingerprint(hash.long, hash.long)
+        }
+
+        // Case/whitespace-insensitive text, prices in whole cents, items sorted so their file order doesn't matter
+        private fun normalizedContent(order: Order): String {
+            val items = order.getItemsOrEmpty()
+                .map { item ->
+                    "${normalize(item.name)}\u0001${item.quantity}\u0001${item.priceCents}"
+                }
+                .sorted()
+
+            return buildString {
+                append(normalize(order.type)).append('\u0000')
+                append(normalize(order.source)).append('\u0000')
+                append(order.order_date).append('\u0000')
+                items.forEach { append(it).append('\u0000') }
+            }
+        }
+
+        private fun normalize(value: String?): String = value?.trim()?.lowercase() ?: ""
+    }
+}
+
+// Fingerprint multiset over the live orders. Remembers each order's fingerprint by identity,
+// so an order edited in place can still be removed or re-hashed. Not thread-safe.
+class OrderFingerprintIndex {
+    private val counts = HashMap<OrderFingerprint, Int>()
+    private val byOrder = IdentityHashMap<Order, OrderFingerprint>()
+
+    // Returns false if an order with the same content was already indexed
+    fun add(order: Order): Boolean {
+        if (byOrder.containsKey(order)) return false
+
+        val fingerprint = OrderFingerprint.of(order)
+        byOrder[order] = fingerprint
+        val count = counts.merge(fingerprint, 1, Int::plus) ?: 1
+        return count == 1
+    }
+
+    fun remove(order: Order) {
+        val fingerprint = byOrder.remove(order) ?: return
+        counts.computeIfPresent(fingerprint) { _, count -> if (count > 1) count - 1 else null }
+    }
+
+    // Re-hash an order after its items changed
+    fun refresh(order: Order) {
+        remove(order)
+        add(order)
+    }
+
+    // Fingerprint the order was indexed under (its content before any in-place edit)
+    fun fingerprintOf(order: Order): OrderFingerprint = byOrder[order] ?: OrderFingerprint.of(order)
+
+    fun contains(order: Order): Boolean = counts.containsKey(OrderFingerprint.of(order))
+
+    fun clear() {
+        counts.clear()
+        byOrder.clear()
+    }
+}
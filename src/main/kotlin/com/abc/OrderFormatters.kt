@@ -26,13 +26,24 @@ object OrderFormatters {
         return if (order == null) {
             "$0.00"
         } else {
-            formatCurrency(order.calculateTotal())
+            formatCents(order.totalCents())
         }
     }
 
     //Format a dollar amount as currency.
     fun formatCurrency(amount: Double): String {
-        return String.format("$%.2f", amount)
+        return formatCents(Money.fromDouble(amount))
+    }
+
+    //Format an amount in cents as currency.
+    fun formatCents(cents: Long): String {
+        return Money.format(cents)
+    }
+
+    //Format a list summary for the header, e.g. "Pending: 3 orders, 7 items, $42.50"
+    fun formatSummary(label: String, summary: OrderSummary): String {
+        return "$label: ${summary.count} order${if (summary.count == 1) "" else "s"}, " +
+            "${summary.itemUnits} item${if (summary.itemUnits == 1L) "" else "s"}, ${formatCents(summary.revenueCents)}"
     }
 
     //Get the order type or "Unknown" if not set.
@@ -0,0 +1,27 @@
+package com.abc
+
+import java.util.concurrent.atomic.AtomicLong
+
+// Order ids: increasing and unique across restarts without a stored counter. The sequence starts
+// at the clock in milliseconds times 1000, so a new run starts past the last one unless that one
+// handed out over 1000 ids a millisecond, and it's raised past every id seen in loaded state.
+object OrderIds {
+    private val last = AtomicLong(System.currentTimeMillis() * 1000)
+
+    fun next(): Long = last.incrementAndGet()
+
+    // Keep ids handed out from now on above an existing one
+    fun observe(id: Long) {
+        last.accumulateAndGet(id) { current, seen -> maxOf(current, seen) }
+    }
+
+    // Give the order an id if it has none; returns its id
+    fun assign(order: Order): Long {
+        if (order.id == 0L) {
+            order.id = next()
+        } else {
+            observe(order.id)
+        }
+        return order.id
+    }
+}
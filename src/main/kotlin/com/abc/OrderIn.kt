@@ -11,7 +11,14 @@ import java.time.LocalDateTime
 import java.time.ZoneId
 import java.time.format.DateTimeFormatter
 import java.time.format.DateTimeParseException
+import java.util.EnumSet
 import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.Semaphore
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicLong
 import javax.xml.parsers.DocumentBuilderFactory
 
 object OrderIn {
@@ -20,16 +27,126 @@ object OrderIn {
         configure(DeserializationFeature.FAIL_ON_NULL_FOR_PRIMITIVES, false)
     }
 
-    private val processedFiles = mutableSetOf<String>()
+    private const val LEDGER_FILE = "ingestion_ledger.dat"
+
+    // On-disk record of ingested files (path/size/mtime and content hash) and order fingerprints.
+    // A file rewritten under the same name has a new identity and is read again; its orders are
+    // then deduped by fingerprint, so re-uploads under a new name are dropped too. Opened on first use.
+    private var ledger: IngestionLedger? = null
+    private val ledgerLock = Any()
     private var watchService: WatchService? = null
+    @Volatile
     private var isWatching = false
+
+    // Bumped on every start, so a watcher thread still winding down after stopFileWatcher
+    // can't clear the flag of the watcher that replaced it
+    @Volatile
+    private var watcherGeneration = 0
     private val listeners = CopyOnWriteArrayList<OrderUpdateListener>()
 
+    // Parse directory files on virtual threads; false keeps the one-file-at-a-time path (used by tests)
+    @Volatile
+    var parallelImport: Boolean = true
+
+    // Upper bound on files being parsed at once in parallel mode
+    @Volatile
+    var maxInFlightFiles: Int = 64
+
+    // How long a watched file must go without changing before it is parsed
+    @Volatile
+    var watcherQuietPeriodMs: Long = 100
+
+    // How often the file watcher re-lists the directory to pick up files it missed (0 = only on overflow)
+    @Volatile
+    var reconcileIntervalMs: Long = 60_000
+
+    // Polling watcher interval bounds; the interval doubles while idle and resets when files arrive
+    @Volatile
+    var pollMinIntervalMs: Long = 500
+
+    @Volatile
+    var pollMaxIntervalMs: Long = 10_000
+
+    // Current polling interval and cost of the most recent sweep (scan count, changes, elapsed time)
+    @Volatile
+    var currentPollInterval: Long = 0
+        private set
+
+    @Volatile
+    var lastPollSweep: PollingIndex.SweepResult? = null
+        private set
+
+    // Watcher reconciliation counters
+    private val overflows = AtomicLong()
+    private val reconciliations = AtomicLong()
+    private val reconciledFiles = AtomicLong()
+
+    // Number of OVERFLOW events the file watcher has seen
+    val overflowCount: Long
+        get() = overflows.get()
+
+    // Number of directory reconciliations run (startup, periodic and overflow)
+    val reconciliationCount: Long
+        get() = reconciliations.get()
+
+    // Number of missed files that reconciliation fed back into the watcher
+    val reconciledFileCount: Long
+        get() = reconciledFiles.get()
+
+    // Move ingested files into <uploads>/archive/yyyy/MM/dd/ so scans only see the live backlog
+    @Volatile
+    var archiveIngestedFiles: Boolean = false
+
+    // Move files that fail to parse into <uploads>/failed/ with an error report
+    @Volatile
+    var quarantineFailedFiles: Boolean = true
+
+    // Minimum age of a failed file before a directory load quarantines it (watchers only
+    // hand over files that have already settled)
+    @Volatile
+    var quarantineGraceMs: Long = 5_000
+
+    // Use the StAX importer for XML uploads; false falls back to the DOM-based adapter
+    @Volatile
+    var streamingXml: Boolean = true
+
+    // Use the streaming JSON importer (arrays, NDJSON, bare orders); false keeps the single-wrapper importer
+    @Volatile
+    var streamingJson: Boolean = true
+
     interface OrderUpdateListener {
         fun onOrdersUpdated(newOrders: List<Order>)
         fun onOrdersReloaded(allOrders: List<Order>)
     }
 
+    // Takes the new orders the watchers found and reports once whether they were saved; only
+    // then are their upload files marked ingested (see Ingest). Without one they count as saved.
+    fun interface OrderIngestHandler {
+        fun ingest(newOrders: List<Order>, onSaved: (Boolean) -> Unit)
+    }
+
+    @Volatile
+    var ingestHandler: OrderIngestHandler? = null
+
+    // Orders read from upload files that aren't marked ingested yet. complete(true), once the
+    // orders are saved, records the files and their orders in the ledger and, in archive mode,
+    // moves the files to the location the orders already name; complete(false) leaves the files
+    // to be read again. Only the first call counts.
+    class Ingest(val orders: List<Order>, private val onComplete: (Boolean) -> Unit = {}) {
+        private val completed = AtomicBoolean()
+
+        fun complete(saved: Boolean) {
+            if (completed.compareAndSet(false, true)) {
+                onComplete(saved)
+            }
+        }
+
+        companion object {
+            fun of(parts: List<Ingest>): Ingest =
+                Ingest(parts.flatMap { it.orders }) { saved -> parts.forEach { it.complete(saved) } }
+        }
+    }
+
     fun addOrderUpdateListener(listener: OrderUpdateListener) {
         listeners.add(listener)
     }
@@ -48,6 +165,12 @@ object OrderIn {
 
         // Read all orders from a file (useful for XML files containing multiple orders)
         fun readAllOrders(filePath: String): List<Order>
+
+        // Hand orders to the consumer one at a time; streaming importers override this
+        // so no document tree is built next to the orders
+        fun forEachOrder(filePath: String, consumer: (Order) -> Unit) {
+            readAllOrders(filePath).forEach(consumer)
+        }
     }
 
     // JSON importer implementation (single-order JSON files)
@@ -63,6 +186,7 @@ object OrderIn {
                 val order = wrapper.order
 
                 if (order != null && order.isValid()) {
+                    order.sourceIndex = 0
                     order
                 } else {
                     System.err.println("Invalid order data in JSON file: $filePath")
@@ -127,6 +251,10 @@ object OrderIn {
     }
 
     private fun internalImportFromXml(filePath: String): XmlImportResult {
+        return if (streamingXml) StaxXmlOrderImporter.importFile(filePath) else importFromXmlDom(filePath)
+    }
+
+    private fun importFromXmlDom(filePath: String): XmlImportResult {
         val orders = mutableListOf<Order>()
         val errors = mutableListOf<String>()
         val fileName = Paths.get(filePath).fileName.toString()
@@ -143,6 +271,7 @@ object OrderIn {
                     val orderElement = orderNodes.item(i) as Element
                     val order = parseOrderElement(orderElement)
                     if (order != null) {
+                        order.sourceIndex = i
                         orders.add(order)
                     }
                 } catch (e: Exception) {
@@ -263,7 +392,7 @@ object OrderIn {
             itemElement,
             "price", "unit_price", "cost", null
         )
-        item.price = parsePrice(priceStr)
+        item.priceCents = parsePriceCents(priceStr)
 
         return item
     }
@@ -292,7 +421,7 @@ object OrderIn {
         return fallbacks.last()
     }
 
-    private fun parseQuantity(quantityStr: String?): Int {
+    internal fun parseQuantity(quantityStr: String?): Int {
         if (quantityStr == null) return 1
         return try {
             val quantity = quantityStr.trim().toInt()
@@ -303,15 +432,19 @@ object OrderIn {
         }
     }
 
-    private fun parsePrice(priceStr: String?): Double {
-        if (priceStr == null) return 0.0
+    // Prices usually parse as they are; text with other characters around the number
+    // ("USD 12.50", "12.50 each") is retried with only its digits, '.' and '-'
+    internal fun parsePriceCents(priceStr: String?): Long {
+        if (priceStr == null) return 0L
         return try {
-            val cleanedPrice = priceStr.replace(Regex("[^\\d.-]"), "")
-            val price = cleanedPrice.trim().toDouble()
-            maxOf(price, 0.0)
+            maxOf(Money.parseCents(priceStr), 0L)
         } catch (e: NumberFormatException) {
-            System.err.println("Invalid price: $priceStr, using default 0.0")
-            0.0
+            try {
+                maxOf(Money.parseCents(priceStr.filter { it in '0'..'9' || it == '.' || it == '-' }), 0L)
+            } catch (e: NumberFormatException) {
+                System.err.println("Invalid price: $priceStr, using default 0.0")
+                0L
+            }
         }
     }
 
@@ -325,15 +458,15 @@ object OrderIn {
         return parent
     }
 
-    private fun createDefaultItem(): Item {
+    internal fun createDefaultItem(): Item {
         return Item().apply {
             name = "Unknown Item"
             quantity = 1
-            price = 0.0
+            priceCents = 0
         }
     }
 
-    private fun parseDate(dateStr: String?): Long {
+    internal fun parseDate(dateStr: String?): Long {
         if (dateStr.isNullOrBlank()) {
             return 0
         }
@@ -386,7 +519,7 @@ object OrderIn {
 
         override fun readOrder(filePath: String): Order? {
             return try {
-                val result = internalImportFromXml(filePath)
+                val result = importFromXmlDom(filePath)
                 if (result.getSuccessCount() > 0) {
                     result.importedOrders[0]
                 } else {
@@ -403,13 +536,22 @@ object OrderIn {
         }
 
         override fun readAllOrders(filePath: String): List<Order> {
-            val result = internalImportFromXml(filePath)
+            val result = importFromXmlDom(filePath)
             return result.importedOrders
         }
     }
 
+    // XML importer selected by streamingXml
+    private val xmlImporter: OrderImporter
+        get() = if (streamingXml) StaxXmlOrderImporter else XmlOrderImporterAdapter
+
+    // JSON importer selected by streamingJson
+    private val jsonImporter: OrderImporter
+        get() = if (streamingJson) StreamingJsonOrderImporter else JsonOrderImporter
+
     // List of available importers (order matters if a file type could be ambiguous)
-    private val importers: List<OrderImporter> = listOf(XmlOrderImporterAdapter, JsonOrderImporter)
+    private val importers: List<OrderImporter>
+        get() = listOf(xmlImporter, jsonImporter)
 
     // Public readOrder now delegates to the appropriate importer
     fun readOrder(filename: String): Order? {
@@ -435,10 +577,17 @@ object OrderIn {
         }
     }
 
+    // Read the upload files not ingested yet and mark them ingested right away
     fun readOrdersFromDirectory(directoryPath: String): List<Order> {
-        val orders = mutableListOf<Order>()
-        // Don't clear processedFiles - this prevents duplicate imports on refresh
-        // processedFiles should only be cleared on app startup or explicit reload
+        return readUploads(directoryPath).also { it.complete(true) }.orders
+    }
+
+    // Read the upload files not ingested yet. They are marked ingested when the result is
+    // completed, which the caller does once it has saved the orders.
+    fun readUploads(directoryPath: String): Ingest {
+        val parts = mutableListOf<Ingest>()
+        // Files already in the ingestion ledger are skipped - this prevents duplicate imports on refresh
+        // and across restarts. The ledger should only be cleared on an explicit reload
 
         try {
             var dirPath = Paths.get(directoryPath)
@@ -449,41 +598,156 @@ object OrderIn {
                     dirPath = Paths.get("src/java")
                     if (!Files.exists(dirPath)) {
                         System.err.println("Orders directory not found")
-                        return orders
+                        return Ingest(emptyList())
                     }
                 }
             }
 
-            // Use a combined directory stream to pick up both json and xml files
+            // Collect candidates first (json then xml, each sorted by name) so results merge in a stable order
+            val ledger = ledger()
+            val candidates = mutableListOf<Path>()
             Files.newDirectoryStream(dirPath, "*.json").use { jsonStream ->
-                for (filePath in jsonStream) {
-                    val fileName = filePath.fileName.toString()
-                    if (fileName != "orders_out.json" && !processedFiles.contains(fileName)) {
-                        JsonOrderImporter.readOrder(filePath.toString())?.let { order ->
-                            orders.add(order)
-                            processedFiles.add(fileName)
-                        }
-                    }
-                }
+                candidates.addAll(jsonStream.filter { filePath ->
+                    filePath.fileName.toString() != "orders_out.json" && !ledger.hasFile(filePath)
+                }.sortedBy { it.fileName.toString() })
             }
 
             Files.newDirectoryStream(dirPath, "*.xml").use { xmlStream ->
-                for (filePath in xmlStream) {
-                    val fileName = filePath.fileName.toString()
-                    if (!processedFiles.contains(fileName)) {
-                        val xmlOrders = XmlOrderImporterAdapter.readAllOrders(filePath.toString())
-                        if (xmlOrders.isNotEmpty()) {
-                            orders.addAll(xmlOrders)
-                            processedFiles.add(fileName)
-                        }
-                    }
-                }
+                candidates.addAll(xmlStream.filter { filePath ->
+                    !ledger.hasFile(filePath)
+                }.sortedBy { it.fileName.toString() })
+            }
+
+            val seen = HashSet<OrderFingerprint>()
+            for (fileImport in importFiles(candidates)) {
+                parts.add(acceptImport(fileImport, settled = false, seen))
             }
         } catch (e: Exception) {
             System.err.println("Error reading orders from directory: ${e.message}")
         }
 
-        return orders
+        return Ingest.of(parts)
+    }
+
+    // error is set when the file couldn't be parsed or held no valid orders
+    private class FileImport(val check: IngestionLedger.FileCheck, val orders: List<Order>, val error: String? = null)
+
+    // Check an upload file against the ledger and parse it if it's new. The ledger identity is taken
+    // before parsing, so a file rewritten mid-parse is seen as changed next time.
+    private fun importFile(filePath: Path): FileImport {
+        val check = ledger().check(filePath)
+        if (check.known) {
+            return FileImport(check, emptyList())
+        }
+        return parseFile(check)
+    }
+
+    // Take the orders of a parsed file that weren't ingested before (nor already taken from
+    // another file in seen). The file is recorded in the ledger only when the result is completed.
+    // A file that failed to parse is moved to the quarantine area. settled = false (directory
+    // loads) leaves files modified within the last quarantineGraceMs alone, since they may still
+    // be being written; they are retried on the next load instead.
+    // In archive mode the ingested file is moved out of the upload directory (known files right
+    // away) and each order records where its file will end up. New orders get their id here.
+    private fun acceptImport(
+        fileImport: FileImport,
+        settled: Boolean = true,
+        seen: MutableSet<OrderFingerprint> = HashSet()
+    ): Ingest {
+        val file = fileImport.check.file
+        if (fileImport.orders.isEmpty()) {
+            val error = fileImport.error
+            if (error != null && quarantineFailedFiles && (settled || isOlderThanGrace(file))) {
+                UploadQuarantine.quarantine(file, error)
+            } else if (fileImport.check.known && archiveIngestedFiles) {
+                UploadArchive.archive(file)
+            }
+            return Ingest(emptyList())
+        }
+
+        val target = if (archiveIngestedFiles) UploadArchive.reserve(file) else null
+        val sourceFile = target ?: file
+        fileImport.orders.forEach {
+            it.sourceFile = sourceFile.toString()
+            OrderIds.assign(it)
+        }
+
+        // Repeats within the file and across one load collapse here; the ledger learns the
+        // fingerprints with the file
+        val ledger = ledger()
+        val fingerprints = fileImport.orders.map { OrderFingerprint.of(it) }
+        val newOrders = fileImport.orders.filterIndexed { i, _ ->
+            !ledger.containsOrder(fingerprints[i]) && seen.add(fingerprints[i])
+        }
+        return Ingest(newOrders) { saved ->
+            if (saved) {
+                ledger.recordFile(fileImport.check)
+                fingerprints.forEach { ledger.addOrder(it) }
+                ledger.sync()
+                target?.let { UploadArchive.archiveTo(file, it) }
+            } else {
+                target?.let { UploadArchive.release(it) }
+            }
+        }
+    }
+
+    private fun isOlderThanGrace(filePath: Path): Boolean {
+        return try {
+            System.currentTimeMillis() - Files.getLastModifiedTime(filePath).toMillis() >= quarantineGraceMs
+        } catch (e: IOException) {
+            false
+        }
+    }
+
+    // Parse a single upload file with the importer matching its extension. A malformed file
+    // yields no orders (nothing is partially ingested) and the parser's message as the error,
+    // so all of a file's orders are held until it has been read to the end.
+    private fun parseFile(check: IngestionLedger.FileCheck): FileImport {
+        val filePath = check.file
+        val importer = if (xmlImporter.canImport(filePath.fileName.toString())) xmlImporter else jsonImporter
+        val orders = mutableListOf<Order>()
+        return try {
+            importer.forEachOrder(filePath.toString()) { orders.add(it) }
+            if (orders.isEmpty()) {
+                FileImport(check, emptyList(), "No valid orders found")
+            } else {
+                FileImport(check, orders)
+            }
+        } catch (e: Exception) {
+            System.err.println("Error reading orders from $filePath: ${e.message}")
+            FileImport(check, emptyList(), "${e.javaClass.simpleName}: ${e.message}")
+        }
+    }
+
+    // Import files and return the results in the same order as the input list.
+    // In parallel mode each file gets a virtual thread, with at most maxInFlightFiles running at once.
+    private fun importFiles(files: List<Path>): List<FileImport> {
+        if (!parallelImport || files.size < 2) {
+            return files.map { importFile(it) }
+        }
+
+        val permits = Semaphore(maxOf(maxInFlightFiles, 1))
+        Executors.newVirtualThreadPerTaskExecutor().use { executor ->
+            val futures = files.map { filePath ->
+                permits.acquire()
+                executor.submit<FileImport> {
+                    try {
+                        importFile(filePath)
+                    } finally {
+                        permits.release()
+                    }
+                }
+            }
+
+            return futures.mapIndexed { i, future ->
+                try {
+                    future.get()
+                } catch (e: ExecutionException) {
+                    System.err.println("Error importing ${files[i]}: ${e.cause?.message}")
+                    FileImport(IngestionLedger.FileCheck(files[i], null, null, false), emptyList())
+                }
+            }
+        }
     }
 
     fun startFileWatcher(directoryPath: String) {
@@ -492,7 +756,14 @@ object OrderIn {
             return
         }
 
+        val generation = ++watcherGeneration
         val watcherThread = Thread {
+            // Debounces events per file and parses settled files off the watcher thread
+            val coalescer = FileEventCoalescer(watcherQuietPeriodMs, maxInFlightFiles) { fullPath ->
+                // XML and JSON files may both hold several orders; the ledger skips known files
+                notifyNewOrders(acceptImport(importFile(fullPath)))
+            }
+
             try {
                 val watchPath = Paths.get(directoryPath)
 
@@ -512,18 +783,37 @@ object OrderIn {
                 println("Started watching directory: ${watchPath.toAbsolutePath()}")
                 isWatching = true
 
-                while (isWatching) {
-                    val key: WatchKey = try {
-                        watchService?.take() ?: break
+                // Catch files dropped between the initial load and registration
+                reconcile(watchPath, coalescer, "startup")
+                var lastReconcile = System.currentTimeMillis()
+
+                while (isWatching && generation == watcherGeneration) {
+                    val key: WatchKey? = try {
+                        val service = watchService ?: break
+                        val interval = reconcileIntervalMs
+                        if (interval > 0) service.poll(interval, TimeUnit.MILLISECONDS) else service.take()
                     } catch (e: InterruptedException) {
                         println("File watcher interrupted")
                         break
                     }
 
+                    val interval = reconcileIntervalMs
+                    if (interval > 0 && System.currentTimeMillis() - lastReconcile >= interval) {
+                        reconcile(watchPath, coalescer, "periodic")
+                        lastReconcile = System.currentTimeMillis()
+                    }
+
+                    if (key == null) {
+                        continue
+                    }
+
+                    var overflowed = false
                     for (event in key.pollEvents()) {
                         val kind = event.kind()
 
                         if (kind == StandardWatchEventKinds.OVERFLOW) {
+                            // The kernel dropped events; recover by diffing the directory below
+                            overflowed = true
                             continue
                         }
 
@@ -541,33 +831,18 @@ object OrderIn {
                             if (kind == StandardWatchEventKinds.ENTRY_CREATE ||
                                 kind == StandardWatchEventKinds.ENTRY_MODIFY
                             ) {
-                                // Small delay to ensure the file is completely written
-                                Thread.sleep(100)
-
-                                val fullPath = watchPath.resolve(fileName)
-                                val fileKey = fileName.toString()
-
-                                if (!processedFiles.contains(fileKey)) {
-                                    if (isXmlFile) {
-                                        // Handle XML files with potentially multiple orders
-                                        val newOrders = XmlOrderImporterAdapter.readAllOrders(fullPath.toString())
-                                        if (newOrders.isNotEmpty()) {
-                                            processedFiles.add(fileKey)
-                                            notifyNewOrders(newOrders)
-                                        }
-                                    } else {
-                                        // Handle JSON files (single order)
-                                        val newOrder = JsonOrderImporter.readOrder(fullPath.toString())
-                                        if (newOrder != null) {
-                                            processedFiles.add(fileKey)
-                                            notifyNewOrders(listOf(newOrder))
-                                        }
-                                    }
-                                }
+                                // Parsed once the file stops changing, so half-written files aren't read
+                                coalescer.submit(watchPath.resolve(fileName))
                             }
                         }
                     }
 
+                    if (overflowed) {
+                        overflows.incrementAndGet()
+                        reconcile(watchPath, coalescer, "overflow")
+                        lastReconcile = System.currentTimeMillis()
+                    }
+
                     val valid = key.reset()
                     if (!valid) {
                         println("Watch key no longer valid")
@@ -577,7 +852,10 @@ object OrderIn {
             } catch (e: Exception) {
                 System.err.println("Error in file watcher: ${e.message}")
             } finally {
-                isWatching = false
+                coalescer.close()
+                if (generation == watcherGeneration) {
+                    isWatching = false
+                }
                 println("File watcher stopped")
             }
         }
@@ -587,12 +865,39 @@ object OrderIn {
         watcherThread.start()
     }
 
+    // Diff the directory against the ingestion ledger and queue every upload it doesn't know.
+    // Queued files go through the normal debounce/parse path, so nothing is ingested twice.
+    private fun reconcile(watchPath: Path, coalescer: FileEventCoalescer, reason: String) {
+        reconciliations.incrementAndGet()
+        val ledger = ledger()
+        var missed = 0
+
+        try {
+            Files.newDirectoryStream(watchPath, "*.{json,xml}").use { stream ->
+                for (filePath in stream) {
+                    if (filePath.fileName.toString() != "orders_out.json" && !ledger.hasFile(filePath)) {
+                        coalescer.submit(filePath)
+                        missed++
+                    }
+                }
+            }
+        } catch (e: IOException) {
+            System.err.println("Error reconciling $watchPath: ${e.message}")
+        }
+
+        if (missed > 0) {
+            reconciledFiles.addAndGet(missed.toLong())
+            println("Reconciliation ($reason): queued $missed file(s) not yet ingested")
+        }
+    }
+
     fun startPollingWatcher(directoryPath: String) {
         if (isWatching) {
             println("Polling watcher is already running")
             return
         }
 
+        val generation = ++watcherGeneration
         val pollingThread = Thread {
             try {
                 val watchPath = Paths.get(directoryPath)
@@ -606,50 +911,34 @@ object OrderIn {
                 println("Started polling directory: ${watchPath.toAbsolutePath()}")
                 isWatching = true
 
-                var lastFiles = mutableSetOf<String>()
+                // Survives across sweeps, so only new or changed files are ever opened
+                val index = PollingIndex()
+                var interval = pollMinIntervalMs
 
-                while (isWatching) {
+                while (isWatching && generation == watcherGeneration) {
                     try {
-                        Thread.sleep(2000) // Poll for new orders every 2 seconds
-
-                        val currentFiles = mutableSetOf<String>()
-                        val newOrders = mutableListOf<Order>()
-
-                        Files.newDirectoryStream(watchPath, "*.{json,xml}").use { stream ->
-                            for (filePath in stream) {
-                                val fileName = filePath.fileName.toString()
-                                val isJsonFile = fileName.endsWith(".json") && fileName != "orders_out.json"
-                                val isXmlFile = fileName.endsWith(".xml")
-
-                                if (isJsonFile || isXmlFile) {
-                                    currentFiles.add(fileName)
-
-                                    if (!processedFiles.contains(fileName) && !lastFiles.contains(fileName)) {
-                                        if (isXmlFile) {
-                                            // Handle XML files with potentially multiple orders
-                                            val xmlOrders = XmlOrderImporterAdapter.readAllOrders(filePath.toString())
-                                            if (xmlOrders.isNotEmpty()) {
-                                                newOrders.addAll(xmlOrders)
-                                                processedFiles.add(fileName)
-                                            }
-                                        } else {
-                                            // Handle JSON files (single order)
-                                            val order = JsonOrderImporter.readOrder(filePath.toString())
-                                            if (order != null) {
-                                                newOrders.add(order)
-                                                processedFiles.add(fileName)
-                                            }
-                                        }
-                                    }
-                                }
-                            }
-                        }
+                        Thread.sleep(interval)
 
-                        if (newOrders.isNotEmpty()) {
-                            notifyNewOrders(newOrders)
+                        val sweep = index.sweep(watchPath) { it == "orders_out.json" }
+                        val parts = mutableListOf<Ingest>()
+                        val seen = HashSet<OrderFingerprint>()
+
+                        // Ready files have settled; files that fail to parse are quarantined
+                        for (filePath in sweep.ready) {
+                            // XML and JSON files may both hold several orders; the ledger skips known files
+                            parts.add(acceptImport(importFile(filePath), seen = seen))
                         }
 
-                        lastFiles = currentFiles
+                        notifyNewOrders(Ingest.of(parts))
+
+                        // Tighten while files are arriving, back off while the directory is idle
+                        interval = if (sweep.hasActivity()) {
+                            pollMinIntervalMs
+                        } else {
+                            minOf(interval * 2, pollMaxIntervalMs)
+                        }
+                        currentPollInterval = interval
+                        lastPollSweep = sweep
                     } catch (e: InterruptedException) {
                         println("Polling watcher interrupted")
                         break
@@ -660,7 +949,9 @@ object OrderIn {
             } catch (e: Exception) {
                 System.err.println("Error starting polling watcher: ${e.message}")
             } finally {
-                isWatching = false
+                if (generation == watcherGeneration) {
+                    isWatching = false
+                }
                 println("Polling watcher stopped")
             }
         }
@@ -681,16 +972,34 @@ object OrderIn {
         }
     }
 
-    private fun notifyNewOrders(newOrders: List<Order>) {
-        if (newOrders.isNotEmpty()) {
-            for (listener in listeners) {
-                try {
-                    listener.onOrdersUpdated(newOrders)
-                } catch (e: Exception) {
-                    System.err.println("Error notifying listener: ${e.message}")
-                }
+    // Hand new orders to the listeners and the ingest handler; their files are marked ingested
+    // once the handler reports them saved
+    private fun notifyNewOrders(ingest: Ingest) {
+        val newOrders = ingest.orders
+        if (newOrders.isEmpty()) {
+            ingest.complete(true)
+            return
+        }
+
+        for (listener in listeners) {
+            try {
+                listener.onOrdersUpdated(newOrders)
+            } catch (e: Exception) {
+                System.err.println("Error notifying listener: ${e.message}")
             }
         }
+
+        val handler = ingestHandler
+        if (handler == null) {
+            ingest.complete(true)
+            return
+        }
+        try {
+            handler.ingest(newOrders, ingest::complete)
+        } catch (e: Exception) {
+            System.err.println("Error handing over new orders: ${e.message}")
+            ingest.complete(false)
+        }
     }
 
     fun notifyReloadAllOrders(allOrders: List<Order>) {
@@ -703,8 +1012,96 @@ object OrderIn {
         }
     }
 
+    // Forget everything ingested so far (explicit reload); the on-disk ledger is emptied too
     fun clearProcessedFiles() {
-        processedFiles.clear()
+        try {
+            ledger().clear()
+        } catch (e: Exception) {
+            System.err.println("Error clearing ingestion ledger: ${e.message}")
+        }
+    }
+
+    // Switch to a ledger file at another location (tests, alternate working directories)
+    fun useLedger(filePath: String) {
+        synchronized(ledgerLock) {
+            ledger?.close()
+            ledger = IngestionLedger(Paths.get(filePath))
+        }
+    }
+
+    // Back to the ledger in the working directory, opened again on next use
+    fun useDefaultLedger() {
+        synchronized(ledgerLock) {
+            ledger?.close()
+            ledger = null
+        }
+    }
+
+    private fun ledger(): IngestionLedger {
+        synchronized(ledgerLock) {
+            return ledger ?: IngestionLedger(Paths.get(LEDGER_FILE)).also { ledger = it }
+        }
+    }
+
+    // Orders restored from state saved before uploads were tracked have no sourceFile. List the
+    // upload directory once and give each such order the file (and position in it) it was
+    // imported from, matched by fingerprint. Returns the lists that had an order filled in.
+    fun backfillSourceFiles(state: OrderPersistence.OrderState, directoryPath: String = "uploads"): Set<Order.OrderStatus> {
+        val missing = HashMap<OrderFingerprint, ArrayDeque<Pair<Order, Order.OrderStatus>>>()
+        fun collect(orders: List<Order>, status: Order.OrderStatus) = orders.forEach { order ->
+            if (order.sourceFile == null) {
+                missing.getOrPut(OrderFingerprint.of(order)) { ArrayDeque() }.add(order to status)
+            }
+        }
+        collect(state.pendingOrders, Order.OrderStatus.PENDING)
+        collect(state.inProgressOrders, Order.OrderStatus.IN_PROGRESS)
+        collect(PagedOrderList.loadedOrders(state.completedOrders), Order.OrderStatus.COMPLETED)
+
+        val dirPath = Paths.get(directoryPath)
+        if (missing.isEmpty() || !Files.isDirectory(dirPath)) {
+            return emptySet()
+        }
+
+        val changed = EnumSet.noneOf(Order.OrderStatus::class.java)
+        var found = 0
+        try {
+            val files = Files.newDirectoryStream(dirPath, "*.{json,xml}").use { stream ->
+                stream.filter { it.fileName.toString() != "orders_out.json" }.sortedBy { it.fileName.toString() }
+            }
+            for (file in files) {
+                val importer = if (xmlImporter.canImport(file.fileName.toString())) xmlImporter else jsonImporter
+                var index = 0
+                try {
+                    importer.forEachOrder(file.toString()) { parsed ->
+                        val match = missing[OrderFingerprint.of(parsed)]?.removeFirstOrNull()
+                        if (match != null) {
+                            val (order, status) = match
+                            order.sourceFile = file.toString()
+                            order.sourceIndex = parsed.sourceIndex ?: index
+                            changed.add(status)
+                            found++
+                        }
+                        index++
+                    }
+                } catch (e: Exception) {
+                    System.err.println("Error reading $file while looking up source files: ${e.message}")
+                }
+            }
+        } catch (e: IOException) {
+            System.err.println("Error listing $dirPath while looking up source files: ${e.message}")
+        }
+
+        if (found > 0) {
+            println("Source files found for $found restored order(s)")
+        }
+        return changed
+    }
+
+    // Register orders restored from saved state so re-reading their upload files doesn't ingest them again
+    fun rememberIngested(orders: Collection<Order>) {
+        val ledger = ledger()
+        orders.forEach { ledger.addOrder(OrderFingerprint.of(it)) }
+        ledger.sync()
     }
 
     // Inner class for OrderWrapper
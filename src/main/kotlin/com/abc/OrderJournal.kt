@@ -0,0 +1,270 @@
+package com.abc
+
+import com.fasterxml.jackson.annotation.JsonInclude
+import com.fasterxml.jackson.databind.DeserializationFeature
+import com.fasterxml.jackson.databind.ObjectMapper
+import java.io.BufferedWriter
+import java.io.Closeable
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+import java.nio.file.StandardOpenOption
+
+// Append-only log of order state changes, one compact JSON record per line. In journal mode
+// a transition costs one appended line instead of a rewrite of the whole state file; the state
+// is rebuilt on load as the last snapshot plus a replay of the journal.
+//
+// Orders are addressed by id. Records written before orders had ids carry only the content
+// fingerprint, which was unique among the live orders then. Every record sets state rather than
+// toggling it, so replaying records that a snapshot already
+// contains ends in the same state; a crash between snapshot and journal cleanup is harmless.
+class OrderJournal(private val path: Path) : Closeable {
+
+    enum class Op { ADD, START, COMPLETE, UNDO_START, UNDO_COMPLETE, DELETE, EDIT }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    data class Record(
+        var op: Op = Op.ADD,
+        var fp: String? = null,         // fingerprint of the order before the change
+        var id: Long? = null,           // id of the order (none in records written before ids)
+        var order: Order? = null,       // ADD: the new order
+        var items: List<Item>? = null,  // EDIT: the replacement items
+        var from: Order.OrderStatus? = null  // DELETE, EDIT: the list the order was in
+    ) {
+        // Status lists the change touches (all of them if a record doesn't say)
+        fun changedLists(): Set<Order.OrderStatus> = when (op) {
+            Op.ADD -> setOf(Order.OrderStatus.PENDING)
+            Op.START, Op.UNDO_START -> setOf(Order.OrderStatus.PENDING, Order.OrderStatus.IN_PROGRESS)
+            Op.COMPLETE, Op.UNDO_COMPLETE -> setOf(Order.OrderStatus.IN_PROGRESS, Order.OrderStatus.COMPLETED)
+            Op.DELETE, Op.EDIT -> from?.let { setOf(it) } ?: Order.OrderStatus.entries.toSet()
+        }
+
+        // Copy with its own order and items, for writing out later
+        fun detached(): Record = copy(order = order?.detached(), items = items?.map { it.copy() })
+
+        companion object {
+            fun add(order: Order) = Record(Op.ADD, order = order)
+            fun transition(op: Op, fingerprint: OrderFingerprint, id: Long) =
+                Record(op, fp = fingerprint.toString(), id = id.takeIf { it != 0L })
+            fun delete(fingerprint: OrderFingerprint, id: Long, from: Order.OrderStatus) =
+                Record(Op.DELETE, fp = fingerprint.toString(), id = id.takeIf { it != 0L }, from = from)
+            fun edit(fingerprint: OrderFingerprint, id: Long, items: List<Item>, from: Order.OrderStatus) =
+                Record(Op.EDIT, fp = fingerprint.toString(), id = id.takeIf { it != 0L }, items = items, from = from)
+        }
+    }
+
+    private val mapper = ObjectMapper().apply {
+        configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+    }
+
+    // Records handed over to the snapshot writer; deleted once the snapshot is on disk
+    private val sealedPath = path.resolveSibling("${path.fileName}.sealed")
+    private var writer: BufferedWriter? = null
+    private var appended = 0
+
+    // Records appended since the journal was last sealed
+    val pendingRecords: Int
+        @Synchronized get() = appended
+
+    fun exists(): Boolean = Files.exists(path) || Files.exists(sealedPath)
+
+    @Synchronized
+    fun append(records: List<Record>): Boolean {
+        if (records.isEmpty()) return true
+        return try {
+            val out = writer ?: Files.newBufferedWriter(
+                path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND
+            ).also { writer = it }
+            for (record in records) {
+                out.write(mapper.writeValueAsString(record))
+                out.newLine()
+            }
+            out.flush()
+            appended += records.size
+            true
+        } catch (e: IOException) {
+            System.err.println("Error appending to order journal: ${e.message}")
+            false
+        }
+    }
+
+    // Hand the current records to a snapshot: they move to the sealed file and appends start a new
+    // journal. If an earlier snapshot never finished, its sealed records are kept and these are added.
+    @Synchronized
+    fun seal() {
+        closeWriter()
+        appended = 0
+        if (!Files.exists(path)) return
+
+        if (Files.exists(sealedPath)) {
+            Files.newOutputStream(sealedPath, StandardOpenOption.APPEND).use { out -> Files.copy(path, out) }
+            Files.delete(path)
+        } else {
+            Files.move(path, sealedPath, StandardCopyOption.ATOMIC_MOVE)
+        }
+    }
+
+    // The snapshot covering the sealed records is saved
+    @Synchronized
+    fun deleteSealed() {
+        Files.deleteIfExists(sealedPath)
+    }
+
+    @Synchronized
+    fun clear() {
+        closeWriter()
+        appended = 0
+        Files.deleteIfExists(sealedPath)
+        Files.deleteIfExists(path)
+    }
+
+    @Synchronized
+    override fun close() {
+        closeWriter()
+    }
+
+    // Apply the sealed and then the live records on top of a loaded snapshot. A lazily loaded
+    // completed list is only decoded if a record needs an order that isn't found elsewhere.
+    @Synchronized
+    fun replay(snapshot: OrderPersistence.OrderState): OrderPersistence.OrderState {
+        fun mutable(orders: List<Order>): MutableList<Order> = orders as? PagedOrderList ?: orders.toMutableList()
+        val lists = mapOf(
+            Order.OrderStatus.PENDING to mutable(snapshot.pendingOrders),
+            Order.OrderStatus.IN_PROGRESS to mutable(snapshot.inProgressOrders),
+            Order.OrderStatus.COMPLETED to mutable(snapshot.completedOrders)
+        )
+        val index = ReplayIndex(lists)
+
+        var applied = 0
+        closeWriter()
+        for (file in listOf(sealedPath, path)) {
+            if (!Files.exists(file)) continue
+            Files.newBufferedReader(file).use { reader ->
+                reader.lineSequence().filter { it.isNotBlank() }.forEach { line ->
+                    val record = try {
+                        mapper.readValue(line, Record::class.java)
+                    } catch (e: Exception) {
+                        // A torn last line from a crash mid-append; everything before it is intact
+                        System.err.println("Skipping unreadable journal record in $file: ${e.message}")
+                        return@forEach
+                    }
+                    if (apply(record, lists, index)) applied++
+                }
+            }
+        }
+
+        if (applied > 0) {
+            println("Replayed $applied journal record(s)")
+        }
+        return OrderPersistence.OrderState(
+            lists.getValue(Order.OrderStatus.PENDING),
+            lists.getValue(Order.OrderStatus.IN_PROGRESS),
+            lists.getValue(Order.OrderStatus.COMPLETED)
+        )
+    }
+
+    // Orders by id and by fingerprint. The orders of a paged completed list that aren't loaded
+    // yet are only indexed once a lookup misses everything else.
+    private class ReplayIndex(private val lists: Map<Order.OrderStatus, MutableList<Order>>) {
+        private val byId = HashMap<Long, Order>()
+        private val byFingerprint = HashMap<String, MutableList<Order>>()
+        private var completedIndexed = lists.getValue(Order.OrderStatus.COMPLETED) !is PagedOrderList
+
+        init {
+            // Snapshot orders sit in the list of their section, whatever their status field says
+            lists.forEach { (status, orders) ->
+                PagedOrderList.loadedOrders(orders).forEach { order ->
+                    order.status = status
+                    add(order)
+                }
+            }
+        }
+
+        fun add(order: Order) {
+            if (order.id != 0L) byId[order.id] = order
+            byFingerprint.getOrPut(OrderFingerprint.of(order).toString()) { mutableListOf() }.add(order)
+        }
+
+        // Call before the order's content changes
+        fun remove(order: Order) {
+            if (order.id != 0L) byId.remove(order.id)
+            byFingerprint[OrderFingerprint.of(order).toString()]?.removeIf { it === order }
+        }
+
+        fun find(id: Long?, fingerprint: String?): Order? {
+            lookUp(id, fingerprint)?.let { return it }
+            if (completedIndexed) return null
+
+            completedIndexed = true
+            val completed = lists.getValue(Order.OrderStatus.COMPLETED) as PagedOrderList
+            for (i in completed.indices) {
+                if (!completed.isLoaded(i)) {
+                    completed[i].also { it.status = Order.OrderStatus.COMPLETED }.let(::add)
+                }
+            }
+            return lookUp(id, fingerprint)
+        }
+
+        // A record without an id may mean any order with that content; one with an id falls back
+        // to content only for orders saved before they had ids
+        private fun lookUp(id: Long?, fingerprint: String?): Order? {
+            if (id != null) byId[id]?.let { return it }
+            val candidates = fingerprint?.let { byFingerprint[it] } ?: return null
+            return if (id == null) candidates.firstOrNull() else candidates.firstOrNull { it.id == 0L }
+        }
+    }
+
+    private fun apply(record: Record, lists: Map<Order.OrderStatus, MutableList<Order>>, index: ReplayIndex): Boolean {
+        if (record.op == Op.ADD) {
+            val order = record.order ?: return false
+            if (index.find(order.id.takeIf { it != 0L }, OrderFingerprint.of(order).toString()) != null) return false
+            order.status = Order.OrderStatus.PENDING
+            lists.getValue(Order.OrderStatus.PENDING).add(order)
+            index.add(order)
+            return true
+        }
+
+        val order = index.find(record.id, record.fp) ?: return false
+        when (record.op) {
+            Op.DELETE -> {
+                removeInstance(lists.getValue(order.status), order)
+                index.remove(order)
+            }
+            Op.EDIT -> {
+                index.remove(order)
+                order.items = record.items
+                index.add(order)
+            }
+            else -> {
+                val target = targetStatus(record.op)
+                if (order.status == target) return false
+                removeInstance(lists.getValue(order.status), order)
+                order.status = target
+                lists.getValue(target).add(order)
+            }
+        }
+        return true
+    }
+
+    // Remove this exact order; another with equal content may be in the same list
+    private fun removeInstance(orders: MutableList<Order>, order: Order) {
+        val index = (orders as? PagedOrderList)?.indexOfInstance(order) ?: orders.indexOfFirst { it === order }
+        if (index >= 0) orders.removeAt(index)
+    }
+
+    private fun targetStatus(op: Op): Order.OrderStatus = when (op) {
+        Op.START, Op.UNDO_COMPLETE -> Order.OrderStatus.IN_PROGRESS
+        Op.COMPLETE -> Order.OrderStatus.COMPLETED
+        else -> Order.OrderStatus.PENDING
+    }
+
+    private fun closeWriter() {
+        try {
+            writer?.close()
+        } catch (e: IOException) {
+            System.err.println("Error closing order journal: ${e.message}")
+        }
+        writer = null
+    }
+}
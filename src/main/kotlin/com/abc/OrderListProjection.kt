@@ -0,0 +1,33 @@
+package com.abc
+
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.Executor
+import java.util.concurrent.atomic.AtomicBoolean
+
+// Replays changes to the order lists onto their observable copies on the FX thread. Changes are
+// queued by whichever thread made them and applied in order by one task on the executor, so a
+// burst of changes costs a single Platform.runLater and lands together in the next pulse.
+class OrderListProjection(private val executor: Executor) {
+    private val changes = ConcurrentLinkedQueue<() -> Unit>()
+    private val scheduled = AtomicBoolean(false)
+
+    fun post(change: () -> Unit) {
+        changes.add(change)
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(::applyChanges)
+        }
+    }
+
+    private fun applyChanges() {
+        // Cleared first, so a change posted while this runs schedules another pass
+        scheduled.set(false)
+        while (true) {
+            val change = changes.poll() ?: break
+            try {
+                change()
+            } catch (e: Exception) {
+                System.err.println("Error updating order lists: ${e.message}")
+            }
+        }
+    }
+}
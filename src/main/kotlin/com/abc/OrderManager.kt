@@ -1,204 +1,336 @@
 package com.abc
 
+import javafx.application.Platform
 import javafx.collections.FXCollections
 import javafx.collections.ObservableList
+import java.util.Collections
+import java.util.EnumMap
+import java.util.IdentityHashMap
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.Executor
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+
+//Thread-safe: changes may come from any thread and are applied one at a time under a writer
+//lock; lookups by id and status read the repository without locking. The observable lists are
+//a read-only projection, updated on the FX thread (fxExecutor) in batches.
+class OrderManager(fxExecutor: Executor = Executor { Platform.runLater(it) }) {
+
+    private val lock = ReentrantLock()
+
+    // The lists themselves, in arrival order; only touched under the lock.
+    // Completed orders can be restored as a paged list.
+    private val pendingList = ArrayList<Order>()
+    private val inProgressList = ArrayList<Order>()
+    private val completedPages = PagedOrderList()
+
+    // Observable lists for UI binding; the projection copies every list change onto them.
+    // Don't change them directly.
+    private val projection = OrderListProjection(fxExecutor)
+    val pendingOrders: ObservableList<Order> = FXCollections.observableArrayList()
+    val inProgressOrders: ObservableList<Order> = FXCollections.observableArrayList()
+    // Resolves the completed orders it hasn't loaded through completedPages, so both hold the same instances
+    private val completedView = PagedObservableList(PagedOrderList())
+    val completedOrders: ObservableList<Order> = completedView
 
+    // Every order in the lists by id and status, with content fingerprints for duplicate checks
+    private val repository = OrderRepository()
 
-class OrderManager {
+    // Count, revenue and item units per list, changed along with the lists (under the lock) and
+    // published as a copy for reading without it
+    private val summaries = EnumMap<Order.OrderStatus, OrderSummary>(Order.OrderStatus::class.java).apply {
+        Order.OrderStatus.entries.forEach { put(it, OrderSummary.EMPTY) }
+    }
+    @Volatile
+    private var publishedSummaries: Map<Order.OrderStatus, OrderSummary> = EnumMap(summaries)
+    private val summaryUpdatePosted = AtomicBoolean(false)
+
+    //Called on the FX thread, with the projection, after the summaries changed
+    @Volatile
+    var onSummaryChanged: ((Map<Order.OrderStatus, OrderSummary>) -> Unit)? = null
+
+    //Run action on the FX thread once the projection shows every change made so far, e.g. to
+    //refresh views that read the observable lists or their tables' selection after an action
+    fun whenProjected(action: () -> Unit) {
+        projection.post(action)
+    }
 
-    // Observable lists for UI binding
-    val pendingOrders: ObservableList<Order> = FXCollections.observableArrayList()
-    val inProgressOrders: ObservableList<Order> = FXCollections.observableArrayList()
-    val completedOrders: ObservableList<Order> = FXCollections.observableArrayList()
+    // Ids of the tracked orders imported from each source file, so deleting one order of a
+    // multi-order file leaves the file to the others. Includes completed orders not loaded yet
+    // when the saved state could tell their files.
+    private val ordersBySourceFile = HashMap<String, MutableSet<Long>>()
+    // Completed orders of unknown files are paged out; until they're loaded any file may be theirs
+    private var completedFilesUnknown = false
+
+    init {
+        // Completed orders decoded later join the repository as they're loaded (always under the lock)
+        completedPages.onLoad = {
+            repository.attach(it, Order.OrderStatus.COMPLETED)
+            trackOrderFile(it)
+        }
+    }
+
+    //Loading & Ingest
+    //Restore orders from saved state into their lists.
+    //A lazily loaded completed list is taken over as it is; its projection gets it as one replace.
+    fun restoreState(state: OrderPersistence.OrderState) = lock.withLock {
+        addToList(Order.OrderStatus.PENDING, state.pendingOrders)
+        addToList(Order.OrderStatus.IN_PROGRESS, state.inProgressOrders)
+        val completed = state.completedOrders
+        if (completed is PagedOrderList && completedPages.isEmpty()) {
+            completedPages.takeOver(completed)
+            // Summed by the decoder when it can be; otherwise once from a throwaway copy
+            changeSummary(Order.OrderStatus.COMPLETED) { it + (completed.summary ?: OrderSummary.of(completed.copy())) }
+            // Files of the orders not loaded yet, from the decoder when it can tell
+            val files = completed.sourceFiles
+            if (files != null) {
+                files.forEach { (file, ids) -> ordersBySourceFile.getOrPut(file) { HashSet() }.addAll(ids) }
+            } else {
+                completedFilesUnknown = completed.isNotEmpty()
+            }
+            val view = completedPages.withLoader { offset, _ -> lock.withLock { completedPages.sourcePage(offset) } }
+            projection.post { completedView.replaceWith(view) }
+        } else {
+            addToList(Order.OrderStatus.COMPLETED, completed)
+        }
 
-    // Track which orders came from which files for deletion
-    private val orderToFileMap = mutableMapOf<Order, String>()
+        // Completed orders not loaded yet join the repository when they're read; the ingestion
+        // ledger already rejects their uploads. Saved orders without an id get one here.
+        restore(state.pendingOrders, Order.OrderStatus.PENDING)
+        restore(state.inProgressOrders, Order.OrderStatus.IN_PROGRESS)
+        restore(PagedOrderList.loadedOrders(completed), Order.OrderStatus.COMPLETED)
+    }
+
+    private fun restore(orders: List<Order>, status: Order.OrderStatus) {
+        orders.forEach { order ->
+            repository.insert(order, status, allowDuplicate = true)
+            trackOrderFile(order)
+        }
+    }
+
+    //Add newly ingested orders as pending, skipping any already in a list. Returns the orders added.
+    //onSaved gets whether the change was written, once it is (true right away if nothing was added);
+    //it runs on the persistence writer thread in async mode.
+    @JvmOverloads
+    fun addOrders(orders: List<Order>, onSaved: (Boolean) -> Unit = {}): List<Order> {
+        val added: List<Order>
+        val saved: CompletableFuture<Boolean>
+        lock.withLock {
+            added = orders.filter { repository.insert(it, Order.OrderStatus.PENDING) }
+            if (added.isEmpty()) {
+                saved = CompletableFuture.completedFuture(true)
+            } else {
+                added.forEach { order ->
+                    order.status = Order.OrderStatus.PENDING
+                    trackOrderFile(order)
+                }
+                addToList(Order.OrderStatus.PENDING, added)
+
+                saved = persist(added.map { OrderJournal.Record.add(it) })
+            }
+        }
+        saved.whenComplete { written, _ -> onSaved(written == true) }
+        return added
+    }
 
     //Strategy pattern helper for executing order state transitions
     private fun executeOrderTransition(
         order: Order,
-        sourceList: ObservableList<Order>,
-        targetList: ObservableList<Order>?,
+        sourceStatus: Order.OrderStatus,
         newStatus: Order.OrderStatus?,
         validationMessage: String,
         successMessage: String,
+        journalOp: OrderJournal.Op,
         additionalAction: ((Order) -> Unit)? = null
-    ): OperationResult {
-        if (!sourceList.contains(order)) {
+    ): OperationResult = lock.withLock {
+        if (repository.statusOf(order) != sourceStatus) {
             return OperationResult.failure(validationMessage)
         }
 
+        // Taken before the action, which may drop the order from the repository
+        val fingerprint = repository.fingerprintOf(order)
+
         // Execute additional action (like file deletion) before moving
         additionalAction?.invoke(order)
 
-        // Update status if provided
-        newStatus?.let { order.status = it }
-
-        // Move order between lists
-        sourceList.remove(order)
-        targetList?.add(order)
+        // Move the order in the repository, then in the projections (no status = deleting)
+        removeFromList(sourceStatus, order)
+        newStatus?.let {
+            order.status = it
+            repository.move(order, it)
+            addToList(it, listOf(order))
+        }
 
         // Persist changes after state transition
-        OrderPersistence.saveOrderState(
-            pendingOrders.toList(),
-            inProgressOrders.toList(),
-            completedOrders.toList()
-        )
+        persist(listOf(
+            if (journalOp == OrderJournal.Op.DELETE) OrderJournal.Record.delete(fingerprint, order.id, order.status)
+            else OrderJournal.Record.transition(journalOp, fingerprint, order.id)
+        ))
 
         return OperationResult.success(successMessage)
     }
 
+    //Batch version of executeOrderTransition: validates every order first, then moves the valid
+    //ones with one removal from the source list and one addition to the target list (one change
+    //event each) and persists once. ALL_OR_NOTHING changes nothing if any order fails validation.
+    private fun executeBatchTransition(
+        orders: List<Order>,
+        sourceStatus: Order.OrderStatus,
+        newStatus: Order.OrderStatus,
+        validationMessage: String,
+        journalOp: OrderJournal.Op,
+        mode: BatchMode
+    ): BatchOperationResult = lock.withLock {
+        val moving = ArrayList<Order>(orders.size)
+        val seen = Collections.newSetFromMap(IdentityHashMap<Order, Boolean>())
+        val failures = mutableListOf<String>()
+        for (order in orders) {
+            // An order listed twice fails the second time, as it would moving one at a time
+            if (repository.statusOf(order) == sourceStatus && seen.add(order)) {
+                moving.add(order)
+            } else {
+                failures.add("Failed: ${order.source} - $validationMessage")
+            }
+        }
+
+        if (failures.isNotEmpty() && mode == BatchMode.ALL_OR_NOTHING) {
+            failures.add("No orders changed: ${failures.size} of ${orders.size} failed validation")
+            return BatchOperationResult(successCount = 0, failureCount = orders.size, details = failures)
+        }
+        if (moving.isEmpty()) {
+            return BatchOperationResult(successCount = 0, failureCount = failures.size, details = failures)
+        }
+
+        val records = moving.map { OrderJournal.Record.transition(journalOp, repository.fingerprintOf(it), it.id) }
+        removeAllFromList(sourceStatus, seen)
+        moving.forEach { order ->
+            order.status = newStatus
+            repository.move(order, newStatus)
+        }
+        addToList(newStatus, moving)
+
+        persist(records)
+
+        return BatchOperationResult(
+            successCount = moving.size,
+            failureCount = failures.size,
+            details = failures
+        )
+    }
+
     //Order State Transitions
     fun startOrder(order: Order): OperationResult {
         return executeOrderTransition(
             order = order,
-            sourceList = pendingOrders,
-            targetList = inProgressOrders,
+            sourceStatus = Order.OrderStatus.PENDING,
             newStatus = Order.OrderStatus.IN_PROGRESS,
             validationMessage = "Order not found in pending list",
-            successMessage = "Order moved to In-Progress"
+            successMessage = "Order moved to In-Progress",
+            journalOp = OrderJournal.Op.START
         )
     }
 
-    fun startOrders(orders: List<Order>): BatchOperationResult {
-        val results = mutableListOf<String>()
-        var successCount = 0
-
-        for (order in orders) {
-            val result = startOrder(order)
-            if (result.success) {
-                successCount++
-            } else {
-                results.add("Failed: ${order.source} - ${result.message}")
-            }
-        }
-
-        return BatchOperationResult(
-            successCount = successCount,
-            failureCount = orders.size - successCount,
-            details = results
+    fun startOrders(orders: List<Order>, mode: BatchMode = BatchMode.BEST_EFFORT): BatchOperationResult {
+        return executeBatchTransition(
+            orders = orders,
+            sourceStatus = Order.OrderStatus.PENDING,
+            newStatus = Order.OrderStatus.IN_PROGRESS,
+            validationMessage = "Order not found in pending list",
+            journalOp = OrderJournal.Op.START,
+            mode = mode
         )
     }
 
     fun completeOrder(order: Order): OperationResult {
         return executeOrderTransition(
             order = order,
-            sourceList = inProgressOrders,
-            targetList = completedOrders,
+            sourceStatus = Order.OrderStatus.IN_PROGRESS,
             newStatus = Order.OrderStatus.COMPLETED,
             validationMessage = "Order not found in in-progress list",
-            successMessage = "Order marked as completed"
+            successMessage = "Order marked as completed",
+            journalOp = OrderJournal.Op.COMPLETE
         )
     }
 
-    fun completeOrders(orders: List<Order>): BatchOperationResult {
-        val results = mutableListOf<String>()
-        var successCount = 0
-
-        for (order in orders) {
-            val result = completeOrder(order)
-            if (result.success) {
-                successCount++
-            } else {
-                results.add("Failed: ${order.source} - ${result.message}")
-            }
-        }
-
-        return BatchOperationResult(
-            successCount = successCount,
-            failureCount = orders.size - successCount,
-            details = results
+    fun completeOrders(orders: List<Order>, mode: BatchMode = BatchMode.BEST_EFFORT): BatchOperationResult {
+        return executeBatchTransition(
+            orders = orders,
+            sourceStatus = Order.OrderStatus.IN_PROGRESS,
+            newStatus = Order.OrderStatus.COMPLETED,
+            validationMessage = "Order not found in in-progress list",
+            journalOp = OrderJournal.Op.COMPLETE,
+            mode = mode
         )
     }
 
     fun undoStart(order: Order): OperationResult {
         return executeOrderTransition(
             order = order,
-            sourceList = inProgressOrders,
-            targetList = pendingOrders,
+            sourceStatus = Order.OrderStatus.IN_PROGRESS,
             newStatus = Order.OrderStatus.PENDING,
             validationMessage = "Order not found in in-progress list",
-            successMessage = "Order moved back to pending"
+            successMessage = "Order moved back to pending",
+            journalOp = OrderJournal.Op.UNDO_START
         )
     }
 
-    fun undoStartBatch(orders: List<Order>): BatchOperationResult {
-        val results = mutableListOf<String>()
-        var successCount = 0
-
-        for (order in orders) {
-            val result = undoStart(order)
-            if (result.success) {
-                successCount++
-            } else {
-                results.add("Failed: ${order.source} - ${result.message}")
-            }
-        }
-
-        return BatchOperationResult(
-            successCount = successCount,
-            failureCount = orders.size - successCount,
-            details = results
+    fun undoStartBatch(orders: List<Order>, mode: BatchMode = BatchMode.BEST_EFFORT): BatchOperationResult {
+        return executeBatchTransition(
+            orders = orders,
+            sourceStatus = Order.OrderStatus.IN_PROGRESS,
+            newStatus = Order.OrderStatus.PENDING,
+            validationMessage = "Order not found in in-progress list",
+            journalOp = OrderJournal.Op.UNDO_START,
+            mode = mode
         )
     }
 
     fun undoComplete(order: Order): OperationResult {
         return executeOrderTransition(
             order = order,
-            sourceList = completedOrders,
-            targetList = inProgressOrders,
+            sourceStatus = Order.OrderStatus.COMPLETED,
             newStatus = Order.OrderStatus.IN_PROGRESS,
             validationMessage = "Order not found in completed list",
-            successMessage = "Order moved back to in-progress"
+            successMessage = "Order moved back to in-progress",
+            journalOp = OrderJournal.Op.UNDO_COMPLETE
         )
     }
 
-    fun undoCompleteBatch(orders: List<Order>): BatchOperationResult {
-        val results = mutableListOf<String>()
-        var successCount = 0
-
-        for (order in orders) {
-            val result = undoComplete(order)
-            if (result.success) {
-                successCount++
-            } else {
-                results.add("Failed: ${order.source} - ${result.message}")
-            }
-        }
-
-        return BatchOperationResult(
-            successCount = successCount,
-            failureCount = orders.size - successCount,
-            details = results
+    fun undoCompleteBatch(orders: List<Order>, mode: BatchMode = BatchMode.BEST_EFFORT): BatchOperationResult {
+        return executeBatchTransition(
+            orders = orders,
+            sourceStatus = Order.OrderStatus.COMPLETED,
+            newStatus = Order.OrderStatus.IN_PROGRESS,
+            validationMessage = "Order not found in completed list",
+            journalOp = OrderJournal.Op.UNDO_COMPLETE,
+            mode = mode
         )
     }
 
     //Order Deletion
     fun deleteOrder(order: Order): DeletionResult {
         // Find which list contains the order
-        val sourceList = when {
-            pendingOrders.contains(order) -> pendingOrders
-            inProgressOrders.contains(order) -> inProgressOrders
-            completedOrders.contains(order) -> completedOrders
-            else -> return DeletionResult(
-                success = false,
-                fileDeleted = false,
-                message = "Order not found in any list"
-            )
-        }
+        val sourceStatus = repository.statusOf(order) ?: return DeletionResult(
+            success = false,
+            fileDeleted = false,
+            message = "Order not found in any list"
+        )
 
         // Use strategy pattern for deletion
         var fileDeleted = false
         val result = executeOrderTransition(
             order = order,
-            sourceList = sourceList,
-            targetList = null, // Deleting, not moving
-            newStatus = null,  // No status change needed
+            sourceStatus = sourceStatus,
+            newStatus = null,  // Deleting, not moving
             validationMessage = "Order not found",
             successMessage = "Order deleted",
+            journalOp = OrderJournal.Op.DELETE,
             additionalAction = { ord ->
-                fileDeleted = OrderFileManager.deleteOrderFile(ord, orderToFileMap)
-                orderToFileMap.remove(ord)
+                untrackOrderFile(ord)
+                fileDeleted = OrderFileManager.deleteOrderFile(ord, fileShared = isSourceFileShared(ord))
+                repository.remove(ord)
             }
         )
 
@@ -213,59 +345,215 @@ class OrderManager {
         )
     }
 
+    //Cancel a batch in one pass: the canceled orders are archived with one append, the lists
+    //and the saved state change once, and the source files (found through the provenance index)
+    //are deleted in parallel in the background. Returns without waiting for the deletes; the
+    //result's filesDeleted completes with how many went.
     fun deleteOrders(orders: List<Order>): BatchDeletionResult {
-        var filesDeletedCount = 0
-        var successCount = 0
-        val failures = mutableListOf<String>()
+        val (deleting, failures, fileDeletion) = lock.withLock { cancelOrders(orders) }
 
-        for (order in orders) {
-            val result = deleteOrder(order)
-            if (result.success) {
-                successCount++
-                if (result.fileDeleted) {
-                    filesDeletedCount++
-                }
-            } else {
-                failures.add("${order.source}: ${result.message}")
+        val filesDeleted = fileDeletion.handle { deleted, e ->
+            if (e != null) {
+                System.err.println("Error deleting source files: ${e.message}")
             }
+            deleted?.size ?: 0
         }
 
         return BatchDeletionResult(
-            successCount = successCount,
-            filesDeletedCount = filesDeletedCount,
+            successCount = deleting.size,
+            filesDeleted = filesDeleted,
             failures = failures
         )
     }
 
+    private fun cancelOrders(orders: List<Order>): Triple<List<Order>, List<String>, CompletableFuture<Set<String>>> {
+        val deleting = ArrayList<Order>(orders.size)
+        val seen = Collections.newSetFromMap(IdentityHashMap<Order, Boolean>())
+        val failures = mutableListOf<String>()
+        for (order in orders) {
+            if (repository.statusOf(order) != null && seen.add(order)) {
+                deleting.add(order)
+            } else {
+                failures.add("${order.source}: Order not found in any list")
+            }
+        }
+        if (deleting.isEmpty()) {
+            return Triple(deleting, failures, CompletableFuture.completedFuture(emptySet()))
+        }
+
+        // Archived under the lock and before anything is removed: if the append fails the whole
+        // batch stays as it is, and no other change can come between the archive and the removal
+        println("🗑️ Canceling ${deleting.size} orders")
+        if (!OrderPersistence.saveCanceledOrders(deleting)) {
+            deleting.forEach { failures.add("${it.source}: Could not be saved to the canceled orders archive") }
+            return Triple(emptyList(), failures, CompletableFuture.completedFuture(emptySet()))
+        }
+        println("   ✅ Orders saved to the canceled orders archive")
+
+        // Files still holding another tracked order are kept, as for a single delete
+        deleting.forEach(::untrackOrderFile)
+        val filesToDelete = deleting.mapNotNullTo(LinkedHashSet()) { order ->
+            order.sourceFile?.takeUnless { isSourceFileShared(order) }
+        }
+        val fileDeletion = OrderFileManager.deleteSourceFilesAsync(filesToDelete)
+
+        val records = deleting.map { OrderJournal.Record.delete(repository.fingerprintOf(it), it.id, it.status) }
+        deleting.groupBy { repository.statusOf(it)!! }.forEach { (status, group) ->
+            removeAllFromList(status, Collections.newSetFromMap(IdentityHashMap<Order, Boolean>()).apply { addAll(group) })
+        }
+        deleting.forEach { repository.remove(it) }
+        persist(records)
+
+        return Triple(deleting, failures, fileDeletion)
+    }
+
     //Order Updates
 
-    fun updateOrderItems(order: Order, newItems: List<Item>) {
-        order.items = newItems
+    //The order gets its own copies of the items; the caller's list and items stay the caller's
+    fun updateOrderItems(order: Order, newItems: List<Item>) = lock.withLock {
+        val fingerprint = repository.fingerprintOf(order)
+        val status = repository.statusOf(order)
+        status?.let { changeSummary(it) { summary -> summary - order } }
+        order.items = newItems.map { it.copy() }
+        order.refreshTotals()
+        status?.let { changeSummary(it) { summary -> summary + order } }
+        repository.refresh(order)
         // Persist changes after update
-        OrderPersistence.saveOrderState(
-            pendingOrders.toList(),
-            inProgressOrders.toList(),
-            completedOrders.toList()
-        )
+        persist(listOf(OrderJournal.Record.edit(fingerprint, order.id, order.getItemsOrEmpty(), order.status)))
     }
 
     // Helper Methods
-    //Track the file path associated with an order.
+    private fun listFor(status: Order.OrderStatus): MutableList<Order> = when (status) {
+        Order.OrderStatus.PENDING -> pendingList
+        Order.OrderStatus.IN_PROGRESS -> inProgressList
+        Order.OrderStatus.COMPLETED -> completedPages
+    }
+
+    private fun projectionFor(status: Order.OrderStatus): ObservableList<Order> = when (status) {
+        Order.OrderStatus.PENDING -> pendingOrders
+        Order.OrderStatus.IN_PROGRESS -> inProgressOrders
+        Order.OrderStatus.COMPLETED -> completedOrders
+    }
+
+    //Append orders to a list, and to its projection in the next projection batch
+    private fun addToList(status: Order.OrderStatus, orders: List<Order>) {
+        if (orders.isEmpty()) return
+        val added = orders.toList()
+        listFor(status).addAll(added)
+        changeSummary(status) { summary -> added.fold(summary) { sum, order -> sum + order } }
+        projection.post { projectionFor(status).addAll(added) }
+    }
+
+    //Drop an order from a list and its projection
+    private fun removeFromList(status: Order.OrderStatus, order: Order) {
+        removeInstance(listFor(status), order)
+        changeSummary(status) { it - order }
+        projection.post { removeInstance(projectionFor(status), order) }
+    }
+
+    //Drop a set of orders (an identity set) from a list and its projection
+    private fun removeAllFromList(status: Order.OrderStatus, orders: Set<Order>) {
+        removeAllInstances(listFor(status), orders)
+        changeSummary(status) { summary -> orders.fold(summary) { sum, order -> sum - order } }
+        projection.post { removeAllInstances(projectionFor(status), orders) }
+    }
+
+    //Update a list's summary, publish the summaries and tell the listener once per projection batch
+    private fun changeSummary(status: Order.OrderStatus, change: (OrderSummary) -> OrderSummary) {
+        summaries[status] = change(summaries.getValue(status))
+        publishedSummaries = EnumMap(summaries)
+        if (summaryUpdatePosted.compareAndSet(false, true)) {
+            projection.post {
+                summaryUpdatePosted.set(false)
+                onSummaryChanged?.invoke(publishedSummaries)
+            }
+        }
+    }
+
+    //Found by identity; the paged completed lists only look through loaded entries, so nothing
+    //is decoded to find it
+    private fun removeInstance(list: MutableList<Order>, order: Order) {
+        val index = when {
+            list === completedView -> completedView.indexOfInstance(order)
+            list is PagedOrderList -> list.indexOfInstance(order)
+            else -> list.indexOfFirst { it === order }
+        }
+        if (index >= 0) {
+            list.removeAt(index)
+        }
+    }
+
+    //The plain lists are filtered in one pass (a single change event for a projection); the paged
+    //completed lists are searched per order so the entries not loaded yet aren't decoded
+    private fun removeAllInstances(list: MutableList<Order>, orders: Set<Order>) {
+        if (list === completedView || list is PagedOrderList) {
+            orders.forEach { removeInstance(list, it) }
+        } else {
+            list.removeAll(orders)
+        }
+    }
+
+    //Write a change to the journal (journal mode) or save the full state; completes with whether it was written
+    private fun persist(records: List<OrderJournal.Record>): CompletableFuture<Boolean> {
+        return OrderPersistence.persistChange(records, ::currentState)
+    }
+
+    //The live lists (call under the lock); the paged completed list is passed as it is so
+    //nothing is decoded to save it
+    private fun currentState() = OrderPersistence.OrderState(pendingList, inProgressList, completedPages)
+
+    //Copy of the lists for reading off the FX thread. Completed orders not loaded yet stay that way.
+    fun snapshot(): OrderPersistence.OrderState = lock.withLock {
+        OrderPersistence.OrderState(pendingList.toList(), inProgressList.toList(), completedPages.copy())
+    }
+
+    //Fold the journal into a snapshot on shutdown, so the next start has nothing to replay
+    fun checkpoint(): Boolean = lock.withLock {
+        OrderPersistence.checkpoint(currentState())
+    }
+
+    //Track the file path associated with an order. It's recorded on the order at import; orders
+    //saved before that have none, and their file is left alone when they're deleted.
     internal fun trackOrderFile(order: Order) {
-        val filePath = OrderFileManager.findOrderFile(order)
-        if (filePath != null) {
-            orderToFileMap[order] = filePath
+        val filePath = order.sourceFile ?: return
+        ordersBySourceFile.getOrPut(filePath) { HashSet() }.add(order.id)
+    }
+
+    private fun untrackOrderFile(order: Order) {
+        val filePath = order.sourceFile ?: return
+        val ids = ordersBySourceFile[filePath] ?: return
+        ids.remove(order.id)
+        if (ids.isEmpty()) ordersBySourceFile.remove(filePath)
+    }
+
+    //True if other tracked orders were imported from the order's file (call after untracking it).
+    //While completed orders of unknown files are paged out, every file counts as shared.
+    private fun isSourceFileShared(order: Order): Boolean {
+        val filePath = order.sourceFile ?: return false
+        if (ordersBySourceFile.containsKey(filePath)) return true
+        if (completedFilesUnknown) {
+            completedFilesUnknown = !completedPages.isFullyLoaded()
         }
+        return completedFilesUnknown
     }
 
-    //Check if an order already exists in any list for duplicates
+    //Check if an order already exists in any list for duplicates (fingerprint lookup, O(1))
 
-    internal fun orderExists(order: Order): Boolean {
-        return pendingOrders.contains(order) ||
-                inProgressOrders.contains(order) ||
-                completedOrders.contains(order)
+    internal fun orderExists(order: Order): Boolean = lock.withLock {
+        repository.isDuplicate(order)
     }
 
+    //Look up a tracked order by id, without locking
+    fun findOrder(id: Long): Order? = repository[id]
+
+    //Count, revenue and item units of a list, without locking
+    fun summaryOf(status: Order.OrderStatus): OrderSummary = publishedSummaries.getValue(status)
+
+    fun summaries(): Map<Order.OrderStatus, OrderSummary> = publishedSummaries
+
+    //List an order is in, without locking; null if it isn't tracked
+    fun statusOf(order: Order): Order.OrderStatus? = repository.statusOf(order)
+
     //Result Data Classes
     data class OperationResult(
         val success: Boolean,
@@ -277,6 +565,13 @@ class OrderManager {
         }
     }
 
+    enum class BatchMode {
+        // Apply the batch only if every order can be moved
+        ALL_OR_NOTHING,
+        // Move the orders that can be, and report the rest
+        BEST_EFFORT
+    }
+
     data class BatchOperationResult(
         val successCount: Int,
         val failureCount: Int,
@@ -291,7 +586,7 @@ class OrderManager {
 
     data class BatchDeletionResult(
         val successCount: Int,
-        val filesDeletedCount: Int,
+        val filesDeleted: CompletableFuture<Int>,
         val failures: List<String>
     )
 }
\ No newline at end of file
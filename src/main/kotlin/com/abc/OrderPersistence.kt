@@ -3,9 +3,15 @@ package com.abc
 import com.fasterxml.jackson.databind.DeserializationFeature
 import com.fasterxml.jackson.databind.ObjectMapper
 import com.fasterxml.jackson.databind.SerializationFeature
-import java.io.File
-import java.nio.file.Files
+import java.nio.file.Path
 import java.nio.file.Paths
+import java.util.EnumMap
+import java.util.EnumSet
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicLong
 
 object OrderPersistence {
     private val mapper = ObjectMapper().apply {
@@ -13,8 +19,92 @@ object OrderPersistence {
         configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
     }
 
-    private const val PERSISTENCE_FILE = "orders_state.json"
-    private const val CANCELED_ORDERS_FILE = "canceledOrders.json"
+    private const val STORE_DB_FILE = "orders.mv.db"
+    internal const val JOURNAL_FILE = "orders_journal.ndjson"
+
+    // Journal mode: each change is appended to the journal and the state file is only rewritten
+    // as a periodic snapshot in the background. Off = every change rewrites the state file.
+    @Volatile
+    var journalEnabled: Boolean = false
+
+    // Journal records between background snapshots
+    @Volatile
+    var snapshotEveryRecords: Int = 500
+
+    enum class StateFormat { JSON, BINARY }
+
+    // Format new snapshots are written in; loading detects the format of the file on disk
+    @Volatile
+    var stateFormat: StateFormat = StateFormat.JSON
+
+    enum class Durability {
+        ALWAYS,  // fsync every snapshot
+        BATCHED, // fsync at most once per fsyncBatchIntervalMs
+        NEVER    // leave flushing to the OS
+    }
+
+    // When state snapshots are fsynced; BATCHED syncs at most once per fsyncBatchIntervalMs
+    @Volatile
+    var durability: Durability = Durability.ALWAYS
+
+    @Volatile
+    var fsyncBatchIntervalMs: Long = 1_000
+
+    // Days canceled orders are kept in the file store's archive before whole segments of them are
+    // dropped (0 keeps everything). Read when the store first opens its archive.
+    @Volatile
+    var canceledRetentionDays: Int = 0
+
+    // Async mode: changes go to the persistence writer thread and are committed in groups.
+    // Set before the first change; maxCommitLatencyMs/maxCommitBatch are read when the writer starts.
+    @Volatile
+    var asyncWrites: Boolean = false
+
+    @Volatile
+    var maxCommitLatencyMs: Long = 50
+
+    @Volatile
+    var maxCommitBatch: Int = 256
+
+    // Lazy mode: loading decodes pending and in-progress orders; completed orders are decoded a
+    // page at a time as they are read, and their items when first used. Needs a store that can
+    // page (binary snapshots, mvstore); with others everything is loaded as before.
+    @Volatile
+    var lazyLoading: Boolean = false
+
+    private val writer by lazy {
+        PersistenceWriter(maxCommitLatencyMs, maxCommitBatch) { records, state -> commitChange(records, copied = true) { state } }
+    }
+
+    // Storage backend for snapshots and canceled orders (file-based by default)
+    @Volatile
+    private var store: OrderStore? = null
+    private val storeLock = Any()
+
+    // Journal of changes since the last snapshot; in the working directory unless useJournal
+    // points it elsewhere. Opened on first use.
+    @Volatile
+    private var journal: OrderJournal? = null
+    private val journalLock = Any()
+    private val snapshotRunning = AtomicBoolean(false)
+
+    // Status lists changed since the state was last saved. A save writes only these, so editing
+    // one pending order doesn't rewrite the completed history. Until a load or a full save sets
+    // the baseline, everything counts as changed.
+    private val unsavedLists = EnumSet.allOf(Order.OrderStatus::class.java)
+    // Copies of the lists last handed to the writer in async mode, with the live list each was
+    // taken from. A copy is handed over again until a change touches its list, so a change copies
+    // only the lists it changed. stateRequested is set when the writer needed a state and got
+    // none; the next change then hands one over.
+    private class HandedOff(val source: List<Order>, val copy: List<Order>)
+    private val handedOff = EnumMap<Order.OrderStatus, HandedOff>(Order.OrderStatus::class.java)
+    private val staleCopies = EnumSet.noneOf(Order.OrderStatus::class.java)
+    @Volatile
+    private var stateRequested = false
+
+    private val snapshotExecutor = Executors.newSingleThreadExecutor { runnable ->
+        Thread(runnable, "Order-Snapshot").apply { isDaemon = true }
+    }
 
     data class OrderState(
         var pendingOrders: List<Order> = emptyList(),
@@ -22,40 +112,260 @@ object OrderPersistence {
         var completedOrders: List<Order> = emptyList()
     )
 
+    // Save all three lists
+    @Synchronized
     fun saveOrderState(pendingOrders: List<Order>, inProgressOrders: List<Order>, completedOrders: List<Order>): Boolean {
+        takeUnsavedLists()
+        return saveState(OrderState(pendingOrders, inProgressOrders, completedOrders), EnumSet.allOf(Order.OrderStatus::class.java))
+    }
+
+    // Save the changed lists of state; if that fails they stay marked for the next save
+    @Synchronized
+    private fun saveState(state: OrderState, changed: Set<Order.OrderStatus>): Boolean {
         return try {
-            mapper.writeValue(File(PERSISTENCE_FILE), OrderState(pendingOrders, inProgressOrders, completedOrders))
+            store().saveState(state, changed)
             println("Order state saved")
             true
         } catch (e: Exception) {
+            markUnsaved(changed)
             System.err.println("Error saving order state: ${e.message}")
             false
         }
     }
 
+    // Have the next save write these lists, e.g. after their orders were filled in on load
+    // without a change record
+    fun markUnsaved(lists: Collection<Order.OrderStatus>) {
+        synchronized(unsavedLists) { unsavedLists.addAll(lists) }
+    }
+
+    private fun takeUnsavedLists(): Set<Order.OrderStatus> {
+        synchronized(unsavedLists) {
+            return EnumSet.copyOf(unsavedLists).also { unsavedLists.clear() }
+        }
+    }
+
+    // Persist one change. In async mode it is queued for the writer thread with copies of the
+    // records, and of the orders if the writer will need them, since the orders go on changing
+    // while the writer saves them; otherwise it is committed right away. Completes with whether
+    // the change was written.
+    fun persistChange(records: List<OrderJournal.Record>, state: () -> OrderState): CompletableFuture<Boolean> {
+        if (asyncWrites) {
+            val changed = records.flatMapTo(EnumSet.noneOf(Order.OrderStatus::class.java)) { it.changedLists() }
+            return writer.submit(records.map { it.detached() }, handOff(changed, records.size, state))
+        }
+        return CompletableFuture.completedFuture(commitChange(records, state = state))
+    }
+
+    // The state for the writer, or null while it only appends to the journal. Lists this change
+    // or an earlier one touched are copied; the others share the copy handed over before.
+    private fun handOff(changed: Set<Order.OrderStatus>, recordCount: Int, state: () -> OrderState): OrderState? {
+        synchronized(handedOff) {
+            staleCopies.addAll(changed)
+            val needed = !journalEnabled || stateRequested ||
+                journal().pendingRecords + recordCount >= snapshotEveryRecords
+            if (!needed) {
+                return null
+            }
+            stateRequested = false
+
+            val live = state()
+            fun copyOf(orders: List<Order>, status: Order.OrderStatus): List<Order> {
+                val previous = handedOff[status]
+                if (previous != null && previous.source === orders && status !in staleCopies) {
+                    return previous.copy
+                }
+                return detached(orders).also { handedOff[status] = HandedOff(orders, it) }
+            }
+            val copy = OrderState(
+                copyOf(live.pendingOrders, Order.OrderStatus.PENDING),
+                copyOf(live.inProgressOrders, Order.OrderStatus.IN_PROGRESS),
+                copyOf(live.completedOrders, Order.OrderStatus.COMPLETED)
+            )
+            staleCopies.clear()
+            return copy
+        }
+    }
+
+    // Changes that couldn't be written, synchronously or on the writer thread
+    val failedChangeCount: Long
+        get() = failedChanges.get() + if (asyncWrites) writer.failedCommitCount else 0L
+    private val failedChanges = AtomicLong()
+
+    // A paged list is copied without decoding the entries that aren't loaded
+    private fun copyOf(orders: List<Order>): List<Order> = (orders as? PagedOrderList)?.copy() ?: orders.toList()
+
+    // Wait until every queued change is written, including a running snapshot (shutdown and tests)
+    fun flush(timeoutMs: Long = 10_000): Boolean {
+        val written = !asyncWrites || writer.flush(timeoutMs)
+        awaitSnapshot(timeoutMs)
+        return written
+    }
+
+    private fun commitChange(
+        records: List<OrderJournal.Record>,
+        copied: Boolean = false,
+        state: () -> OrderState?
+    ): Boolean {
+        return writeChange(records, copied, state).also { written ->
+            if (!written && !asyncWrites) failedChanges.incrementAndGet()
+        }
+    }
+
+    // In journal mode the records are appended and a snapshot is scheduled once enough have
+    // built up; otherwise the whole state is saved. state is only called when needed; copied
+    // means it is already a private copy. A null state (async mode, none handed over) asks the
+    // next change for one and puts off what needed it.
+    private fun writeChange(records: List<OrderJournal.Record>, copied: Boolean, state: () -> OrderState?): Boolean {
+        markUnsaved(records.flatMapTo(EnumSet.noneOf(Order.OrderStatus::class.java)) { it.changedLists() })
+
+        if (!journalEnabled) {
+            val current = state() ?: return false.also { stateRequested = true }
+            val saved = saveState(current, takeUnsavedLists())
+            // The state file now holds everything; an old journal must not be replayed over it
+            val journal = journal()
+            if (saved && journal.exists()) {
+                journal.clear()
+            }
+            return saved
+        }
+
+        if (!journal().append(records)) {
+            val current = state() ?: return false.also { stateRequested = true }
+            return saveState(current, takeUnsavedLists())
+        }
+        if (journal().pendingRecords >= snapshotEveryRecords) {
+            val current = state()
+            if (current != null) {
+                scheduleSnapshot(current, copied)
+            } else {
+                stateRequested = true
+            }
+        }
+        return true
+    }
+
+    // Seal the journal and write a snapshot of the given state on the snapshot thread.
+    // Skipped while a previous snapshot is still being written; the next change retries.
+    @JvmOverloads
+    fun scheduleSnapshot(state: OrderState, copied: Boolean = false) {
+        if (!snapshotRunning.compareAndSet(false, true)) {
+            return
+        }
+
+        // Everything changed since the last snapshot is in the sealed records
+        val changed = takeUnsavedLists()
+        try {
+            // Copied here, so edits made while the snapshot is written don't leak into it
+            val copy = if (copied) state else detach(state, changed)
+            val journal = journal()
+            journal.seal()
+            snapshotExecutor.execute {
+                try {
+                    if (saveState(copy, changed)) {
+                        journal.deleteSealed()
+                    }
+                } finally {
+                    snapshotRunning.set(false)
+                }
+            }
+        } catch (e: Exception) {
+            markUnsaved(changed)
+            snapshotRunning.set(false)
+            System.err.println("Error scheduling state snapshot: ${e.message}")
+        }
+    }
+
+    // Wait for a running background snapshot to finish (shutdown and tests)
+    fun awaitSnapshot(timeoutMs: Long = 10_000) {
+        snapshotExecutor.submit {}.get(timeoutMs, TimeUnit.MILLISECONDS)
+    }
+
+    // Deep copy of the changed lists; the others aren't written, so a copy of the list is enough
+    private fun detach(state: OrderState, changed: Set<Order.OrderStatus>): OrderState {
+        fun copyOf(orders: List<Order>, status: Order.OrderStatus): List<Order> =
+            if (status in changed) detached(orders) else copyOf(orders)
+        return OrderState(
+            copyOf(state.pendingOrders, Order.OrderStatus.PENDING),
+            copyOf(state.inProgressOrders, Order.OrderStatus.IN_PROGRESS),
+            copyOf(state.completedOrders, Order.OrderStatus.COMPLETED)
+        )
+    }
+
+    private fun detached(orders: List<Order>): List<Order> =
+        (orders as? PagedOrderList)?.mapLoaded(Order::detached) ?: orders.map(Order::detached)
+
+    // Write everything queued, then fold the journal into a fresh snapshot, so the next start has
+    // nothing to replay and can load lazily. Called on shutdown.
+    fun checkpoint(state: OrderState): Boolean {
+        flush()
+        val journal = journal()
+        if (!journal.exists()) {
+            return true
+        }
+        journal.seal()
+        val saved = saveState(state, takeUnsavedLists())
+        if (saved) {
+            journal.deleteSealed()
+        }
+        return saved
+    }
+
+    // Last snapshot plus a replay of the journal, if one exists. The result is the baseline for
+    // saving only changed lists, so this is for restoring the state being worked on.
     fun loadOrderState(): OrderState? {
         return try {
-            val filePath = Paths.get(PERSISTENCE_FILE)
-            if (!Files.exists(filePath)) {
-                return null
+            val stored = if (lazyLoading) store().loadStateLazily() else store().loadState()
+            val replayed = journal().exists()
+            val state = readState(stored)
+
+            // Lists as loaded are what the store holds, unless journal records were applied on top
+            synchronized(unsavedLists) {
+                unsavedLists.clear()
+                if (stored == null || replayed) unsavedLists.addAll(Order.OrderStatus.entries)
             }
+            // The lists are about to be refilled without change records; copies handed off earlier are stale
+            synchronized(handedOff) { staleCopies.addAll(Order.OrderStatus.entries) }
 
-            val state = mapper.readValue(filePath.toFile(), OrderState::class.java)
-            println("Loaded: ${state.pendingOrders.size} pending, ${state.inProgressOrders.size} in-progress, ${state.completedOrders.size} completed orders")
-            state
+            state?.also {
+                println("Loaded: ${it.pendingOrders.size} pending, ${it.inProgressOrders.size} in-progress, ${it.completedOrders.size} completed orders")
+            }
         } catch (e: Exception) {
             System.err.println("Error loading order state: ${e.message}")
             null
         }
     }
 
+    private fun readState(stored: OrderState?): OrderState? {
+        val journal = journal()
+        if (stored == null) {
+            return if (journal.exists()) journal.replay(OrderState()) else null
+        }
+        return if (journal.exists()) journal.replay(stored) else stored
+    }
+
+    // Write the saved state (either format, journal replayed) as indented JSON for inspection
+    fun exportStateAsJson(targetPath: String): Boolean {
+        return try {
+            val state = readState(store().loadState()) ?: return false
+            mapper.writeValue(Paths.get(targetPath).toFile(), state)
+            println("Order state exported to $targetPath")
+            true
+        } catch (e: Exception) {
+            System.err.println("Error exporting order state: ${e.message}")
+            false
+        }
+    }
+
     fun hasSavedState(): Boolean {
-        return Files.exists(Paths.get(PERSISTENCE_FILE))
+        return store().hasState() || journal().exists()
     }
 
     fun clearSavedState() {
         try {
-            Files.deleteIfExists(Paths.get(PERSISTENCE_FILE))
+            store().clearState()
+            journal().clear()
+            markUnsaved(Order.OrderStatus.entries)
             println("Saved order state cleared")
         } catch (e: Exception) {
             System.err.println("Error clearing saved state: ${e.message}")
@@ -64,10 +374,7 @@ object OrderPersistence {
 
     fun saveCanceledOrder(order: Order): Boolean {
         return try {
-            val canceledOrders = loadCanceledOrders().toMutableList()
-            canceledOrders.add(order)
-
-            mapper.writeValue(File(CANCELED_ORDERS_FILE), canceledOrders)
+            store().appendCanceled(listOf(order))
             println("Canceled order saved: ${order.source}")
             true
         } catch (e: Exception) {
@@ -76,36 +383,124 @@ object OrderPersistence {
         }
     }
 
-    fun loadCanceledOrders(): List<Order> {
+    // Archive a batch of canceled orders with one append
+    fun saveCanceledOrders(orders: List<Order>): Boolean {
+        if (orders.isEmpty()) return true
         return try {
-            val filePath = Paths.get(CANCELED_ORDERS_FILE)
-            if (!Files.exists(filePath)) {
-                return emptyList()
-            }
+            store().appendCanceled(orders)
+            println("Canceled orders saved: ${orders.size}")
+            true
+        } catch (e: Exception) {
+            System.err.println("Error saving canceled orders: ${e.message}")
+            false
+        }
+    }
+
+    // Reads the whole history; prefer forEachCanceledOrder or a page for large histories
+    fun loadCanceledOrders(): List<Order> {
+        val canceledOrders = mutableListOf<Order>()
+        forEachCanceledOrder { canceledOrders.add(it) }
+        println("Loaded ${canceledOrders.size} canceled orders")
+        return canceledOrders
+    }
 
-            val canceledOrders = mapper.readValue(
-                filePath.toFile(),
-                mapper.typeFactory.constructCollectionType(List::class.java, Order::class.java)
-            ) as? List<Order> ?: emptyList()
+    // One page of canceled orders, oldest first
+    fun loadCanceledOrders(offset: Int, limit: Int): List<Order> {
+        val page = mutableListOf<Order>()
+        try {
+            store().forEachCanceled(offset, limit) { page.add(it) }
+        } catch (e: Exception) {
+            System.err.println("Error loading canceled orders: ${e.message}")
+        }
+        return page
+    }
+
+    // The canceled history as a list that reads pages from the store on access (for a history view)
+    fun canceledOrdersView(): List<Order> {
+        return PagedOrderList(countCanceledOrders()) { offset, limit -> loadCanceledOrders(offset, limit) }
+    }
 
-            println("Loaded ${canceledOrders.size} canceled orders")
-            canceledOrders
+    fun forEachCanceledOrder(consumer: (Order) -> Unit) {
+        try {
+            store().forEachCanceled(0, Int.MAX_VALUE, consumer)
         } catch (e: Exception) {
             System.err.println("Error loading canceled orders: ${e.message}")
-            emptyList()
+        }
+    }
+
+    fun countCanceledOrders(): Int {
+        return try {
+            store().canceledCount()
+        } catch (e: Exception) {
+            System.err.println("Error reading canceled orders: ${e.message}")
+            0
         }
     }
 
     fun hasCanceledOrders(): Boolean {
-        return Files.exists(Paths.get(CANCELED_ORDERS_FILE))
+        return countCanceledOrders() > 0
     }
 
     fun clearCanceledOrders() {
         try {
-            Files.deleteIfExists(Paths.get(CANCELED_ORDERS_FILE))
+            store().clearCanceled()
             println("Canceled orders cleared")
         } catch (e: Exception) {
             System.err.println("Error clearing canceled orders: ${e.message}")
         }
     }
+
+    // Open a backend by name: "json" (files in the working directory) or "mvstore" (orders.mv.db)
+    fun openStore(name: String, directory: Path = Paths.get("")): OrderStore {
+        return when (name.lowercase()) {
+            "json" -> FileOrderStore(directory)
+            "mvstore" -> MVStoreOrderStore(directory.resolve(STORE_DB_FILE))
+            else -> throw IllegalArgumentException("Unknown order store: $name (expected json or mvstore)")
+        }
+    }
+
+    // Switch the backend; the previous one is flushed and closed
+    fun useStore(newStore: OrderStore) {
+        flush()
+        synchronized(storeLock) {
+            store?.close()
+            store = newStore
+        }
+        // The new store may hold other lists than the ones in memory
+        markUnsaved(Order.OrderStatus.entries)
+        println("Using ${newStore.name} order store")
+    }
+
+    // Switch to a journal file at another location (tests, stores outside the working directory).
+    // Queued changes are written to the previous journal first.
+    fun useJournal(filePath: String) {
+        flush()
+        synchronized(journalLock) {
+            journal?.close()
+            journal = OrderJournal(Paths.get(filePath))
+        }
+    }
+
+    // Back to the journal in the working directory, opened again on next use
+    fun useDefaultJournal() {
+        flush()
+        synchronized(journalLock) {
+            journal?.close()
+            journal = null
+        }
+    }
+
+    private fun journal(): OrderJournal {
+        journal?.let { return it }
+        synchronized(journalLock) {
+            return journal ?: OrderJournal(Paths.get(JOURNAL_FILE)).also { journal = it }
+        }
+    }
+
+    private fun store(): OrderStore {
+        store?.let { return it }
+        synchronized(storeLock) {
+            return store ?: FileOrderStore(Paths.get("")).also { store = it }
+        }
+    }
 }
@@ -0,0 +1,81 @@
+package com.abc
+
+import java.util.concurrent.ConcurrentHashMap
+
+// The tracked orders, indexed by id, by status and by content fingerprint, so lookups,
+// transitions and duplicate checks don't scan the lists. OrderManager keeps the observable
+// lists as projections of it for the tables. Membership is by identity: an order belongs
+// if it is the instance registered under its id.
+//
+// Changes need a single writer at a time (OrderManager's lock). Lookups by id and status
+// (get, contains, statusOf) are safe from any thread without it; the fingerprint methods aren't.
+class OrderRepository {
+    private class Entry(val order: Order, val status: Order.OrderStatus)
+
+    private val byId = ConcurrentHashMap<Long, Entry>()
+    private val fingerprints = OrderFingerprintIndex()
+
+    val size: Int
+        get() = byId.size
+
+    // Register an order under the status, giving it an id if it has none. Returns false if the
+    // order is already tracked, or one with the same content is and duplicates aren't allowed
+    // (restored state keeps whatever it holds).
+    fun insert(order: Order, status: Order.OrderStatus, allowDuplicate: Boolean = false): Boolean {
+        if (contains(order)) return false
+        if (!fingerprints.add(order) && !allowDuplicate) {
+            fingerprints.remove(order)
+            return false
+        }
+        track(order, status)
+        return true
+    }
+
+    // Register without fingerprinting, for lazily loaded orders whose items aren't decoded yet.
+    // Their fingerprint is taken when they're next changed.
+    fun attach(order: Order, status: Order.OrderStatus) {
+        if (!contains(order)) track(order, status)
+    }
+
+    private fun track(order: Order, status: Order.OrderStatus) {
+        val id = OrderIds.assign(order)
+        val existing = byId[id]
+        check(existing == null || existing.order === order) { "Order id $id is already tracked" }
+        byId[id] = Entry(order, status)
+    }
+
+    operator fun get(id: Long): Order? = byId[id]?.order
+
+    fun contains(order: Order): Boolean = order.id != 0L && byId[order.id]?.order === order
+
+    // Status the order is tracked under, or null if it isn't tracked
+    fun statusOf(order: Order): Order.OrderStatus? = byId[order.id]?.takeIf { it.order === order }?.status
+
+    fun move(order: Order, status: Order.OrderStatus) {
+        check(contains(order)) { "Order ${order.id} is not tracked" }
+        byId[order.id] = Entry(order, status)
+    }
+
+    fun remove(order: Order): Boolean {
+        if (!contains(order)) return false
+        byId.remove(order.id)
+        fingerprints.remove(order)
+        return true
+    }
+
+    // Re-hash an order after its items changed
+    fun refresh(order: Order) {
+        if (contains(order)) fingerprints.refresh(order)
+    }
+
+    // Fingerprint the order was registered under (its content before any in-place edit)
+    fun fingerprintOf(order: Order): OrderFingerprint = fingerprints.fingerprintOf(order)
+
+    // True if a tracked order has the same content
+    fun isDuplicate(order: Order): Boolean = fingerprints.contains(order)
+
+    fun clear() {
+        byId.clear()
+        fingerprints.clear()
+    }
+}
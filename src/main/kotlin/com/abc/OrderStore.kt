@@ -0,0 +1,36 @@
+package com.abc
+
+import java.io.Closeable
+
+// Storage backend behind OrderPersistence: the snapshot of the three order lists and the
+// canceled-orders history. Failures are thrown; OrderPersistence logs them and reports false.
+interface OrderStore : Closeable {
+    // Short name used in logs and by the migration command ("json", "mvstore")
+    val name: String
+
+    fun saveState(state: OrderPersistence.OrderState)
+
+    // Save the lists in changed; the others are as the last save or load left them, so stores
+    // that keep lists apart skip them. Stores that can't save part of the state save all of it.
+    fun saveState(state: OrderPersistence.OrderState, changed: Set<Order.OrderStatus>) = saveState(state)
+
+    // null when nothing has been saved yet
+    fun loadState(): OrderPersistence.OrderState?
+
+    // Like loadState, but completed orders may come back as a PagedOrderList that decodes on
+    // access. Stores that can't page load everything.
+    fun loadStateLazily(): OrderPersistence.OrderState? = loadState()
+
+    fun hasState(): Boolean
+
+    fun clearState()
+
+    fun appendCanceled(orders: List<Order>)
+
+    // Stream up to limit canceled orders starting at offset, oldest first
+    fun forEachCanceled(offset: Int, limit: Int, consumer: (Order) -> Unit)
+
+    fun canceledCount(): Int
+
+    fun clearCanceled()
+}
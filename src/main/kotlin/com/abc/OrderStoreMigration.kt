@@ -0,0 +1,57 @@
+package com.abc
+
+import java.nio.file.Paths
+
+// Copies the saved state and the canceled-orders history from one store to another.
+// Run with: ./gradlew migrateStore -Pfrom=json -Pto=mvstore
+object OrderStoreMigration {
+    private const val PAGE_SIZE = 1000
+
+    data class Result(val orders: Int, val canceledOrders: Int)
+
+    // The target's existing contents are replaced. Changes in the journal that no snapshot holds
+    // yet are replayed onto the source state first, so they move too. Canceled orders are copied
+    // a page at a time, so the history never has to fit in memory.
+    @JvmOverloads
+    fun migrate(source: OrderStore, target: OrderStore, journal: OrderJournal? = null): Result {
+        val stored = source.loadState()
+        val state = if (journal != null && journal.exists()) journal.replay(stored ?: OrderPersistence.OrderState()) else stored
+        var orders = 0
+        if (state != null) {
+            target.saveState(state)
+            orders = state.pendingOrders.size + state.inProgressOrders.size + state.completedOrders.size
+        } else {
+            target.clearState()
+        }
+
+        target.clearCanceled()
+        var copied = 0
+        while (true) {
+            val page = mutableListOf<Order>()
+            source.forEachCanceled(copied, PAGE_SIZE) { page.add(it) }
+            if (page.isEmpty()) break
+            target.appendCanceled(page)
+            copied += page.size
+        }
+
+        println("Migrated $orders orders and $copied canceled orders from ${source.name} to ${target.name}")
+        return Result(orders, copied)
+    }
+
+    @JvmStatic
+    fun main(args: Array<String>) {
+        if (args.size < 2) {
+            System.err.println("Usage: OrderStoreMigration <from: json|mvstore> <to: json|mvstore> [directory]")
+            return
+        }
+
+        val directory = Paths.get(args.getOrElse(2) { "" })
+        OrderPersistence.openStore(args[0], directory).use { source ->
+            OrderPersistence.openStore(args[1], directory).use { target ->
+                OrderJournal(directory.resolve(OrderPersistence.JOURNAL_FILE)).use { journal ->
+                    migrate(source, target, journal)
+                }
+            }
+        }
+    }
+}
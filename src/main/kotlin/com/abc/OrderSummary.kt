@@ -0,0 +1,22 @@
+package com.abc
+
+// Running totals of one order list: how many orders, their revenue and their item units.
+// Kept up to date by adding and subtracting orders as they move, so nothing is rescanned.
+// Revenue is kept in cents, so the running sum doesn't drift however often it's adjusted.
+data class OrderSummary(val count: Int, val revenueCents: Long, val itemUnits: Long) {
+
+    val revenue: Double
+        get() = Money.toDouble(revenueCents)
+
+    operator fun plus(order: Order) = OrderSummary(count + 1, revenueCents + order.totalCents(), itemUnits + order.itemUnits())
+
+    operator fun minus(order: Order) = OrderSummary(count - 1, revenueCents - order.totalCents(), itemUnits - order.itemUnits())
+
+    operator fun plus(other: OrderSummary) = OrderSummary(count + other.count, revenueCents + other.revenueCents, itemUnits + other.itemUnits)
+
+    companion object {
+        val EMPTY = OrderSummary(0, 0L, 0L)
+
+        fun of(orders: Iterable<Order>): OrderSummary = orders.fold(EMPTY) { summary, order -> summary + order }
+    }
+}
@@ -9,11 +9,15 @@ import javafx.stage.Stage
 
 class OrderTrackingApp : Application() {
 
+    private var controller: OrderTrackingController? = null
+
     override fun start(primaryStage: Stage) {
-        val root = FXMLLoader.load<Parent>(
+        val loader = FXMLLoader(
             javaClass.getResource("/com/abc/main.fxml")
                 ?: throw IllegalStateException("FXML file not found")
         )
+        val root = loader.load<Parent>()
+        controller = loader.getController()
 
         primaryStage.title = APP_TITLE
         primaryStage.scene = Scene(root, WINDOW_WIDTH.toDouble(), WINDOW_HEIGHT.toDouble())
@@ -32,6 +36,16 @@ class OrderTrackingApp : Application() {
         primaryStage.show()
     }
 
+    override fun stop() {
+        // Write queued changes and fold the journal into a snapshot before the JVM exits,
+        // so the next start loads the snapshot alone
+        try {
+            controller?.shutdown() ?: OrderPersistence.flush()
+        } catch (e: Exception) {
+            System.err.println("Error flushing order state: ${e.message}")
+        }
+    }
+
     companion object {
         private const val APP_TITLE = "Order Tracking System"
         private const val WINDOW_WIDTH = 1200
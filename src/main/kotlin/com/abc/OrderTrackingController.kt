@@ -50,6 +50,7 @@ class OrderTrackingController {
 
     // Auto-refresh controls
     @FXML private lateinit var autoRefreshLabel: Label
+    @FXML private lateinit var summaryLabel: Label
     @FXML private lateinit var toggleAutoRefreshBtn: Button
 
     // Item management buttons
@@ -60,26 +61,48 @@ class OrderTrackingController {
     private val orderManager = OrderManager()
     private val dialogHelper = OrderDialogHelper()
     private val currentItems: ObservableList<Item> = FXCollections.observableArrayList()
+    @Volatile
     private var autoRefreshEnabled = true
 
     //Initialization
     @FXML
     fun initialize() {
+        // Ingested uploads move to uploads/archive/, keeping scans proportional to the live backlog
+        OrderIn.archiveIngestedFiles = true
+        // Transitions and edits append to the journal; the state file is snapshotted in the background
+        OrderPersistence.journalEnabled = true
+        // Changes are committed in groups on the persistence writer thread, off the FX thread
+        OrderPersistence.asyncWrites = true
+        // Snapshots in the compact binary format; JSON state files are still read
+        OrderPersistence.stateFormat = OrderPersistence.StateFormat.BINARY
+        // -Dorders.store=mvstore keeps state and history in the embedded store instead of files
+        System.getProperty("orders.store")?.let { OrderPersistence.useStore(OrderPersistence.openStore(it)) }
+        // Completed orders are decoded as their rows are shown, their items when one is selected
+        OrderPersistence.lazyLoading = true
+
+        // The paged completed list is taken over as is; the table gets its rows when the FX thread
+        // applies the restore, as one list change
+        val savedState = OrderPersistence.loadOrderState()
+        if (savedState != null) {
+            // State saved before uploads were tracked: look up the files its orders came from, once
+            OrderPersistence.markUnsaved(OrderIn.backfillSourceFiles(savedState))
+            orderManager.restoreState(savedState)
+
+            // Restored orders count as ingested, so their upload files aren't imported again.
+            // Completed orders still paged out were recorded in the ledger when they were imported.
+            OrderIn.rememberIngested(
+                savedState.pendingOrders + savedState.inProgressOrders + PagedOrderList.loadedOrders(savedState.completedOrders)
+            )
+        }
+
         setupOrderTables()
         setupItemsTable()
         setupEventHandlers()
+        orderManager.onSummaryChanged = ::updateSummaryLabel
+        updateSummaryLabel(orderManager.summaries())
 
-        // Load saved state first, or load from directory
-        val savedState = OrderPersistence.loadOrderState()
-        if (savedState != null) {
-            orderManager.pendingOrders.addAll(savedState.pendingOrders)
-            orderManager.inProgressOrders.addAll(savedState.inProgressOrders)
-            orderManager.completedOrders.addAll(savedState.completedOrders)
-
-            // Track files for all loaded orders
-            (savedState.pendingOrders + savedState.inProgressOrders + savedState.completedOrders)
-                .forEach { orderManager.trackOrderFile(it) }
-        } else {
+        // Nothing saved yet: load from directory
+        if (savedState == null) {
             loadOrdersFromFiles(isInitialLoad = true)
         }
 
@@ -122,6 +145,11 @@ class OrderTrackingController {
         OrderTableHelper.setupTableSelectionListeners(completedOrdersTable, updateDetails)
     }
 
+    //Called when the application stops
+    fun shutdown() {
+        orderManager.checkpoint()
+    }
+
     //Order Action Handlers
     @FXML
     private fun handleStartOrder() {
@@ -134,13 +162,12 @@ class OrderTrackingController {
 
         if (selectedOrders.size == 1) {
             val result = orderManager.startOrder(selectedOrders[0])
-            showOrderDetails(selectedOrders[0])
-            updateButtonStates()
+            refreshAfterChange(selectedOrders[0])
             dialogHelper.showInfo("Start Order", result.message)
         } else if (dialogHelper.confirmBatchAction("Start", selectedOrders.size)) {
             val result = orderManager.startOrders(selectedOrders)
             clearOrderDetails()
-            updateButtonStates()
+            orderManager.whenProjected(::updateButtonStates)
             dialogHelper.showBatchStartResult(result.successCount)
         }
     }
@@ -159,13 +186,12 @@ class OrderTrackingController {
 
         if (selectedOrders.size == 1) {
             val result = orderManager.completeOrder(selectedOrders[0])
-            showOrderDetails(selectedOrders[0])
-            updateButtonStates()
+            refreshAfterChange(selectedOrders[0])
             dialogHelper.showInfo("Complete Order", result.message)
         } else if (dialogHelper.confirmBatchAction("Complete", selectedOrders.size)) {
             val result = orderManager.completeOrders(selectedOrders)
             clearOrderDetails()
-            updateButtonStates()
+            orderManager.whenProjected(::updateButtonStates)
             dialogHelper.showBatchCompleteResult(result.successCount)
         }
     }
@@ -184,13 +210,12 @@ class OrderTrackingController {
 
         if (selectedOrders.size == 1) {
             val result = orderManager.undoStart(selectedOrders[0])
-            showOrderDetails(selectedOrders[0])
-            updateButtonStates()
+            refreshAfterChange(selectedOrders[0])
             dialogHelper.showInfo("Undo Start", result.message)
         } else if (dialogHelper.confirmBatchAction("move back to pending", selectedOrders.size)) {
             val result = orderManager.undoStartBatch(selectedOrders)
             clearOrderDetails()
-            updateButtonStates()
+            orderManager.whenProjected(::updateButtonStates)
             dialogHelper.showBatchUndoResult(result.successCount, "pending")
         }
     }
@@ -206,13 +231,12 @@ class OrderTrackingController {
 
         if (selectedOrders.size == 1) {
             val result = orderManager.undoComplete(selectedOrders[0])
-            showOrderDetails(selectedOrders[0])
-            updateButtonStates()
+            refreshAfterChange(selectedOrders[0])
             dialogHelper.showInfo("Undo Complete", result.message)
         } else if (dialogHelper.confirmBatchAction("move back to in-progress", selectedOrders.size)) {
             val result = orderManager.undoCompleteBatch(selectedOrders)
             clearOrderDetails()
-            updateButtonStates()
+            orderManager.whenProjected(::updateButtonStates)
             dialogHelper.showBatchUndoResult(result.successCount, "in-progress")
         }
     }
@@ -244,20 +268,27 @@ class OrderTrackingController {
             return
         }
 
-        val totalAmount = selectedOrders.sumOf { it.calculateTotal() }
+        val totalCents = selectedOrders.sumOf { it.totalCents() }
 
         if (selectedOrders.size == 1) {
             if (dialogHelper.confirmDeleteSingle(selectedOrders[0])) {
                 val result = orderManager.deleteOrder(selectedOrders[0])
                 clearOrderDetails()
-                updateButtonStates()
+                orderManager.whenProjected(::updateButtonStates)
                 dialogHelper.showDeleteResult(result.fileDeleted, statusText)
             }
-        } else if (dialogHelper.confirmDeleteBatch(selectedOrders.size, totalAmount)) {
+        } else if (dialogHelper.confirmDeleteBatch(selectedOrders.size, totalCents)) {
             val result = orderManager.deleteOrders(selectedOrders)
             clearOrderDetails()
-            updateButtonStates()
-            dialogHelper.showBatchDeleteResult(result.successCount, result.filesDeletedCount, statusText)
+            orderManager.whenProjected(::updateButtonStates)
+            if (result.successCount == 0 && result.failures.isNotEmpty()) {
+                dialogHelper.showWarning("Delete Failed", result.failures.joinToString("\n"))
+                return
+            }
+            // The source files are deleted in the background; the result is shown when they're done
+            result.filesDeleted.thenAccept { filesDeleted ->
+                Platform.runLater { dialogHelper.showBatchDeleteResult(result.successCount, filesDeleted, statusText) }
+            }
         }
     }
 
@@ -294,16 +325,12 @@ class OrderTrackingController {
         OrderFileManager.startFileWatcher(
             "uploads",
             { autoRefreshEnabled },
-            onNewOrders = { newOrders ->
-                Platform.runLater {
-                    if (autoRefreshEnabled) {
-                        val addedOrders = newOrders.filter { !orderManager.orderExists(it) }
-
-                        if (addedOrders.isNotEmpty()) {
-                            addAndTrackOrders(addedOrders)
-                            dialogHelper.showAutoLoadResult(addedOrders.size)
-                        }
-                    }
+            onNewOrders = { newOrders, onSaved ->
+                // Added on the watcher thread; only the notice needs the FX thread
+                val addedOrders = orderManager.addOrders(newOrders, onSaved)
+
+                if (addedOrders.isNotEmpty()) {
+                    Platform.runLater { dialogHelper.showAutoLoadResult(addedOrders.size) }
                 }
             },
             onReload = {
@@ -324,12 +351,9 @@ class OrderTrackingController {
 
         OrderFileManager.loadOrders(
             uploadsDir = "uploads",
-            pending = orderManager.pendingOrders,
-            inProgress = orderManager.inProgressOrders,
-            completed = orderManager.completedOrders,
-            onAdded = { newOrders ->
-                addAndTrackOrders(newOrders)
-                newOrdersCount = newOrders.size
+            orderExists = orderManager::orderExists,
+            onAdded = { newOrders, onSaved ->
+                newOrdersCount = orderManager.addOrders(newOrders, onSaved).size
             }
         )
 
@@ -340,20 +364,6 @@ class OrderTrackingController {
         onComplete()
     }
 
-    private fun addAndTrackOrders(orders: List<Order>) {
-        orders.forEach { order ->
-            order.status = Order.OrderStatus.PENDING
-            orderManager.pendingOrders.add(order)
-            orderManager.trackOrderFile(order)
-        }
-
-        OrderPersistence.saveOrderState(
-            orderManager.pendingOrders.toList(),
-            orderManager.inProgressOrders.toList(),
-            orderManager.completedOrders.toList()
-        )
-    }
-
     @FXML
     private fun handleRefresh() {
         loadOrdersFromFiles(isInitialLoad = false, showMessage = true) {
@@ -369,6 +379,14 @@ class OrderTrackingController {
         dialogHelper.showAutoRefreshToggled(autoRefreshEnabled)
     }
 
+    private fun updateSummaryLabel(summaries: Map<Order.OrderStatus, OrderSummary>) {
+        summaryLabel.text = listOf(
+            OrderFormatters.formatSummary("Pending", summaries.getValue(Order.OrderStatus.PENDING)),
+            OrderFormatters.formatSummary("In progress", summaries.getValue(Order.OrderStatus.IN_PROGRESS)),
+            OrderFormatters.formatSummary("Completed", summaries.getValue(Order.OrderStatus.COMPLETED))
+        ).joinToString("   |   ")
+    }
+
     private fun updateAutoRefreshLabel() {
         autoRefreshLabel.text = "Auto-refresh: ${if (autoRefreshEnabled) "ON" else "OFF"}"
         autoRefreshLabel.style = if (autoRefreshEnabled) {
@@ -396,7 +414,16 @@ class OrderTrackingController {
         orderSourceLabel.text = "Source: ${OrderFormatters.formatOrderSource(order)}"
         orderDateLabel.text = "Date: ${OrderFormatters.formatDate(order.order_date)}"
         orderTotalLabel.text = "Total: ${OrderFormatters.formatTotal(order)}"
-        currentItems.setAll(order.getItemsOrEmpty())
+        // Edited in place by the items table, so a copy; the order only changes through updateOrderItems
+        currentItems.setAll(order.getItemsOrEmpty().map { it.copy() })
+    }
+
+    //The tables get the change on a later FX pulse, so details and buttons are refreshed from there
+    private fun refreshAfterChange(order: Order) {
+        orderManager.whenProjected {
+            showOrderDetails(order)
+            updateButtonStates()
+        }
     }
 
     private fun clearOrderDetails() {
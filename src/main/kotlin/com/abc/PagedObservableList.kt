@@ -0,0 +1,36 @@
+package com.abc
+
+import javafx.collections.ModifiableObservableListBase
+
+// Observable list over a PagedOrderList, for a TableView over paged orders: rows read through it
+// decode their page on first access, and changes fire list change events as usual. replaceWith
+// swaps in another paged list without decoding it, as one change.
+class PagedObservableList(private val pages: PagedOrderList) : ModifiableObservableListBase<Order>() {
+
+    override val size: Int
+        get() = pages.size
+
+    override fun get(index: Int): Order = pages[index]
+
+    override fun doAdd(index: Int, element: Order) = pages.add(index, element)
+
+    override fun doSet(index: Int, element: Order): Order = pages.set(index, element)
+
+    override fun doRemove(index: Int): Order = pages.removeAt(index)
+
+    fun indexOfInstance(order: Order): Int = pages.indexOfInstance(order)
+
+    // Take over other's entries and source (see PagedOrderList.takeOver), telling listeners the
+    // whole list was replaced. The entries replaced are read to report them, so this is meant for
+    // a list that is still empty.
+    fun replaceWith(other: PagedOrderList) {
+        beginChange()
+        try {
+            if (pages.isNotEmpty()) nextRemove(0, ArrayList(pages))
+            pages.takeOver(other)
+            if (pages.isNotEmpty()) nextAdd(0, pages.size)
+        } finally {
+            endChange()
+        }
+    }
+}
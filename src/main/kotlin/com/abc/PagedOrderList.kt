@@ -0,0 +1,178 @@
+package com.abc
+
+// Order list that is decoded a page at a time on first access. Lazy loading uses it for the
+// completed orders: only the size is known up front, and a TableView over it only reads the
+// rows on screen. Adding, removing and replacing entries works like an ArrayList.
+//
+// indexOf/contains only look at entries that are already loaded; any order a caller holds
+// was loaded by reading it from the list, so nothing is decoded to find it. Not thread-safe;
+// use copy() to hand the list to another thread.
+class PagedOrderList private constructor(
+    // Each slot is a loaded Order, or the Int position of a not yet loaded one in the source
+    private var slots: ArrayList<Any>,
+    private var sourceSize: Int,
+    private var pageSize: Int,
+    private var loader: ((offset: Int, limit: Int) -> List<Order>)?
+) : AbstractMutableList<Order>() {
+
+    // Decoded pages by page number, so the rest of a page resolves without decoding again
+    private val pages = HashMap<Int, List<Order>>()
+
+    // Called with each order of a page as it's loaded from the source. Not carried over to copies.
+    var onLoad: ((Order) -> Unit)? = null
+
+    // Summary of the entries, if the source could tell without decoding them. Any change clears it.
+    var summary: OrderSummary? = null
+
+    // Ids of the entries by the source file they were imported from, if the source could tell
+    // without decoding them. Any change clears it.
+    var sourceFiles: Map<String, List<Long>>? = null
+
+    // Store keys of the source entries by source position, if the source could tell without
+    // decoding them. Describes the source rather than the entries, so changes keep it.
+    var sourceKeys: LongArray? = null
+
+    constructor() : this(ArrayList(), 0, DEFAULT_PAGE_SIZE, null)
+
+    constructor(size: Int, pageSize: Int = DEFAULT_PAGE_SIZE, loader: (offset: Int, limit: Int) -> List<Order>) :
+        this(ArrayList<Any>(size).apply { for (position in 0 until size) add(position) }, size, pageSize, loader)
+
+    override val size: Int
+        get() = slots.size
+
+    override fun get(index: Int): Order {
+        val slot = slots[index]
+        if (slot is Order) return slot
+
+        val position = slot as Int
+        return sourcePage(position)[position % pageSize].also { slots[index] = it }
+    }
+
+    // The source page holding a source position, loaded on first use
+    fun sourcePage(position: Int): List<Order> = pages.getOrPut(position / pageSize) { loadPage(position / pageSize) }
+
+    private fun loadPage(page: Int): List<Order> {
+        val offset = page * pageSize
+        val limit = minOf(pageSize, sourceSize - offset)
+        val orders = loader?.invoke(offset, limit) ?: emptyList()
+        if (orders.size != limit) {
+            throw IllegalStateException("Expected $limit orders at $offset, the source returned ${orders.size}")
+        }
+        onLoad?.let { orders.forEach(it) }
+        return orders
+    }
+
+    override fun set(index: Int, element: Order): Order {
+        summary = null
+        sourceFiles = null
+        val previous = get(index)
+        slots[index] = element
+        return previous
+    }
+
+    override fun add(index: Int, element: Order) {
+        summary = null
+        sourceFiles = null
+        slots.add(index, element)
+    }
+
+    override fun removeAt(index: Int): Order {
+        summary = null
+        sourceFiles = null
+        val removed = get(index)
+        slots.removeAt(index)
+        return removed
+    }
+
+    override fun remove(element: Order): Boolean {
+        val index = indexOf(element)
+        if (index < 0) return false
+        summary = null
+        sourceFiles = null
+        slots.removeAt(index)
+        return true
+    }
+
+    override fun removeRange(fromIndex: Int, toIndex: Int) {
+        summary = null
+        sourceFiles = null
+        slots.subList(fromIndex, toIndex).clear()
+    }
+
+    override fun clear() {
+        summary = null
+        sourceFiles = null
+        slots.clear()
+        pages.clear()
+    }
+
+    override fun indexOf(element: Order): Int {
+        val index = indexOfInstance(element)
+        if (index >= 0) return index
+        return slots.indexOfFirst { it is Order && it == element }
+    }
+
+    override fun lastIndexOf(element: Order): Int {
+        return slots.indexOfLast { it === element || (it is Order && it == element) }
+    }
+
+    override fun contains(element: Order): Boolean = indexOf(element) >= 0
+
+    // Also finds an entry whose page was decoded for another list (see withLoader) but that
+    // this list hasn't read yet
+    fun indexOfInstance(order: Order): Int = slots.indexOfFirst { slot ->
+        slot === order || (slot is Int && pages[slot / pageSize]?.get(slot % pageSize) === order)
+    }
+
+    fun isLoaded(index: Int): Boolean = slots[index] is Order
+
+    // Source position of an entry that isn't loaded yet, -1 for a loaded one
+    fun sourcePosition(index: Int): Int = slots[index] as? Int ?: -1
+
+    // True once no entry is left to decode
+    fun isFullyLoaded(): Boolean = slots.all { it is Order || pages.containsKey(it as Int / pageSize) }
+
+    // The entries decoded so far, in list order
+    fun loaded(): List<Order> = slots.filterIsInstance<Order>()
+
+    // Replace the contents with another paged list's entries and source, without decoding.
+    // Wrapping observable lists aren't notified, and this list keeps its own onLoad.
+    fun takeOver(other: PagedOrderList) {
+        slots = ArrayList(other.slots)
+        sourceSize = other.sourceSize
+        pageSize = other.pageSize
+        loader = other.loader
+        summary = other.summary
+        sourceFiles = other.sourceFiles
+        sourceKeys = other.sourceKeys
+        pages.clear()
+    }
+
+    // Independent list with the same entries; entries not loaded yet stay that way
+    fun copy(): PagedOrderList = PagedOrderList(ArrayList(slots), sourceSize, pageSize, loader).also(::copyDescription)
+
+    // Copy whose entries not loaded yet come from loader instead, e.g. another list's sourcePage
+    // so both hand out the same instances
+    fun withLoader(loader: (offset: Int, limit: Int) -> List<Order>): PagedOrderList =
+        PagedOrderList(ArrayList(slots), sourceSize, pageSize, loader).also(::copyDescription)
+
+    // Copy with transform applied to the loaded entries; the others decode from the source as before
+    fun mapLoaded(transform: (Order) -> Order): PagedOrderList {
+        val mapped = ArrayList<Any>(slots.size)
+        slots.forEach { slot -> mapped.add(if (slot is Order) transform(slot) else slot) }
+        return PagedOrderList(mapped, sourceSize, pageSize, loader).also(::copyDescription)
+    }
+
+    private fun copyDescription(copy: PagedOrderList) {
+        copy.summary = summary
+        copy.sourceFiles = sourceFiles
+        copy.sourceKeys = sourceKeys
+    }
+
+    companion object {
+        const val DEFAULT_PAGE_SIZE = 200
+
+        // The orders of a list that are in memory: all of a plain list, the loaded part of a paged one
+        fun loadedOrders(orders: List<Order>): List<Order> = (orders as? PagedOrderList)?.loaded() ?: orders
+    }
+}
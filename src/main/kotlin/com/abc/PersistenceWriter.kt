@@ -0,0 +1,142 @@
+package com.abc
+
+import java.io.Closeable
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+// Dedicated writer thread for order persistence. Callers hand over their journal records and,
+// when a full save may be due, a copy of the list state, and return immediately; the writer waits
+// until the oldest pending change is maxLatencyMs old or maxBatch changes have queued up, then
+// commits them as one group: all records in one append, and only the newest state if a full save
+// is needed. The group's state is the last change's, so it is null if that change came without
+// one. A burst of edits therefore costs one disk write, and the FX thread never waits on the
+// disk. commit returns whether the group was written; each change's future completes with that.
+class PersistenceWriter(
+    private val maxLatencyMs: Long,
+    private val maxBatch: Int,
+    private val commit: (List<OrderJournal.Record>, OrderPersistence.OrderState?) -> Boolean
+) : Closeable {
+
+    private val lock = ReentrantLock()
+    private val changed = lock.newCondition()
+    private val committed = lock.newCondition()
+
+    private var records = ArrayList<OrderJournal.Record>()
+    private var latestState: OrderPersistence.OrderState? = null
+    private var waiting = ArrayList<CompletableFuture<Boolean>>()
+    private var submitted = 0L
+    private var committedUpTo = 0L
+    private var oldestPendingNanos = 0L
+    private var flushRequested = false
+    private var running = true
+
+    // Number of commits written so far (a commit can cover many changes)
+    @Volatile
+    var commitCount = 0L
+        private set
+
+    // Number of commits that failed; their changes' futures completed with false
+    @Volatile
+    var failedCommitCount = 0L
+        private set
+
+    private val thread = Thread(::run, "Order-Persistence-Writer").apply {
+        isDaemon = true
+        start()
+    }
+
+    // Queue a change. The records and state are written as they are later, on the writer thread,
+    // so they must not change after this.
+    fun submit(newRecords: List<OrderJournal.Record>, state: OrderPersistence.OrderState?): CompletableFuture<Boolean> {
+        val done = CompletableFuture<Boolean>()
+        lock.withLock {
+            if (submitted == committedUpTo) {
+                oldestPendingNanos = System.nanoTime()
+            }
+            records.addAll(newRecords)
+            latestState = state
+            waiting.add(done)
+            submitted++
+            changed.signal()
+        }
+        return done
+    }
+
+    // Commit everything submitted so far now and wait for it. Returns false on timeout.
+    fun flush(timeoutMs: Long = 10_000): Boolean {
+        lock.withLock {
+            val target = submitted
+            var remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMs)
+            flushRequested = true
+            changed.signal()
+            while (committedUpTo < target) {
+                if (remaining <= 0) return false
+                remaining = committed.awaitNanos(remaining)
+            }
+            return true
+        }
+    }
+
+    override fun close() {
+        flush()
+        lock.withLock {
+            running = false
+            changed.signal()
+        }
+        thread.join(TimeUnit.SECONDS.toMillis(5))
+    }
+
+    private fun run() {
+        while (true) {
+            val batch: List<OrderJournal.Record>
+            val state: OrderPersistence.OrderState?
+            val done: List<CompletableFuture<Boolean>>
+            val upTo: Long
+
+            lock.withLock {
+                while (running && submitted == committedUpTo) {
+                    changed.await()
+                }
+                if (submitted == committedUpTo) return
+
+                // Group commit: hold the batch open until it is old enough, big enough or flushed
+                val deadline = oldestPendingNanos + TimeUnit.MILLISECONDS.toNanos(maxLatencyMs)
+                while (running && !flushRequested && submitted - committedUpTo < maxBatch) {
+                    val wait = deadline - System.nanoTime()
+                    if (wait <= 0) break
+                    changed.awaitNanos(wait)
+                }
+
+                batch = records
+                records = ArrayList()
+                state = latestState
+                latestState = null
+                done = waiting
+                waiting = ArrayList()
+                upTo = submitted
+                flushRequested = false
+            }
+
+            val written = try {
+                commit(batch, state)
+            } catch (e: Exception) {
+                System.err.println("Error committing order state: ${e.message}")
+                false
+            }
+            if (written) {
+                commitCount++
+            } else {
+                failedCommitCount++
+                System.err.println("Order changes not saved: ${done.size} change(s), ${batch.size} journal record(s)")
+            }
+
+            lock.withLock {
+                committedUpTo = upTo
+                committed.signalAll()
+            }
+            done.forEach { it.complete(written) }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.abc
+
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.attribute.BasicFileAttributes
+
+// Long-lived (size, mtime) index of the polled upload directory. Each sweep lists the directory
+// once, compares every entry with what it was last time and only reports files that are new or
+// changed. A changed file is reported after it has stayed the same for one more sweep, so a
+// file still being copied onto a network share isn't opened halfway through.
+class PollingIndex(private val glob: String = "*.{json,xml}") {
+
+    private class Entry(var size: Long, var lastModified: Long, var seenInSweep: Long, var settling: Boolean)
+
+    // Outcome of one sweep: files ready to import plus what the sweep cost
+    data class SweepResult(
+        val ready: List<Path>,
+        val scanned: Int,
+        val changed: Int,
+        val removed: Int,
+        val elapsedNanos: Long
+    ) {
+        // True if anything was arriving or changing, used to tighten the poll interval
+        fun hasActivity(): Boolean = ready.isNotEmpty() || changed > 0
+    }
+
+    private val entries = HashMap<String, Entry>()
+    private var sweepCount = 0L
+
+    // Number of files currently indexed
+    val size: Int
+        get() = entries.size
+
+    fun sweep(directory: Path, exclude: (String) -> Boolean = { false }): SweepResult {
+        val started = System.nanoTime()
+        val sweep = ++sweepCount
+        val ready = mutableListOf<Path>()
+        var scanned = 0
+        var changed = 0
+
+        Files.newDirectoryStream(directory, glob).use { stream ->
+            for (filePath in stream) {
+                val fileName = filePath.fileName.toString()
+                if (exclude(fileName)) continue
+
+                val attributes = try {
+                    // One attribute read per file; on Windows this usually comes from the listing itself
+                    Files.readAttributes(filePath, BasicFileAttributes::class.java)
+                } catch (e: IOException) {
+                    continue
+                }
+                if (!attributes.isRegularFile) continue
+                scanned++
+
+                val size = attributes.size()
+                val modified = attributes.lastModifiedTime().toMillis()
+                val entry = entries[fileName]
+                when {
+                    entry == null -> {
+                        entries[fileName] = Entry(size, modified, sweep, settling = true)
+                        changed++
+                    }
+                    entry.size != size || entry.lastModified != modified -> {
+                        entry.size = size
+                        entry.lastModified = modified
+                        entry.seenInSweep = sweep
+                        entry.settling = true
+                        changed++
+                    }
+                    else -> {
+                        entry.seenInSweep = sweep
+                        if (entry.settling) {
+                            entry.settling = false
+                            ready.add(filePath)
+                        }
+                    }
+                }
+            }
+        }
+
+        // Anything not seen this sweep was deleted or moved away
+        val sizeBefore = entries.size
+        entries.values.removeIf { it.seenInSweep != sweep }
+        val removed = sizeBefore - entries.size
+
+        return SweepResult(ready, scanned, changed, removed, System.nanoTime() - started)
+    }
+
+    fun clear() {
+        entries.clear()
+    }
+}
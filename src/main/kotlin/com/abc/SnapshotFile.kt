@@ -0,0 +1,114 @@
+package com.abc
+
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+import java.nio.file.StandardOpenOption
+import java.util.zip.CRC32
+
+// Crash-safe snapshot file. A write goes to <name>.tmp, is fsynced if asked to, and is renamed over
+// the live file after the live file has been moved to <name>.prev, so the file on disk is always
+// a complete generation. Every snapshot ends with a "#crc32:<hex>:<length>" trailer line; a read
+// that fails the check falls back to the previous generation instead of reporting no state.
+class SnapshotFile(private val path: Path) {
+
+    private val tmpPath = path.resolveSibling("${path.fileName}.tmp")
+    private val previousPath = path.resolveSibling("${path.fileName}.prev")
+
+    fun exists(): Boolean = Files.exists(path) || Files.exists(previousPath) || Files.exists(tmpPath)
+
+    // sync = fsync the file and its directory; the caller decides how often (OrderPersistence.durability)
+    @Synchronized
+    fun write(content: ByteArray, sync: Boolean) {
+        FileChannel.open(
+            tmpPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE
+        ).use { channel ->
+            val buffer = ByteBuffer.wrap(content)
+            while (buffer.hasRemaining()) channel.write(buffer)
+            val trailer = ByteBuffer.wrap(trailerFor(content))
+            while (trailer.hasRemaining()) channel.write(trailer)
+            if (sync) channel.force(true)
+        }
+
+        if (Files.exists(path)) {
+            Files.move(path, previousPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+        }
+        Files.move(tmpPath, path, StandardCopyOption.ATOMIC_MOVE)
+
+        if (sync) {
+            syncDirectory()
+        }
+    }
+
+    // Decode the newest generation that passes its checksum and decodes cleanly: the live file,
+    // a finished temp file left by a crash between the two renames, then the previous generation.
+    // Files written before checksums existed have no trailer and are decoded as they are.
+    @Synchronized
+    fun <T> read(decode: (ByteArray) -> T): T? {
+        for (candidate in listOf(path, tmpPath, previousPath)) {
+            if (!Files.exists(candidate)) continue
+            val content = verified(Files.readAllBytes(candidate), allowLegacy = candidate != tmpPath)
+            if (content == null) {
+                System.err.println("Snapshot ${candidate.fileName} failed its checksum, trying an older one")
+                continue
+            }
+
+            try {
+                val value = decode(content)
+                if (candidate != path) {
+                    System.err.println("Recovered state from ${candidate.fileName}")
+                }
+                return value
+            } catch (e: Exception) {
+                System.err.println("Snapshot ${candidate.fileName} is unreadable (${e.message}), trying an older one")
+            }
+        }
+        return null
+    }
+
+    @Synchronized
+    fun delete() {
+        Files.deleteIfExists(path)
+        Files.deleteIfExists(tmpPath)
+        Files.deleteIfExists(previousPath)
+    }
+
+    private fun trailerFor(content: ByteArray): ByteArray {
+        val crc = CRC32().apply { update(content) }
+        return "\n$TRAILER_PREFIX%08x:%d\n".format(crc.value, content.size).toByteArray(Charsets.US_ASCII)
+    }
+
+    // Content without its trailer, or null if the trailer doesn't match
+    private fun verified(bytes: ByteArray, allowLegacy: Boolean): ByteArray? {
+        val tail = String(bytes, maxOf(0, bytes.size - 64), minOf(64, bytes.size), Charsets.US_ASCII)
+        val marker = tail.lastIndexOf("\n$TRAILER_PREFIX")
+        if (marker < 0) {
+            // No trailer: a legacy file, or a temp file whose write never finished
+            return if (allowLegacy && bytes.isNotEmpty()) bytes else null
+        }
+
+        val fields = tail.substring(marker + 1 + TRAILER_PREFIX.length).trim().split(':')
+        val length = fields.getOrNull(1)?.toIntOrNull() ?: return null
+        val expected = fields[0].toLongOrNull(16) ?: return null
+        if (length > bytes.size) return null
+
+        val content = bytes.copyOf(length)
+        val crc = CRC32().apply { update(content) }
+        return if (crc.value == expected) content else null
+    }
+
+    private fun syncDirectory() {
+        try {
+            FileChannel.open(path.toAbsolutePath().parent, StandardOpenOption.READ).use { it.force(true) }
+        } catch (e: IOException) {
+            // Not supported on every platform (Windows); the file itself is already synced
+        }
+    }
+
+    companion object {
+        private const val TRAILER_PREFIX = "#crc32:"
+    }
+}
@@ -0,0 +1,243 @@
+package com.abc
+
+import java.io.FileInputStream
+import java.nio.file.Paths
+import javax.xml.stream.XMLInputFactory
+import javax.xml.stream.XMLStreamConstants
+import javax.xml.stream.XMLStreamReader
+
+// Streaming XML importer: walks the file with StAX and builds one Order at a time, without
+// the DOM tree of the whole document. The orders are still collected per file by OrderIn.
+// Tag aliases and fallbacks match the DOM importer in OrderIn.
+object StaxXmlOrderImporter : OrderIn.OrderImporter {
+
+    private val TYPE_TAGS = listOf("type", "order_type", "restaurant_type", "category")
+    private val SOURCE_TAGS = listOf("source", "restaurant", "restaurant_name", "provider", "vendor")
+    private val DATE_TAGS = listOf("order_date", "date", "timestamp", "created_at")
+    private val CONTAINER_TAGS = listOf("items", "order_items", "products", "menu_items")
+    private val ITEM_TAGS = listOf("item", "order_item", "product", "menu_item")
+    private val ITEM_NAME_TAGS = listOf("name", "item_name", "product_name", "description")
+    private val QUANTITY_TAGS = listOf("quantity", "qty", "count")
+    private val PRICE_TAGS = listOf("price", "unit_price", "cost")
+
+    private val ORDER_FIELD_TAGS = (TYPE_TAGS + SOURCE_TAGS + DATE_TAGS).toHashSet()
+    private val ITEM_FIELD_TAGS = (ITEM_NAME_TAGS + QUANTITY_TAGS + PRICE_TAGS).toHashSet()
+
+    // XMLInputFactory configuration isn't guaranteed thread-safe, so each import thread gets its own
+    private val inputFactory = ThreadLocal.withInitial {
+        XMLInputFactory.newInstance().apply {
+            setProperty(XMLInputFactory.SUPPORT_DTD, false)
+            setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false)
+            setProperty(XMLInputFactory.IS_COALESCING, true)
+        }
+    }
+
+    override fun canImport(fileName: String): Boolean {
+        return fileName.lowercase().endsWith(".xml")
+    }
+
+    override fun readOrder(filePath: String): Order? {
+        val result = importFile(filePath)
+        if (result.getSuccessCount() > 0) {
+            return result.importedOrders[0]
+        }
+
+        System.err.println("No valid orders found in XML file: $filePath")
+        result.errors.forEach { error -> System.err.println("  XML Error: $error") }
+        return null
+    }
+
+    override fun readAllOrders(filePath: String): List<Order> {
+        return importFile(filePath).importedOrders
+    }
+
+    override fun forEachOrder(filePath: String, consumer: (Order) -> Unit) {
+        streamOrders(filePath, consumer) { error -> System.err.println("  XML Error: $error") }
+    }
+
+    // Collecting import with the same result shape as the DOM path. A malformed document
+    // yields no orders, so a half-written upload is never partially ingested.
+    fun importFile(filePath: String): OrderIn.XmlImportResult {
+        val orders = mutableListOf<Order>()
+        val errors = mutableListOf<String>()
+        val fileName = Paths.get(filePath).fileName.toString()
+
+        try {
+            streamOrders(filePath, { orders.add(it) }, { errors.add(it) })
+        } catch (e: Exception) {
+            orders.clear()
+            errors.add("Failed to process XML file: ${e.message}")
+        }
+
+        return OrderIn.XmlImportResult(orders, errors, fileName)
+    }
+
+    // Emit each <order> below the document root as soon as its end tag is read.
+    // Per-order problems go to onError; a malformed document throws after the orders already emitted.
+    fun streamOrders(filePath: String, onOrder: (Order) -> Unit, onError: (String) -> Unit) {
+        FileInputStream(filePath).use { input ->
+            val reader = inputFactory.get().createXMLStreamReader(input)
+            try {
+                readOrders(reader, onOrder, onError)
+            } finally {
+                reader.close()
+            }
+        }
+    }
+
+    private fun readOrders(reader: XMLStreamReader, onOrder: (Order) -> Unit, onError: (String) -> Unit) {
+        var depth = 0
+        var orderCount = 0
+        var current: OrderBuilder? = null
+
+        while (reader.hasNext()) {
+            when (reader.next()) {
+                XMLStreamConstants.START_ELEMENT -> {
+                    depth++
+                    val name = reader.localName
+                    val builder = current
+                    if (builder != null) {
+                        builder.startElement(name, depth)
+                    } else if (name == "order" && depth > 1) {
+                        current = OrderBuilder(depth)
+                        orderCount++
+                    }
+                }
+
+                XMLStreamConstants.CHARACTERS,
+                XMLStreamConstants.CDATA,
+                XMLStreamConstants.SPACE -> current?.appendText(reader.text)
+
+                XMLStreamConstants.END_ELEMENT -> {
+                    val builder = current
+                    if (builder != null) {
+                        if (depth == builder.depth) {
+                            current = null
+                            try {
+                                onOrder(builder.build().also { it.sourceIndex = orderCount - 1 })
+                            } catch (e: Exception) {
+                                onError("Error parsing order #$orderCount: ${e.message}")
+                            }
+                        } else {
+                            builder.endElement(depth)
+                        }
+                    }
+                    depth--
+                }
+            }
+        }
+    }
+
+    // Text of one element (including nested text), written into its sink when the element closes
+    private class Capture(val depth: Int, val tag: String, val sink: MutableMap<String, String>) {
+        val text = StringBuilder()
+    }
+
+    private class ItemBuilder(val depth: Int, val rank: Int, val containers: List<Int>) {
+        val fields = HashMap<String, String>()
+    }
+
+    // Holds just the fields of the order being read; dropped as soon as the order is emitted
+    private class OrderBuilder(val depth: Int) {
+        private val fields = HashMap<String, String>()
+        private val firstContainer = HashMap<String, Int>()
+        private val openContainers = ArrayList<Pair<Int, Int>>()
+        private val openItems = ArrayList<ItemBuilder>()
+        private val items = ArrayList<ItemBuilder>()
+        private val captures = ArrayList<Capture>()
+        private var containerCount = 0
+
+        fun startElement(name: String, depth: Int) {
+            if (name in CONTAINER_TAGS) {
+                val id = containerCount++
+                firstContainer.putIfAbsent(name, id)
+                openContainers.add(depth to id)
+            }
+
+            val itemRank = ITEM_TAGS.indexOf(name)
+            if (itemRank >= 0) {
+                val item = ItemBuilder(depth, itemRank, openContainers.map { it.second })
+                items.add(item)
+                openItems.add(item)
+            }
+
+            // Like getElementsByTagName(...).item(0): only the first element with a given tag counts
+            if (name in ORDER_FIELD_TAGS && !fields.containsKey(name)) {
+                fields[name] = ""
+                captures.add(Capture(depth, name, fields))
+            }
+
+            val item = openItems.lastOrNull()
+            if (item != null && name in ITEM_FIELD_TAGS && !item.fields.containsKey(name)) {
+                item.fields[name] = ""
+                captures.add(Capture(depth, name, item.fields))
+            }
+        }
+
+        fun appendText(text: String) {
+            for (capture in captures) {
+                capture.text.append(text)
+            }
+        }
+
+        fun endElement(depth: Int) {
+            if (captures.isNotEmpty()) {
+                val iterator = captures.iterator()
+                while (iterator.hasNext()) {
+                    val capture = iterator.next()
+                    if (capture.depth == depth) {
+                        capture.sink[capture.tag] = capture.text.toString()
+                        iterator.remove()
+                    }
+                }
+            }
+
+            if (openItems.lastOrNull()?.depth == depth) {
+                openItems.removeAt(openItems.size - 1)
+            }
+            if (openContainers.lastOrNull()?.first == depth) {
+                openContainers.removeAt(openContainers.size - 1)
+            }
+        }
+
+        fun build(): Order {
+            val order = Order()
+            order.type = firstText(fields, TYPE_TAGS) ?: "Unknown"
+            order.source = firstText(fields, SOURCE_TAGS) ?: "Unknown"
+
+            val dateStr = firstText(fields, DATE_TAGS)
+            if (dateStr != null) {
+                val timestamp = OrderIn.parseDate(dateStr)
+                order.order_date = if (timestamp > 0) timestamp else System.currentTimeMillis()
+            } else {
+                order.order_date = System.currentTimeMillis()
+            }
+
+            order.items = buildItems()
+            return order
+        }
+
+        // Same selection as the DOM importer: items under the first container found in alias
+        // priority (or anywhere in the order if there is none), grouped by item tag priority
+        private fun buildItems(): List<Item> {
+            val container = CONTAINER_TAGS.firstNotNullOfOrNull { firstContainer[it] }
+            val selected = items
+                .filter { container == null || container in it.containers }
+                .sortedBy { it.rank }
+
+            val result = selected.map { itemBuilder ->
+                Item().apply {
+                    name = firstText(itemBuilder.fields, ITEM_NAME_TAGS) ?: "Unknown Item"
+                    quantity = OrderIn.parseQuantity(firstText(itemBuilder.fields, QUANTITY_TAGS))
+                    priceCents = OrderIn.parsePriceCents(firstText(itemBuilder.fields, PRICE_TAGS))
+                }
+            }
+
+            return result.ifEmpty { listOf(OrderIn.createDefaultItem()) }
+        }
+    }
+
+    private fun firstText(fields: Map<String, String>, tags: List<String>): String? {
+        return tags.firstNotNullOfOrNull { tag -> fields[tag]?.trim()?.takeIf { it.isNotEmpty() } }
+    }
+}
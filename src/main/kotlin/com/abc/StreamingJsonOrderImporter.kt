@@ -0,0 +1,172 @@
+package com.abc
+
+import com.fasterxml.jackson.core.JsonFactory
+import com.fasterxml.jackson.core.JsonParseException
+import com.fasterxml.jackson.core.JsonParser
+import com.fasterxml.jackson.core.JsonToken
+import java.io.File
+
+// Streaming JSON importer built on Jackson's JsonParser. One pass over the file, with no tree
+// of the document and one Order being built at a time; the orders themselves are still
+// collected per file by OrderIn. Accepts every shape vendors send us:
+//   {"order": {...}}            wrapped single order (the original format)
+//   {...}                       bare order object
+//   [ {...}, {"order": {...}} ] array of wrapped or bare orders
+//   {...}\n{...}\n              newline-delimited JSON (any mix of the above)
+object StreamingJsonOrderImporter : OrderIn.OrderImporter {
+    // JsonFactory is thread-safe once configured, so parallel imports can share it
+    private val factory = JsonFactory()
+
+    override fun canImport(fileName: String): Boolean {
+        val lower = fileName.lowercase()
+        return lower.endsWith(".json") && !lower.endsWith("orders_out.json")
+    }
+
+    override fun readOrder(filePath: String): Order? {
+        val orders = readAllOrders(filePath)
+        if (orders.isEmpty()) {
+            System.err.println("Invalid order data in JSON file: $filePath")
+        }
+        return orders.firstOrNull()
+    }
+
+    // A file that isn't well-formed JSON yields no orders, so a half-written upload is never partially ingested
+    override fun readAllOrders(filePath: String): List<Order> {
+        val orders = mutableListOf<Order>()
+        return try {
+            streamOrders(filePath) { orders.add(it) }
+            orders
+        } catch (e: Exception) {
+            System.err.println("Error reading JSON order from $filePath: ${e.message}")
+            emptyList()
+        }
+    }
+
+    override fun forEachOrder(filePath: String, consumer: (Order) -> Unit) {
+        streamOrders(filePath, consumer)
+    }
+
+    // Emit each valid order as soon as its closing brace is read. Invalid orders are reported
+    // and skipped; malformed JSON throws after the orders already emitted.
+    fun streamOrders(filePath: String, onOrder: (Order) -> Unit) {
+        factory.createParser(File(filePath)).use { parser ->
+            var index = 0
+            while (true) {
+                when (parser.nextToken() ?: break) {
+                    JsonToken.START_ARRAY -> {
+                        while (true) {
+                            val token = parser.nextToken()
+                                ?: throw JsonParseException(parser, "Unexpected end of order array")
+                            if (token == JsonToken.END_ARRAY) break
+                            emitValue(parser, filePath, ++index, onOrder)
+                        }
+                    }
+
+                    JsonToken.START_OBJECT -> emitValue(parser, filePath, ++index, onOrder)
+
+                    else -> throw JsonParseException(parser, "Expected an order object or array")
+                }
+            }
+        }
+    }
+
+    private fun emitValue(parser: JsonParser, filePath: String, index: Int, onOrder: (Order) -> Unit) {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            System.err.println("Skipping non-object entry #$index in JSON file: $filePath")
+            parser.skipChildren()
+            return
+        }
+
+        val order = readOrderObject(parser)
+        order.sourceIndex = index - 1
+        if (order.isValid()) {
+            onOrder(order)
+        } else {
+            System.err.println("Invalid order data in JSON file: $filePath (entry #$index)")
+        }
+    }
+
+    // Parser is on START_OBJECT. A nested "order" object (the wrapper format) wins over bare fields.
+    private fun readOrderObject(parser: JsonParser): Order {
+        val order = Order()
+        var wrapped: Order? = null
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            val field = parser.currentName()
+            val token = parser.nextToken()
+            when (field) {
+                "order" -> if (token == JsonToken.START_OBJECT) wrapped = readOrderObject(parser) else parser.skipChildren()
+                "type" -> order.type = readText(parser)
+                "source" -> order.source = readText(parser)
+                "order_date" -> order.order_date = if (token.isScalarValue) parser.valueAsLong else skip(parser, 0L)
+                "status" -> readText(parser)?.let { status ->
+                    Order.OrderStatus.entries.firstOrNull { it.name == status }?.let { order.status = it }
+                }
+                "items" -> order.items = readItems(parser)
+                else -> parser.skipChildren()
+            }
+        }
+
+        return wrapped ?: order
+    }
+
+    private fun readItems(parser: JsonParser): List<Item>? {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            return skip(parser, null)
+        }
+
+        val items = mutableListOf<Item>()
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() == JsonToken.START_OBJECT) {
+                items.add(readItem(parser))
+            } else {
+                parser.skipChildren()
+            }
+        }
+        return items
+    }
+
+    private fun readItem(parser: JsonParser): Item {
+        var name: String? = null
+        var quantity = 0
+        var priceCents = 0L
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            val field = parser.currentName()
+            val token = parser.nextToken()
+            when (field) {
+                "name" -> name = readText(parser)
+                "quantity" -> quantity = if (token.isScalarValue) parser.valueAsInt else skip(parser, 0)
+                "price" -> priceCents = if (token.isScalarValue) readPriceCents(parser) else skip(parser, 0L)
+                else -> parser.skipChildren()
+            }
+        }
+
+        return Item.ofCents(name, quantity, priceCents)
+    }
+
+    // Straight from the number's text (or a string value) to cents; anything else is 0
+    private fun readPriceCents(parser: JsonParser): Long {
+        val token = parser.currentToken()
+        if (!token.isNumeric && token != JsonToken.VALUE_STRING) return 0L
+        return try {
+            Money.parseCents(parser.text)
+        } catch (e: NumberFormatException) {
+            0L
+        }
+    }
+
+    private fun readText(parser: JsonParser): String? {
+        val token = parser.currentToken()
+        return when {
+            token == JsonToken.VALUE_NULL -> null
+            token.isScalarValue -> parser.valueAsString
+            else -> skip(parser, null)
+        }
+    }
+
+    private fun <T> skip(parser: JsonParser, fallback: T): T {
+        parser.skipChildren()
+        return fallback
+    }
+}
@@ -0,0 +1,93 @@
+package com.abc
+
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+import java.time.LocalDate
+import java.time.format.DateTimeFormatter
+
+// Lifecycle for ingested upload files: once a file's orders are in, it is moved to
+// <uploads>/archive/yyyy/MM/dd/. The upload directory then only holds the live backlog, so
+// directory loads, the watchers' reconciliation and polling sweeps stop slowing down as
+// history accumulates. Archive directories aren't scanned; orders keep the archived path,
+// which is reserved before their file is moved so it can be saved with them.
+object UploadArchive {
+    const val ARCHIVE_DIR = "archive"
+
+    private val DAY_FORMATTER = DateTimeFormatter.ofPattern("yyyy/MM/dd")
+
+    // Targets handed out by reserve that nothing has been moved to yet
+    private val reserved = HashSet<Path>()
+
+    // Move an ingested file into today's archive directory. Returns the archived location,
+    // or null if the file was already gone or couldn't be moved.
+    fun archive(file: Path, day: LocalDate = LocalDate.now()): Path? {
+        return reserve(file, day)?.let { archiveTo(file, it) }
+    }
+
+    // Pick the archive location for a file that is moved later, once its orders are saved, so
+    // the orders can record it up front. Returns null if the file is gone or the day's directory
+    // can't be created. Call archiveTo or release with the result.
+    fun reserve(file: Path, day: LocalDate = LocalDate.now()): Path? {
+        return try {
+            if (!Files.exists(file)) {
+                return null
+            }
+
+            val dayDir = file.toAbsolutePath().parent.resolve(ARCHIVE_DIR).resolve(day.format(DAY_FORMATTER))
+            Files.createDirectories(dayDir)
+
+            synchronized(reserved) {
+                uniqueTarget(dayDir, file.fileName.toString()).also { reserved.add(it) }
+            }
+        } catch (e: IOException) {
+            System.err.println("Error archiving $file: ${e.message}")
+            null
+        }
+    }
+
+    // Move a file to the location reserve picked for it. Returns that location, or null if the
+    // file was already gone or couldn't be moved.
+    fun archiveTo(file: Path, target: Path): Path? {
+        return try {
+            if (!Files.exists(file)) {
+                return null
+            }
+
+            Files.move(file, target, StandardCopyOption.ATOMIC_MOVE)
+            println("Archived $file -> $target")
+            target
+        } catch (e: IOException) {
+            System.err.println("Error archiving $file: ${e.message}")
+            null
+        } finally {
+            release(target)
+        }
+    }
+
+    // Give up a reserved location without moving anything there
+    fun release(target: Path) {
+        synchronized(reserved) { reserved.remove(target) }
+    }
+
+    // Same-day uploads reusing a file name get a numbered suffix instead of replacing the earlier one
+    private fun uniqueTarget(dir: Path, fileName: String): Path {
+        var target = dir.resolve(fileName)
+        if (!taken(target)) {
+            return target
+        }
+
+        val dot = fileName.lastIndexOf('.')
+        val base = if (dot > 0) fileName.substring(0, dot) else fileName
+        val extension = if (dot > 0) fileName.substring(dot) else ""
+        var n = 1
+        while (taken(target)) {
+            target = dir.resolve("$base-$n$extension")
+            n++
+        }
+        return target
+    }
+
+    private fun taken(target: Path): Boolean = target in reserved || Files.exists(target)
+}
@@ -0,0 +1,61 @@
+package com.abc
+
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+import java.time.LocalDateTime
+import java.time.format.DateTimeFormatter
+
+// Dead-letter area for upload files that can't be imported. A failed file is moved into
+// <uploads>/failed/ next to a <name>.error.txt report, which takes it out of every directory
+// scan and watcher, so one corrupt vendor file isn't re-parsed on every sweep and Refresh.
+// Fix the file and move it back into uploads/ to have it imported.
+object UploadQuarantine {
+    const val FAILED_DIR = "failed"
+
+    private val STAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")
+
+    // Move the file into the failed area and write its error report. Returns the new location,
+    // or null if the file was already gone or couldn't be moved.
+    fun quarantine(file: Path, reason: String): Path? {
+        return try {
+            if (!Files.exists(file)) {
+                return null
+            }
+
+            val failedDir = file.toAbsolutePath().parent.resolve(FAILED_DIR)
+            Files.createDirectories(failedDir)
+
+            // Don't overwrite an earlier failure with the same file name
+            var target = failedDir.resolve(file.fileName.toString())
+            if (Files.exists(target)) {
+                target = failedDir.resolve("${LocalDateTime.now().format(STAMP_FORMATTER)}-${file.fileName}")
+            }
+
+            val size = Files.size(file)
+            Files.move(file, target, StandardCopyOption.ATOMIC_MOVE)
+            Files.writeString(reportFor(target), buildReport(file, size, reason))
+
+            System.err.println("Quarantined unreadable upload $file -> $target: $reason")
+            target
+        } catch (e: IOException) {
+            System.err.println("Error quarantining $file: ${e.message}")
+            null
+        }
+    }
+
+    // The sidecar error report for a quarantined file
+    fun reportFor(quarantinedFile: Path): Path {
+        return quarantinedFile.resolveSibling("${quarantinedFile.fileName}.error.txt")
+    }
+
+    private fun buildReport(file: Path, size: Long, reason: String): String {
+        return """
+            File: ${file.toAbsolutePath()}
+            Size: $size bytes
+            Quarantined: ${LocalDateTime.now()}
+            Reason: $reason
+        """.trimIndent() + "\n"
+    }
+}
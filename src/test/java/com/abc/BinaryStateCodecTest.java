@@ -0,0 +1,144 @@
+package com.abc;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+class BinaryStateCodecTest {
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void useTempStore() {
+        OrderPersistence.INSTANCE.useStore(OrderPersistence.INSTANCE.openStore("json", tempDir));
+        OrderPersistence.INSTANCE.useJournal(tempDir.resolve("orders_journal.ndjson").toString());
+    }
+
+    @AfterEach
+    void resetFormat() {
+        OrderPersistence.INSTANCE.setStateFormat(OrderPersistence.StateFormat.JSON);
+        OrderPersistence.INSTANCE.useDefaultJournal();
+        OrderPersistence.INSTANCE.useStore(OrderPersistence.INSTANCE.openStore("json", Path.of("")));
+    }
+
+    private Order order(String type, String source, long date, Order.OrderStatus status) {
+        Order order = new Order(type, date, List.of(new Item("Burger", 2, 8.99), new Item("Fries", 1, 3.49)), source, status);
+        order.setSourceFile("uploads/archive/2025/01/01/" + source + ".json");
+        return order;
+    }
+
+    private OrderPersistence.OrderState sampleState() {
+        List<Order> pending = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            pending.add(order("Delivery", "Restaurant " + (i % 5), 1735689600000L + i * 60_000L, Order.OrderStatus.PENDING));
+        }
+        Order noItems = new Order("Pickup", 1L, null, null, Order.OrderStatus.IN_PROGRESS);
+        return new OrderPersistence.OrderState(pending, List.of(noItems),
+                List.of(order("Dine-in", "Cafe", 1609459200000L, Order.OrderStatus.COMPLETED)));
+    }
+
+    @Test
+    void testRoundTrip() {
+        OrderPersistence.OrderState state = sampleState();
+        state.getCompletedOrders().get(0).setSourceIndex(3);
+        OrderPersistence.OrderState decoded = BinaryStateCodec.INSTANCE.decode(BinaryStateCodec.INSTANCE.encode(state));
+
+        assertEquals(state.getPendingOrders(), decoded.getPendingOrders());
+        assertEquals(state.getInProgressOrders(), decoded.getInProgressOrders());
+        assertEquals(state.getCompletedOrders(), decoded.getCompletedOrders());
+        assertNull(decoded.getInProgressOrders().get(0).getItems());
+        assertEquals("uploads/archive/2025/01/01/Cafe.json", decoded.getCompletedOrders().get(0).getSourceFile());
+        assertEquals(3, (int) decoded.getCompletedOrders().get(0).getSourceIndex());
+        assertNull(decoded.getPendingOrders().get(0).getSourceIndex());
+    }
+
+    @Test
+    void testLazyDecodePagesCompletedOrders() {
+        OrderPersistence.OrderState state = sampleState();
+        List<Order> completed = new ArrayList<>();
+        for (int i = 0; i < 450; i++) {
+            completed.add(order("Delivery", "Diner " + i, 1735689600000L - i * 3_600_000L, Order.OrderStatus.COMPLETED));
+        }
+        state.setCompletedOrders(completed);
+
+        OrderPersistence.OrderState decoded = BinaryStateCodec.INSTANCE.decodeLazily(BinaryStateCodec.INSTANCE.encode(state), 200);
+
+        assertEquals(state.getPendingOrders(), decoded.getPendingOrders());
+        PagedOrderList paged = assertInstanceOf(PagedOrderList.class, decoded.getCompletedOrders());
+        assertEquals(450, paged.size());
+        assertTrue(paged.loaded().isEmpty(), "Completed orders should not be decoded up front");
+
+        Order last = paged.get(449);
+        LazyItemList items = assertInstanceOf(LazyItemList.class, last.getItems());
+        assertEquals(completed.get(449).calculateTotal(), last.calculateTotal());
+        assertFalse(items.isMaterialized(), "The total should not need the items");
+        assertEquals(1, paged.loaded().size());
+
+        assertEquals(completed, paged);
+        assertEquals("Fries", last.getItems().get(1).getName());
+        assertTrue(items.isMaterialized());
+    }
+
+    @Test
+    void testIdsRoundTrip() {
+        OrderPersistence.OrderState state = sampleState();
+        List<Order> completed = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            completed.add(order("Delivery", "Diner " + i, 1735689600000L - i * 3_600_000L, Order.OrderStatus.COMPLETED));
+        }
+        state.setCompletedOrders(completed);
+        state.getPendingOrders().forEach(OrderIds.INSTANCE::assign);
+        completed.forEach(OrderIds.INSTANCE::assign);
+
+        byte[] bytes = BinaryStateCodec.INSTANCE.encode(state);
+        OrderPersistence.OrderState decoded = BinaryStateCodec.INSTANCE.decode(bytes);
+        OrderPersistence.OrderState lazy = BinaryStateCodec.INSTANCE.decodeLazily(bytes, 100);
+
+        assertEquals(state.getPendingOrders().get(42).getId(), decoded.getPendingOrders().get(42).getId());
+        assertEquals(0L, decoded.getInProgressOrders().get(0).getId());
+        assertEquals(completed.get(249).getId(), lazy.getCompletedOrders().get(249).getId());
+        assertEquals(completed.get(150).getId(), lazy.getCompletedOrders().get(150).getId());
+    }
+
+    @Test
+    void testRejectsUnknownVersion() {
+        byte[] bytes = BinaryStateCodec.INSTANCE.encode(sampleState());
+        bytes[3] = 2;
+        assertThrows(java.io.IOException.class, () -> BinaryStateCodec.INSTANCE.decode(bytes));
+    }
+
+    @Test
+    void testSmallerThanJson() throws Exception {
+        OrderPersistence.OrderState state = sampleState();
+        byte[] binary = BinaryStateCodec.INSTANCE.encode(state);
+        byte[] json = new ObjectMapper().writeValueAsBytes(state);
+
+        assertTrue(BinaryStateCodec.INSTANCE.isBinary(binary));
+        assertFalse(BinaryStateCodec.INSTANCE.isBinary(json));
+        assertTrue(binary.length * 4 < json.length, "Binary snapshot should be much smaller than JSON");
+    }
+
+    @Test
+    void testFormatSwitchIsTransparent() {
+        OrderPersistence.OrderState state = sampleState();
+
+        OrderPersistence.INSTANCE.setStateFormat(OrderPersistence.StateFormat.BINARY);
+        assertTrue(OrderPersistence.INSTANCE.saveOrderState(state.getPendingOrders(), state.getInProgressOrders(), state.getCompletedOrders()));
+
+        OrderPersistence.INSTANCE.setStateFormat(OrderPersistence.StateFormat.JSON);
+        OrderPersistence.OrderState loaded = OrderPersistence.INSTANCE.loadOrderState();
+        assertNotNull(loaded);
+        assertEquals(100, loaded.getPendingOrders().size());
+
+        assertTrue(OrderPersistence.INSTANCE.saveOrderState(loaded.getPendingOrders(), loaded.getInProgressOrders(), loaded.getCompletedOrders()));
+        assertEquals(state.getCompletedOrders(), OrderPersistence.INSTANCE.loadOrderState().getCompletedOrders());
+    }
+}
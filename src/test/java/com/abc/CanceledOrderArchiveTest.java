@@ -0,0 +1,106 @@
+package com.abc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+class CanceledOrderArchiveTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Order order(long date) {
+        Order order = new Order();
+        order.setType("Delivery");
+        order.setOrder_date(date);
+        order.setItems(List.of(new Item("Pizza", 1, 12.5)));
+        return order;
+    }
+
+    @Test
+    void testSegmentsRollAndStayReadable() {
+        CanceledOrderArchive archive = new CanceledOrderArchive(tempDir, 512, 0);
+        for (int i = 1; i <= 40; i++) {
+            assertTrue(archive.append(List.of(order(i))));
+        }
+
+        assertEquals(40, archive.getSize());
+        assertTrue(Files.exists(tempDir.resolve("segments.idx")), "Full segments should be indexed");
+        assertTrue(Files.exists(tempDir.resolve("segment-000001.ndjson.gz")), "Full segments should be compressed");
+
+        List<Long> dates = new ArrayList<>();
+        archive.forEach(o -> {
+            dates.add(o.getOrder_date());
+            return kotlin.Unit.INSTANCE;
+        });
+        assertEquals(40, dates.size());
+        assertEquals(1L, (long) dates.get(0));
+        assertEquals(40L, (long) dates.get(39));
+    }
+
+    @Test
+    void testPageSkipsToOffset() {
+        CanceledOrderArchive archive = new CanceledOrderArchive(tempDir, 512, 0);
+        for (int i = 1; i <= 40; i++) {
+            archive.append(List.of(order(i)));
+        }
+
+        List<Long> dates = new ArrayList<>();
+        archive.page(25, 10, o -> {
+            dates.add(o.getOrder_date());
+            return kotlin.Unit.INSTANCE;
+        });
+        assertEquals(10, dates.size());
+        assertEquals(26L, (long) dates.get(0));
+        assertEquals(35L, (long) dates.get(9));
+    }
+
+    @Test
+    void testReopenContinuesActiveSegment() {
+        CanceledOrderArchive archive = new CanceledOrderArchive(tempDir, 512, 0);
+        for (int i = 1; i <= 12; i++) {
+            archive.append(List.of(order(i)));
+        }
+        archive.close();
+
+        CanceledOrderArchive reopened = new CanceledOrderArchive(tempDir, 512, 0);
+        assertEquals(12, reopened.getSize());
+        reopened.append(List.of(order(13)));
+
+        List<Long> dates = new ArrayList<>();
+        reopened.page(12, 5, o -> {
+            dates.add(o.getOrder_date());
+            return kotlin.Unit.INSTANCE;
+        });
+        assertEquals(List.of(13L), dates);
+    }
+
+    @Test
+    void testRollBackDropsOnlyTheMarkedAppends() {
+        CanceledOrderArchive archive = new CanceledOrderArchive(tempDir, 512, 0);
+        for (int i = 1; i <= 3; i++) {
+            archive.append(List.of(order(i)));
+        }
+
+        int mark = archive.mark();
+        for (int i = 4; i <= 20; i++) {
+            archive.append(List.of(order(i)));
+        }
+        archive.rollBack(mark);
+        archive.append(List.of(order(21)));
+        archive.close();
+
+        CanceledOrderArchive reopened = new CanceledOrderArchive(tempDir, 512, 0);
+        List<Long> dates = new ArrayList<>();
+        reopened.forEach(o -> {
+            dates.add(o.getOrder_date());
+            return kotlin.Unit.INSTANCE;
+        });
+        assertEquals(List.of(1L, 2L, 3L, 21L), dates);
+    }
+}
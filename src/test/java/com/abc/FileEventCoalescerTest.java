@@ -0,0 +1,82 @@
+package com.abc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+class FileEventCoalescerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testBurstOfEventsIsCoalescedPerFile() throws Exception {
+        // Arrange
+        List<Path> ready = new CopyOnWriteArrayList<>();
+        try (FileEventCoalescer coalescer = new FileEventCoalescer(50, 4, path -> {
+            ready.add(path);
+            return kotlin.Unit.INSTANCE;
+        })) {
+            Path file = tempDir.resolve("burst.json");
+
+            // Act - keep appending faster than the quiet period
+            for (int i = 0; i < 5; i++) {
+                Files.writeString(file, "x".repeat(i + 1));
+                coalescer.submit(file);
+                Thread.sleep(10);
+            }
+            Thread.sleep(300);
+
+            // Assert
+            assertEquals(List.of(file), ready, "File should be handed on once, after it stops changing");
+            assertEquals(0, coalescer.getPendingCount());
+        }
+    }
+
+    @Test
+    void testManyFilesAreAllDispatched() throws Exception {
+        // Arrange
+        List<Path> ready = new CopyOnWriteArrayList<>();
+        try (FileEventCoalescer coalescer = new FileEventCoalescer(20, 2, path -> {
+            ready.add(path);
+            return kotlin.Unit.INSTANCE;
+        })) {
+            // Act
+            for (int i = 0; i < 20; i++) {
+                Path file = tempDir.resolve("order" + i + ".json");
+                Files.writeString(file, "{}");
+                coalescer.submit(file);
+            }
+            Thread.sleep(400);
+
+            // Assert
+            assertEquals(20, ready.size(), "Every settled file should be dispatched");
+        }
+    }
+
+    @Test
+    void testDeletedFileIsDropped() throws Exception {
+        // Arrange
+        List<Path> ready = new CopyOnWriteArrayList<>();
+        try (FileEventCoalescer coalescer = new FileEventCoalescer(50, 1, path -> {
+            ready.add(path);
+            return kotlin.Unit.INSTANCE;
+        })) {
+            Path file = tempDir.resolve("gone.json");
+            Files.writeString(file, "{}");
+
+            // Act
+            coalescer.submit(file);
+            Files.delete(file);
+            Thread.sleep(200);
+
+            // Assert
+            assertTrue(ready.isEmpty(), "Files deleted before settling should not be dispatched");
+        }
+    }
+}
@@ -40,13 +40,15 @@ public class FileWatcherTest {
 
         listener = new TestListener();
         OrderIn.INSTANCE.addOrderUpdateListener(listener);
-        OrderIn.INSTANCE.clearProcessedFiles();
+        // An empty ledger of the test's own, so the one in the working directory isn't touched
+        OrderIn.INSTANCE.useLedger(tempDir.resolve("ingestion_ledger.dat").toString());
     }
 
     @AfterEach
     void cleanUp() {
         OrderIn.INSTANCE.stopFileWatcher();
         OrderIn.INSTANCE.removeOrderUpdateListener(listener);
+        OrderIn.INSTANCE.useDefaultLedger();
     }
     //helper that waits for async watcher events
     private void waitForWatcher() throws InterruptedException{
@@ -122,4 +124,62 @@ public class FileWatcherTest {
 
     }
 
+    @Test
+    void testReconciliationPicksUpFilesTheWatcherMissed() throws Exception{
+        //file dropped before the watcher was registered, so no event is ever delivered for it
+        String json =  """
+            {
+              "order": {
+                "type": "Delivery",
+                "order_date": 1735689600000,
+                "source": "Missed",
+                "items": [
+                  { "name": "Taco", "quantity": 3, "price": 1.50 }
+                ]
+              }
+            }
+            """;
+        Files.writeString(tempDir.resolve("missed.json"), json);
+
+        long reconciledBefore = OrderIn.INSTANCE.getReconciledFileCount();
+        OrderIn.INSTANCE.startFileWatcher(tempDir.toString());
+        waitForWatcher();
+
+        List<List<Order>> updates = listener.getUpdates();
+        assertFalse(updates.isEmpty(), "Reconciliation should feed the missed file through the watcher");
+        assertEquals("Missed", updates.get(0).get(0).getSource());
+        assertTrue(OrderIn.INSTANCE.getReconciledFileCount() > reconciledBefore, "Reconciled file counter should increase");
+    }
+
+    @Test
+    void testPollingWatcherDetectsNewFile() throws Exception{
+        OrderIn.INSTANCE.setPollMinIntervalMs(50);
+        try {
+            OrderIn.INSTANCE.startPollingWatcher(tempDir.toString());
+            Thread.sleep(100);
+
+            String json =  """
+                {
+                  "order": {
+                    "type": "Pickup",
+                    "order_date": 1735689600000,
+                    "source": "Polled",
+                    "items": [
+                      { "name": "Soup", "quantity": 1, "price": 4.25 }
+                    ]
+                  }
+                }
+                """;
+            Files.writeString(tempDir.resolve("polled.json"), json);
+            waitForWatcher();
+
+            List<List<Order>> updates = listener.getUpdates();
+            assertFalse(updates.isEmpty(), "Polling watcher should pick up the new file");
+            assertEquals("Polled", updates.get(0).get(0).getSource());
+            assertNotNull(OrderIn.INSTANCE.getLastPollSweep(), "Sweep cost should be reported");
+        } finally {
+            OrderIn.INSTANCE.setPollMinIntervalMs(500);
+        }
+    }
+
 }
@@ -0,0 +1,81 @@
+package com.abc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+class IngestionLedgerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testOrderFingerprintsSurviveReopen() throws Exception {
+        // Arrange
+        Path ledgerFile = tempDir.resolve("ledger.dat");
+        OrderFingerprint fingerprint = new OrderFingerprint(42L, 7L);
+
+        // Act
+        try (IngestionLedger ledger = new IngestionLedger(ledgerFile, IngestionLedger.DEFAULT_BLOOM_BITS_PER_SLOT)) {
+            assertTrue(ledger.addOrder(fingerprint), "First add should be new");
+            assertFalse(ledger.addOrder(fingerprint), "Second add should be a duplicate");
+        }
+
+        // Assert
+        try (IngestionLedger reopened = new IngestionLedger(ledgerFile, IngestionLedger.DEFAULT_BLOOM_BITS_PER_SLOT)) {
+            assertTrue(reopened.containsOrder(fingerprint), "Fingerprint should be persisted");
+            assertFalse(reopened.containsOrder(new OrderFingerprint(42L, 8L)), "Unknown fingerprint should not match");
+            assertEquals(1, reopened.getSize());
+        }
+    }
+
+    @Test
+    void testTableGrowsPastInitialCapacity() throws Exception {
+        // Arrange
+        Path ledgerFile = tempDir.resolve("ledger.dat");
+
+        // Act - a one-bit-per-slot Bloom filter forces real table probes
+        try (IngestionLedger ledger = new IngestionLedger(ledgerFile, 1)) {
+            for (long i = 1; i <= 10_000; i++) {
+                assertTrue(ledger.addOrder(new OrderFingerprint(i * 31, i)));
+            }
+
+            // Assert
+            assertEquals(10_000, ledger.getSize());
+            for (long i = 1; i <= 10_000; i++) {
+                assertTrue(ledger.containsOrder(new OrderFingerprint(i * 31, i)), "Key " + i + " should survive growth");
+            }
+            assertFalse(ledger.containsOrder(new OrderFingerprint(-1L, -1L)));
+        }
+    }
+
+    @Test
+    void testFileIdentityAndCopiedContent() throws Exception {
+        // Arrange
+        Path ledgerFile = tempDir.resolve("ledger.dat");
+        Path upload = tempDir.resolve("order1.json");
+        Files.writeString(upload, "{\"order\": {}}");
+
+        try (IngestionLedger ledger = new IngestionLedger(ledgerFile, IngestionLedger.DEFAULT_BLOOM_BITS_PER_SLOT)) {
+            // Act
+            IngestionLedger.FileCheck first = ledger.check(upload);
+            assertFalse(first.getKnown(), "New file should be unknown");
+            ledger.recordFile(first);
+
+            // Assert
+            assertTrue(ledger.hasFile(upload), "Recorded file should be known by identity");
+
+            Path copy = tempDir.resolve("order1-copy.json");
+            Files.copy(upload, copy);
+            assertFalse(ledger.hasFile(copy), "Copy has a different identity");
+            assertTrue(ledger.check(copy).getKnown(), "Copy should be recognised by content hash");
+            assertTrue(ledger.hasFile(copy), "Copy identity is recorded after the content match");
+
+            Files.writeString(upload, "{\"order\": {\"type\": \"changed\"}}");
+            assertFalse(ledger.check(upload).getKnown(), "Rewritten file should be read again");
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.abc;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+
+    @Test
+    void testParseCents() {
+        assertEquals(1250L, Money.INSTANCE.parseCents("12.5"));
+        assertEquals(899L, Money.INSTANCE.parseCents("8.99"));
+        assertEquals(300L, Money.INSTANCE.parseCents(" 3 "));
+        assertEquals(50L, Money.INSTANCE.parseCents(".5"));
+        assertEquals(-150L, Money.INSTANCE.parseCents("-1.50"));
+        assertEquals(123456L, Money.INSTANCE.parseCents("$1,234.56"));
+        assertEquals(10000L, Money.INSTANCE.parseCents("1e2"));
+    }
+
+    @Test
+    void testParseRoundsFractionsOfACentLikeEarlierBuilds() {
+        // Math.round(price * 100) on the double, which is a hair below 8.995
+        assertEquals(899L, Money.INSTANCE.parseCents("8.995"));
+        assertEquals(Math.round(2.675 * 100), Money.INSTANCE.parseCents("2.675"));
+        assertEquals(899L, Money.INSTANCE.parseCents("8.9949"));
+        assertEquals(1L, Money.INSTANCE.parseCents("0.00500"));
+        assertEquals(123457L, Money.INSTANCE.parseCents("$1,234.567"));
+        assertEquals(250L, Money.INSTANCE.parseCents("2.5000"));
+    }
+
+    @Test
+    void testParseRejectsNonAmounts() {
+        assertThrows(NumberFormatException.class, () -> Money.INSTANCE.parseCents(""));
+        assertThrows(NumberFormatException.class, () -> Money.INSTANCE.parseCents("abc"));
+        assertThrows(NumberFormatException.class, () -> Money.INSTANCE.parseCents("1.2.3"));
+        assertThrows(NumberFormatException.class, () -> Money.INSTANCE.parseCents("12345678901234567890"));
+        assertThrows(NumberFormatException.class, () -> Money.INSTANCE.parseCents("1.2345x"));
+        assertThrows(NumberFormatException.class, () -> Money.INSTANCE.parseCents("1e2d"));
+        assertThrows(NumberFormatException.class, () -> Money.INSTANCE.parseCents("1e999"));
+    }
+
+    @Test
+    void testFormatMatchesStringFormat() {
+        for (long cents : new long[] {0, 5, 99, 100, 899, 123456, 100000000, -50, -123456}) {
+            assertEquals(String.format("$%.2f", cents / 100.0), Money.INSTANCE.format(cents));
+        }
+        assertEquals("$-92233720368547758.08", Money.INSTANCE.format(Long.MIN_VALUE));
+    }
+
+    @Test
+    void testFromDoubleRoundsLikeEarlierBuilds() {
+        assertEquals(899L, Money.INSTANCE.fromDouble(8.995));
+        assertEquals(30L, Money.INSTANCE.fromDouble(0.1 + 0.2));
+        assertEquals(0L, Money.INSTANCE.fromDouble(Double.NaN));
+    }
+}
@@ -0,0 +1,79 @@
+package com.abc;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+
+class OrderFingerprintTest {
+
+    private Order order;
+
+    private Order copyOf(Order source) {
+        Order copy = new Order();
+        copy.setType(source.getType());
+        copy.setSource(source.getSource());
+        copy.setOrder_date(source.getOrder_date());
+        copy.setItems(source.getItemsOrEmpty().stream()
+                .map(i -> new Item(i.getName(), i.getQuantity(), i.getPrice()))
+                .toList());
+        return copy;
+    }
+
+    @BeforeEach
+    void setUp() {
+        order = new Order();
+        order.setType("Delivery");
+        order.setSource("Grubhub");
+        order.setOrder_date(1609459200000L);
+        order.setItems(Arrays.asList(new Item("Burger", 1, 8.99), new Item("Fries", 2, 3.99)));
+    }
+
+    @Test
+    void testSameContentSameFingerprint() {
+        // Arrange
+        Order copy = copyOf(order);
+        copy.setStatus(Order.OrderStatus.COMPLETED);
+        copy.setSource("  GRUBHUB ");
+        copy.setItems(Arrays.asList(new Item("Fries", 2, 3.99), new Item("burger", 1, 8.99)));
+
+        // Assert
+        assertEquals(OrderFingerprint.Companion.of(order), OrderFingerprint.Companion.of(copy),
+                "Status, case, whitespace and item order should not change the fingerprint");
+    }
+
+    @Test
+    void testDifferentContentDifferentFingerprint() {
+        // Arrange
+        Order copy = copyOf(order);
+        copy.setItems(Arrays.asList(new Item("Burger", 2, 8.99), new Item("Fries", 2, 3.99)));
+
+        // Assert
+        assertNotEquals(OrderFingerprint.Companion.of(order), OrderFingerprint.Companion.of(copy),
+                "Different quantities should change the fingerprint");
+    }
+
+    @Test
+    void testIndexTracksAddRemoveAndRefresh() {
+        // Arrange
+        OrderFingerprintIndex index = new OrderFingerprintIndex();
+        Order copy = copyOf(order);
+
+        // Act & Assert
+        assertTrue(index.add(order), "First order should be new");
+        assertFalse(index.add(copy), "Same content should be reported as duplicate");
+        assertTrue(index.contains(copyOf(order)));
+
+        index.remove(order);
+        assertTrue(index.contains(order), "Copy is still indexed");
+        index.remove(copy);
+        assertFalse(index.contains(order), "Nothing left after both are removed");
+
+        index.add(order);
+        order.getItemsOrEmpty().get(0).setQuantity(5);
+        index.refresh(order);
+        assertTrue(index.contains(order), "Edited order should be indexed under its new content");
+        assertFalse(index.contains(copy), "Old content should no longer be indexed");
+    }
+}
@@ -1,16 +1,28 @@
 package com.abc;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
 import java.util.List;
 import static org.junit.jupiter.api.Assertions.*;
 
 class OrderInTest {
 
+    // Each test gets an empty ledger of its own, so the one in the working directory isn't touched
+    @TempDir
+    Path ledgerDir;
+
     @BeforeEach
-    void resetProcessedFiles() {
-        OrderIn.INSTANCE.clearProcessedFiles();
+    void useTestLedger() {
+        OrderIn.INSTANCE.useLedger(ledgerDir.resolve("ingestion_ledger.dat").toString());
+    }
+
+    @AfterEach
+    void restoreLedger() {
+        OrderIn.INSTANCE.useDefaultLedger();
     }
     @Test
     void testReadValidJsonOrder() throws Exception{
@@ -78,4 +90,153 @@ class OrderInTest {
         assertEquals(2, orders.size());
     }
 
+    @Test
+    void testParallelImportKeepsSequentialOrder() throws Exception {
+        Path tempDir = Files.createTempDirectory("orderTestParallel");
+
+        for (int i = 0; i < 20; i++) {
+            Files.writeString(tempDir.resolve(String.format("order%02d.json", i)),
+                    """
+                    {
+                      "order": {
+                        "type": "Pickup",
+                        "order_date": %d,
+                        "items": [
+                          { "name": "Item", "quantity": 1, "price": 1.0 }
+                        ]
+                      }
+                    }
+                    """.formatted(i + 1));
+        }
+
+        OrderIn.INSTANCE.setParallelImport(false);
+        List<Order> sequential = OrderIn.INSTANCE.readOrdersFromDirectory(tempDir.toString());
+
+        OrderIn.INSTANCE.clearProcessedFiles();
+        OrderIn.INSTANCE.setParallelImport(true);
+        OrderIn.INSTANCE.setMaxInFlightFiles(4);
+        List<Order> parallel = OrderIn.INSTANCE.readOrdersFromDirectory(tempDir.toString());
+        OrderIn.INSTANCE.setMaxInFlightFiles(64);
+
+        assertEquals(20, parallel.size());
+        assertSameContent(sequential, parallel, "Parallel import should merge results in the same order");
+        assertEquals(1L, parallel.get(0).getOrder_date());
+        assertEquals(20L, parallel.get(19).getOrder_date());
+    }
+
+    @Test
+    void testReuploadUnderNewNameIsDeduplicated() throws Exception {
+        Path tempDir = Files.createTempDirectory("orderTestDedupe");
+        String json = """
+                {
+                  "order": {
+                    "type": "Pickup",
+                    "order_date": 1735689600000,
+                    "source": "App",
+                    "items": [ { "name": "Burger", "quantity": 2, "price": 10.50 } ]
+                  }
+                }
+                """;
+
+        Files.writeString(tempDir.resolve("first.json"), json);
+        assertEquals(1, OrderIn.INSTANCE.readOrdersFromDirectory(tempDir.toString()).size());
+
+        Files.writeString(tempDir.resolve("first-copy.json"), json);
+        assertEquals(0, OrderIn.INSTANCE.readOrdersFromDirectory(tempDir.toString()).size(),
+                "Same order under a new file name should be rejected");
+    }
+
+    @Test
+    void testRewrittenFileIsReadAgain() throws Exception {
+        Path tempDir = Files.createTempDirectory("orderTestRewrite");
+        Path file = tempDir.resolve("batch.json");
+
+        Files.writeString(file, "{\"type\": \"A\", \"order_date\": 1, \"items\": [{\"name\": \"X\", \"quantity\": 1, \"price\": 1.0}]}\n");
+        assertEquals(1, OrderIn.INSTANCE.readOrdersFromDirectory(tempDir.toString()).size());
+
+        Files.writeString(file, "{\"type\": \"A\", \"order_date\": 1, \"items\": [{\"name\": \"X\", \"quantity\": 1, \"price\": 1.0}]}\n" +
+                "{\"type\": \"B\", \"order_date\": 2, \"items\": [{\"name\": \"Y\", \"quantity\": 1, \"price\": 1.0}]}\n");
+        List<Order> orders = OrderIn.INSTANCE.readOrdersFromDirectory(tempDir.toString());
+        assertEquals(1, orders.size(), "Only the order added by the rewrite should be ingested");
+        assertEquals("B", orders.get(0).getTypeOrDefault());
+    }
+
+    @Test
+    void testUnparseableFileIsQuarantined() throws Exception {
+        Path tempDir = Files.createTempDirectory("orderTestQuarantine");
+        Path broken = tempDir.resolve("broken.json");
+        Path fresh = tempDir.resolve("fresh.json");
+
+        Files.writeString(broken, "{\"order\": {\"type\": \"A\", \"items\": [");
+        Files.setLastModifiedTime(broken, FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+        Files.writeString(fresh, "{\"order\": {");
+
+        assertEquals(0, OrderIn.INSTANCE.readOrdersFromDirectory(tempDir.toString()).size());
+
+        Path quarantined = tempDir.resolve("failed").resolve("broken.json");
+        assertFalse(Files.exists(broken), "Failed file should be moved out of the upload directory");
+        assertTrue(Files.exists(quarantined));
+        String report = Files.readString(UploadQuarantine.INSTANCE.reportFor(quarantined));
+        assertTrue(report.contains("Reason:"));
+        assertTrue(Files.exists(fresh), "A file modified just now may still be being written");
+    }
+
+    @Test
+    void testArchiveModeMovesIngestedFiles() throws Exception {
+        Path tempDir = Files.createTempDirectory("orderTestArchive");
+        Path file = tempDir.resolve("order1.json");
+        Files.writeString(file, "{\"type\": \"A\", \"order_date\": 1, \"items\": [{\"name\": \"X\", \"quantity\": 1, \"price\": 1.0}]}");
+
+        OrderIn.INSTANCE.setArchiveIngestedFiles(true);
+        List<Order> orders;
+        try {
+            orders = OrderIn.INSTANCE.readOrdersFromDirectory(tempDir.toString());
+        } finally {
+            OrderIn.INSTANCE.setArchiveIngestedFiles(false);
+        }
+
+        assertEquals(1, orders.size());
+        assertFalse(Files.exists(file), "Ingested file should leave the upload directory");
+
+        Path archived = Paths.get(orders.get(0).getSourceFile());
+        assertTrue(Files.exists(archived));
+        assertTrue(archived.startsWith(tempDir.toAbsolutePath().resolve("archive")));
+        assertEquals(0, OrderIn.INSTANCE.readOrdersFromDirectory(tempDir.toString()).size(),
+                "Archived files aren't scanned again");
+    }
+
+    @Test
+    void testUploadsStayUntilOrdersAreSaved() throws Exception {
+        Path tempDir = Files.createTempDirectory("orderTestUnsaved");
+        Path file = tempDir.resolve("order1.json");
+        Files.writeString(file, "{\"type\": \"A\", \"order_date\": 1, \"items\": [{\"name\": \"X\", \"quantity\": 1, \"price\": 1.0}]}");
+
+        OrderIn.INSTANCE.setArchiveIngestedFiles(true);
+        try {
+            OrderIn.Ingest failed = OrderIn.INSTANCE.readUploads(tempDir.toString());
+            assertEquals(1, failed.getOrders().size());
+            assertTrue(Files.exists(file), "File should stay until its orders are saved");
+            failed.complete(false);
+            assertTrue(Files.exists(file));
+
+            OrderIn.Ingest saved = OrderIn.INSTANCE.readUploads(tempDir.toString());
+            assertEquals(1, saved.getOrders().size(), "Orders that weren't saved should be read again");
+            Path archived = Paths.get(saved.getOrders().get(0).getSourceFile());
+            saved.complete(true);
+
+            assertFalse(Files.exists(file));
+            assertTrue(Files.exists(archived), "File should be moved where its orders say it is");
+        } finally {
+            OrderIn.INSTANCE.setArchiveIngestedFiles(false);
+        }
+        assertEquals(0, OrderIn.INSTANCE.readOrdersFromDirectory(tempDir.toString()).size());
+    }
+
+    // Importers give each order its own id, so runs are compared by content
+    private static void assertSameContent(List<Order> expected, List<Order> actual, String message) {
+        assertEquals(expected.size(), actual.size(), message);
+        for (int i = 0; i < expected.size(); i++) {
+            assertTrue(expected.get(i).sameContentAs(actual.get(i)), message + ": " + expected.get(i) + " vs " + actual.get(i));
+        }
+    }
 }
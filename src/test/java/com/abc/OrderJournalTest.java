@@ -0,0 +1,180 @@
+package com.abc;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+class OrderJournalTest {
+
+    @TempDir
+    Path tempDir;
+
+    private OrderJournal journal;
+
+    @BeforeEach
+    void setUp() {
+        journal = new OrderJournal(tempDir.resolve("journal.ndjson"));
+    }
+
+    private Order order(String type, long date) {
+        Order order = new Order();
+        order.setType(type);
+        order.setOrder_date(date);
+        order.setItems(new ArrayList<>(List.of(new Item("Burger", 1, 5.0))));
+        return order;
+    }
+
+    @Test
+    void testReplayAppliesTransitionsInOrder() {
+        Order a = order("A", 1);
+        Order b = order("B", 2);
+        OrderFingerprint fa = OrderFingerprint.Companion.of(a);
+        OrderFingerprint fb = OrderFingerprint.Companion.of(b);
+
+        journal.append(List.of(OrderJournal.Record.Companion.add(a), OrderJournal.Record.Companion.add(b)));
+        journal.append(List.of(OrderJournal.Record.Companion.transition(OrderJournal.Op.START, fa, 0L)));
+        journal.append(List.of(OrderJournal.Record.Companion.transition(OrderJournal.Op.COMPLETE, fa, 0L)));
+        journal.append(List.of(OrderJournal.Record.Companion.edit(fb, 0L, List.of(new Item("Fries", 3, 2.0)), Order.OrderStatus.PENDING)));
+        journal.close();
+
+        OrderPersistence.OrderState state = journal.replay(new OrderPersistence.OrderState());
+
+        assertEquals(1, state.getPendingOrders().size());
+        assertEquals(0, state.getInProgressOrders().size());
+        assertEquals(1, state.getCompletedOrders().size());
+        assertEquals("A", state.getCompletedOrders().get(0).getType());
+        assertEquals(Order.OrderStatus.COMPLETED, state.getCompletedOrders().get(0).getStatus());
+        assertEquals("Fries", state.getPendingOrders().get(0).getItems().get(0).getName());
+    }
+
+    @Test
+    void testReplayOverSnapshotIsIdempotent() {
+        Order a = order("A", 1);
+        OrderFingerprint fa = OrderFingerprint.Companion.of(a);
+        journal.append(List.of(OrderJournal.Record.Companion.add(a)));
+        journal.append(List.of(OrderJournal.Record.Companion.transition(OrderJournal.Op.START, fa, 0L)));
+        journal.seal();
+
+        // Snapshot already holds the started order, but the sealed journal wasn't deleted yet
+        Order snapshotted = order("A", 1);
+        snapshotted.setStatus(Order.OrderStatus.IN_PROGRESS);
+        OrderPersistence.OrderState snapshot = new OrderPersistence.OrderState(List.of(), List.of(snapshotted), List.of());
+
+        journal.append(List.of(OrderJournal.Record.Companion.transition(OrderJournal.Op.DELETE, fa, 0L)));
+        OrderPersistence.OrderState state = journal.replay(snapshot);
+
+        assertEquals(0, state.getPendingOrders().size());
+        assertEquals(0, state.getInProgressOrders().size());
+        assertEquals(0, state.getCompletedOrders().size());
+    }
+
+    @Test
+    void testReplayLeavesPagedCompletedOrdersAlone() {
+        Order a = order("A", 1);
+        Order old = order("Old", 2);
+        List<Integer> loadedOffsets = new ArrayList<>();
+        PagedOrderList completed = new PagedOrderList(1, 100, (offset, limit) -> {
+            loadedOffsets.add(offset);
+            return List.of(order("Old", 2));
+        });
+        OrderPersistence.OrderState snapshot = new OrderPersistence.OrderState(new ArrayList<>(List.of(a)), List.of(), completed);
+
+        OrderFingerprint fa = OrderFingerprint.Companion.of(a);
+        journal.append(List.of(OrderJournal.Record.Companion.transition(OrderJournal.Op.START, fa, 0L)));
+        journal.append(List.of(OrderJournal.Record.Companion.transition(OrderJournal.Op.COMPLETE, fa, 0L)));
+        OrderPersistence.OrderState state = journal.replay(snapshot);
+
+        assertEquals(2, state.getCompletedOrders().size());
+        assertTrue(loadedOffsets.isEmpty(), "Transitions of loaded orders shouldn't decode the paged list");
+
+        // An order only the paged list has is found by decoding it
+        journal.append(List.of(OrderJournal.Record.Companion.transition(OrderJournal.Op.DELETE, OrderFingerprint.Companion.of(old), 0L)));
+        state = journal.replay(snapshot);
+
+        assertEquals(List.of(0), loadedOffsets);
+        assertEquals(1, state.getCompletedOrders().size());
+        assertEquals("A", state.getCompletedOrders().get(0).getType());
+    }
+
+    @Test
+    void testReplayFindsIdenticalOrdersById() {
+        Order first = order("A", 1);
+        Order second = order("A", 1);
+        first.setId(1);
+        second.setId(2);
+        OrderPersistence.OrderState snapshot =
+                new OrderPersistence.OrderState(new ArrayList<>(List.of(first, second)), List.of(), List.of());
+
+        OrderFingerprint fingerprint = OrderFingerprint.Companion.of(second);
+        journal.append(List.of(OrderJournal.Record.Companion.transition(OrderJournal.Op.START, fingerprint, 2L)));
+        journal.append(List.of(OrderJournal.Record.Companion.edit(fingerprint, 1L, List.of(new Item("Fries", 3, 2.0)), Order.OrderStatus.PENDING)));
+        OrderPersistence.OrderState state = journal.replay(snapshot);
+
+        assertEquals(1, state.getPendingOrders().size());
+        assertEquals(1L, state.getPendingOrders().get(0).getId());
+        assertEquals("Fries", state.getPendingOrders().get(0).getItems().get(0).getName());
+        assertEquals(1, state.getInProgressOrders().size());
+        assertEquals(2L, state.getInProgressOrders().get(0).getId());
+        assertEquals("Burger", state.getInProgressOrders().get(0).getItems().get(0).getName());
+    }
+
+    @Test
+    void testRecordWithIdFallsBackToContentForOrdersWithoutOne() {
+        Order saved = order("A", 1);
+        OrderPersistence.OrderState snapshot =
+                new OrderPersistence.OrderState(new ArrayList<>(List.of(saved)), List.of(), List.of());
+
+        journal.append(List.of(OrderJournal.Record.Companion.transition(OrderJournal.Op.START, OrderFingerprint.Companion.of(saved), 7L)));
+        OrderPersistence.OrderState state = journal.replay(snapshot);
+
+        assertEquals(0, state.getPendingOrders().size());
+        assertEquals(1, state.getInProgressOrders().size());
+    }
+
+    @Test
+    void testRecordFromBeforeCentsMatchesFractionalPrice() throws Exception {
+        Order order = new com.fasterxml.jackson.databind.ObjectMapper().readValue(
+                "{\"type\":\"Tea\",\"source\":\"Cafe\",\"order_date\":1,\"items\":[{\"name\":\"Tea\",\"quantity\":2,\"price\":8.995}]}",
+                Order.class);
+        OrderPersistence.OrderState snapshot =
+                new OrderPersistence.OrderState(new ArrayList<>(List.of(order)), List.of(), List.of());
+
+        // START written by a build that fingerprinted prices as Math.round(price * 100)
+        Files.writeString(tempDir.resolve("journal.ndjson"),
+                "{\"op\":\"START\",\"fp\":\"3d72090a34107a6c9a4a533aea9d6b78\"}\n");
+        OrderPersistence.OrderState state = journal.replay(snapshot);
+
+        assertEquals(1, state.getInProgressOrders().size());
+    }
+
+    @Test
+    void testTornLastLineIsSkipped() throws Exception {
+        Order a = order("A", 1);
+        journal.append(List.of(OrderJournal.Record.Companion.add(a)));
+        journal.close();
+        Files.writeString(tempDir.resolve("journal.ndjson"), "{\"op\":\"START\",\"fp\":\"ab",
+                java.nio.file.StandardOpenOption.APPEND);
+
+        OrderPersistence.OrderState state = journal.replay(new OrderPersistence.OrderState());
+        assertEquals(1, state.getPendingOrders().size());
+    }
+
+    @Test
+    void testSealResetsPendingCount() {
+        journal.append(List.of(OrderJournal.Record.Companion.add(order("A", 1))));
+        assertEquals(1, journal.getPendingRecords());
+
+        journal.seal();
+        assertEquals(0, journal.getPendingRecords());
+        assertTrue(journal.exists());
+
+        journal.deleteSealed();
+        assertFalse(journal.exists());
+    }
+}
@@ -0,0 +1,387 @@
+package com.abc;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import javafx.collections.ListChangeListener;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+class OrderManagerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private OrderManager manager;
+    private List<Order> orders;
+
+    @BeforeEach
+    void setUp() {
+        OrderPersistence.INSTANCE.useStore(OrderPersistence.INSTANCE.openStore("json", tempDir));
+        OrderPersistence.INSTANCE.useJournal(tempDir.resolve("orders_journal.ndjson").toString());
+        manager = new OrderManager(Runnable::run);
+        orders = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            orders.add(new Order("Delivery", 1609459200000L + i, List.of(new Item("Burger", 1, 8.99)), "Source " + i, Order.OrderStatus.PENDING));
+        }
+        assertEquals(5, manager.addOrders(orders).size());
+    }
+
+    @AfterEach
+    void tearDown() {
+        OrderPersistence.INSTANCE.useDefaultJournal();
+        OrderPersistence.INSTANCE.useStore(OrderPersistence.INSTANCE.openStore("json", Path.of("")));
+    }
+
+    @Test
+    void testBestEffortBatchMovesTheValidOrders() {
+        manager.startOrder(orders.get(4));
+
+        OrderManager.BatchOperationResult result = manager.startOrders(
+                List.of(orders.get(0), orders.get(4), orders.get(2), orders.get(0)), OrderManager.BatchMode.BEST_EFFORT);
+
+        assertEquals(2, result.getSuccessCount());
+        assertEquals(2, result.getFailureCount(), "A non-pending order and a repeated one should fail");
+        assertEquals(List.of(orders.get(4), orders.get(0), orders.get(2)), manager.getInProgressOrders());
+        assertEquals(List.of(orders.get(1), orders.get(3)), manager.getPendingOrders());
+        assertEquals(Order.OrderStatus.IN_PROGRESS, orders.get(2).getStatus());
+    }
+
+    @Test
+    void testAllOrNothingBatchChangesNothingOnFailure() {
+        manager.startOrder(orders.get(4));
+
+        OrderManager.BatchOperationResult result = manager.completeOrders(
+                List.of(orders.get(4), orders.get(1)), OrderManager.BatchMode.ALL_OR_NOTHING);
+
+        assertEquals(0, result.getSuccessCount());
+        assertEquals(2, result.getFailureCount());
+        assertEquals(List.of(orders.get(4)), manager.getInProgressOrders());
+        assertTrue(manager.getCompletedOrders().isEmpty());
+        assertEquals(Order.OrderStatus.IN_PROGRESS, orders.get(4).getStatus());
+    }
+
+    @Test
+    void testBatchIsSaved() {
+        manager.startOrders(orders, OrderManager.BatchMode.ALL_OR_NOTHING);
+        manager.completeOrders(List.of(orders.get(1), orders.get(3)), OrderManager.BatchMode.ALL_OR_NOTHING);
+        manager.undoCompleteBatch(List.of(orders.get(3)), OrderManager.BatchMode.ALL_OR_NOTHING);
+        OrderPersistence.INSTANCE.flush(10_000);
+
+        OrderPersistence.OrderState saved = OrderPersistence.INSTANCE.loadOrderState();
+        assertNotNull(saved);
+        assertTrue(saved.getPendingOrders().isEmpty());
+        assertEquals(4, saved.getInProgressOrders().size());
+        assertEquals(List.of(orders.get(1)), saved.getCompletedOrders());
+        assertEquals(orders.get(1).getId(), saved.getCompletedOrders().get(0).getId());
+    }
+
+    @Test
+    void testDeleteOrdersCancelsTheBatchTogether() throws Exception {
+        OrderManager fileManager = new OrderManager(Runnable::run);
+        Path single = Files.writeString(tempDir.resolve("single.json"), "{}");
+        Path shared = Files.writeString(tempDir.resolve("shared.json"), "[]");
+        List<Order> imported = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Order order = new Order("Pickup", 1609459300000L + i, List.of(new Item("Fries", 1, 3.49)), "Cafe " + i, Order.OrderStatus.PENDING);
+            order.setSourceFile((i == 0 ? single : shared).toString());
+            order.setSourceIndex(i == 0 ? 0 : i - 1);
+            imported.add(order);
+        }
+        fileManager.addOrders(imported);
+        fileManager.startOrder(imported.get(1));
+        int canceledBefore = OrderPersistence.INSTANCE.countCanceledOrders();
+
+        OrderManager.BatchDeletionResult result = fileManager.deleteOrders(
+                List.of(imported.get(0), imported.get(1), orders.get(0)));
+
+        assertEquals(2, result.getSuccessCount());
+        assertEquals(1, result.getFailures().size(), "An order this manager doesn't track should fail");
+        assertEquals(1, result.getFilesDeleted().get(10, TimeUnit.SECONDS));
+        assertFalse(Files.exists(single));
+        assertTrue(Files.exists(shared), "A file another tracked order came from should be kept");
+        assertEquals(List.of(imported.get(2)), fileManager.getPendingOrders());
+        assertTrue(fileManager.getInProgressOrders().isEmpty());
+        assertEquals(canceledBefore + 2, OrderPersistence.INSTANCE.countCanceledOrders());
+
+        result = fileManager.deleteOrders(List.of(imported.get(2)));
+        assertEquals(1, result.getFilesDeleted().get(10, TimeUnit.SECONDS));
+        assertFalse(Files.exists(shared));
+    }
+
+    @Test
+    void testDeleteOrdersKeepsTheBatchWhenTheArchiveFails() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("kept.json"), "{}");
+        orders.get(0).setSourceFile(file.toString());
+        OrderPersistence.INSTANCE.useStore(new FailingArchiveStore(OrderPersistence.INSTANCE.openStore("json", tempDir)));
+
+        OrderManager.BatchDeletionResult result = manager.deleteOrders(List.of(orders.get(0), orders.get(1)));
+
+        assertEquals(0, result.getSuccessCount());
+        assertEquals(2, result.getFailures().size());
+        assertEquals(0, result.getFilesDeleted().get(10, TimeUnit.SECONDS));
+        assertTrue(Files.exists(file), "Source files of orders that weren't archived should stay");
+        assertEquals(5, manager.getPendingOrders().size(), "Orders that weren't archived should stay in their lists");
+    }
+
+    @Test
+    void testDeletingOrderFromBaselineStateRemovesItsUpload() throws Exception {
+        // State as the first release saved it: no ids, no source files, prices as doubles
+        Path stateDir = Files.createDirectories(tempDir.resolve("baseline"));
+        Files.writeString(stateDir.resolve("orders_state.json"), """
+                {
+                  "pendingOrders" : [ {
+                    "type" : "Restaurant",
+                    "order_date" : 1765257892727,
+                    "items" : [ { "name" : "Pizza", "quantity" : 2, "price" : 12.5 } ],
+                    "source" : "Test Restaurant 1",
+                    "status" : "PENDING"
+                  } ],
+                  "inProgressOrders" : [ ],
+                  "completedOrders" : [ ]
+                }
+                """);
+        Path uploads = Files.createDirectories(tempDir.resolve("uploads"));
+        Path upload = Files.writeString(uploads.resolve("pizza.json"), """
+                {"order": {"type": "Restaurant", "order_date": 1765257892727, "source": "Test Restaurant 1",
+                           "items": [ { "name": "Pizza", "quantity": 2, "price": 12.50 } ]}}
+                """);
+        Files.writeString(uploads.resolve("other.json"), """
+                {"order": {"type": "Pickup", "order_date": 1, "source": "Elsewhere", "items": []}}
+                """);
+        OrderPersistence.INSTANCE.useStore(OrderPersistence.INSTANCE.openStore("json", stateDir));
+
+        OrderPersistence.OrderState state = OrderPersistence.INSTANCE.loadOrderState();
+        assertNull(state.getPendingOrders().get(0).getSourceFile());
+        assertEquals(java.util.Set.of(Order.OrderStatus.PENDING), OrderIn.INSTANCE.backfillSourceFiles(state, uploads.toString()));
+        OrderManager restored = new OrderManager(Runnable::run);
+        restored.restoreState(state);
+
+        Order order = restored.getPendingOrders().get(0);
+        assertEquals(upload.toString(), order.getSourceFile());
+        assertTrue(restored.deleteOrder(order).getFileDeleted());
+        assertFalse(Files.exists(upload), "The upload the order came from should be deleted with it");
+        assertTrue(Files.exists(uploads.resolve("other.json")));
+    }
+
+    // A store whose canceled-orders archive can't be written
+    private static class FailingArchiveStore implements OrderStore {
+        private final OrderStore delegate;
+
+        FailingArchiveStore(OrderStore delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override public String getName() { return delegate.getName(); }
+        @Override public void saveState(OrderPersistence.OrderState state) { delegate.saveState(state); }
+        @Override public void saveState(OrderPersistence.OrderState state, java.util.Set<? extends Order.OrderStatus> changed) { delegate.saveState(state, changed); }
+        @Override public OrderPersistence.OrderState loadState() { return delegate.loadState(); }
+        @Override public OrderPersistence.OrderState loadStateLazily() { return delegate.loadStateLazily(); }
+        @Override public boolean hasState() { return delegate.hasState(); }
+        @Override public void clearState() { delegate.clearState(); }
+        @Override public void appendCanceled(List<Order> orders) { throw new IllegalStateException("archive is read-only"); }
+        @Override public void forEachCanceled(int offset, int limit, kotlin.jvm.functions.Function1<? super Order, kotlin.Unit> consumer) { delegate.forEachCanceled(offset, limit, consumer); }
+        @Override public int canceledCount() { return delegate.canceledCount(); }
+        @Override public void clearCanceled() { delegate.clearCanceled(); }
+        @Override public void close() throws java.io.IOException { delegate.close(); }
+    }
+
+    @Test
+    void testProjectionIsAppliedInOneBatch() {
+        List<Runnable> fxQueue = new ArrayList<>();
+        OrderManager queued = new OrderManager(fxQueue::add);
+        List<Order> batch = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            batch.add(new Order("Togo", 1609459400000L + i, List.of(new Item("Taco", 2, 2.5)), "Taqueria " + i, Order.OrderStatus.PENDING));
+        }
+
+        queued.addOrders(batch);
+        queued.startOrder(batch.get(0));
+        queued.completeOrders(List.of(batch.get(0)), OrderManager.BatchMode.ALL_OR_NOTHING);
+
+        // The core changed right away; the observable lists wait for the FX thread
+        assertEquals(Order.OrderStatus.COMPLETED, queued.statusOf(batch.get(0)));
+        assertEquals(2, queued.snapshot().getPendingOrders().size());
+        assertTrue(queued.getPendingOrders().isEmpty());
+        assertEquals(1, fxQueue.size(), "Changes made before the FX thread runs should share one task");
+
+        fxQueue.remove(0).run();
+        assertEquals(List.of(batch.get(1), batch.get(2)), queued.getPendingOrders());
+        assertTrue(queued.getInProgressOrders().isEmpty());
+        assertEquals(List.of(batch.get(0)), queued.getCompletedOrders());
+    }
+
+    @Test
+    void testConcurrentIntake() throws Exception {
+        ExecutorService intake = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int thread = t;
+                futures.add(intake.submit(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        Order order = new Order("Delivery", 1609460000000L + thread * 1000 + i,
+                                List.of(new Item("Soup", 1, 5.0)), "Intake " + thread, Order.OrderStatus.PENDING);
+                        manager.addOrders(List.of(order));
+                        if (i % 2 == 0) {
+                            manager.startOrder(order);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            intake.shutdown();
+        }
+
+        OrderPersistence.OrderState state = manager.snapshot();
+        assertEquals(5 + 100, state.getPendingOrders().size());
+        assertEquals(100, state.getInProgressOrders().size());
+        assertEquals(state.getPendingOrders(), manager.getPendingOrders());
+        assertEquals(state.getInProgressOrders(), manager.getInProgressOrders());
+    }
+
+    @Test
+    void testPagedCompletedOrdersShareInstancesWithTheView() {
+        List<Order> completed = new ArrayList<>();
+        for (int i = 0; i < 450; i++) {
+            Order order = new Order("Delivery", 1609470000000L + i, List.of(new Item("Pie", 1, 4.0)), "Bakery " + i, Order.OrderStatus.COMPLETED);
+            OrderIds.INSTANCE.assign(order);
+            completed.add(order);
+        }
+        byte[] bytes = BinaryStateCodec.INSTANCE.encode(new OrderPersistence.OrderState(List.of(), List.of(), completed));
+        OrderManager restored = new OrderManager(Runnable::run);
+        restored.restoreState(BinaryStateCodec.INSTANCE.decodeLazily(bytes, 200));
+
+        OrderSummary summary = restored.summaryOf(Order.OrderStatus.COMPLETED);
+        assertEquals(450, summary.getCount(), "The summary should come from the decoder");
+        assertEquals(450 * 4.0, summary.getRevenue(), 0.001);
+
+        Order shown = restored.getCompletedOrders().get(321);
+        assertEquals(completed.get(321).getId(), shown.getId());
+        assertSame(shown, restored.findOrder(shown.getId()));
+        assertTrue(restored.undoComplete(shown).getSuccess());
+
+        assertEquals(449, restored.getCompletedOrders().size());
+        assertEquals(List.of(shown), restored.getInProgressOrders());
+        assertEquals(449, restored.snapshot().getCompletedOrders().size());
+        assertEquals(449 * 4.0, restored.summaryOf(Order.OrderStatus.COMPLETED).getRevenue(), 0.001);
+    }
+
+    @Test
+    void testRestoredPagedListReachesTheProjectionAsAChange() {
+        List<Order> completed = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            Order order = new Order("Delivery", 1609480000000L + i, List.of(new Item("Pie", 1, 4.0)), "Bakery " + i, Order.OrderStatus.COMPLETED);
+            OrderIds.INSTANCE.assign(order);
+            completed.add(order);
+        }
+        byte[] bytes = BinaryStateCodec.INSTANCE.encode(new OrderPersistence.OrderState(List.of(), List.of(), completed));
+        List<Runnable> fxQueue = new ArrayList<>();
+        OrderManager restored = new OrderManager(fxQueue::add);
+        int[] added = {0};
+        restored.getCompletedOrders().addListener((ListChangeListener<Order>) change -> {
+            while (change.next()) added[0] += change.getAddedSize();
+        });
+
+        restored.restoreState(BinaryStateCodec.INSTANCE.decodeLazily(bytes, 200));
+        assertTrue(restored.getCompletedOrders().isEmpty(), "The projection waits for the FX thread");
+        while (!fxQueue.isEmpty()) fxQueue.remove(0).run();
+
+        assertEquals(300, restored.getCompletedOrders().size());
+        assertEquals(300, added[0], "A bound table should be told about the restored rows");
+        assertEquals(completed.get(250).getId(), restored.getCompletedOrders().get(250).getId());
+    }
+
+    @Test
+    void testPagedOutCompletedOrdersKeepTheirSourceFile() throws Exception {
+        Path multi = Files.writeString(tempDir.resolve("multi.json"), "[]");
+        List<Order> fromFile = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Order order = new Order("Delivery", 1609490000000L + i, List.of(new Item("Pie", 1, 4.0)), "Bakery",
+                    i == 0 ? Order.OrderStatus.PENDING : Order.OrderStatus.COMPLETED);
+            order.setSourceFile(multi.toString());
+            order.setSourceIndex(i);
+            OrderIds.INSTANCE.assign(order);
+            fromFile.add(order);
+        }
+        byte[] bytes = BinaryStateCodec.INSTANCE.encode(
+                new OrderPersistence.OrderState(List.of(fromFile.get(0)), List.of(), fromFile.subList(1, 3)));
+        OrderManager restored = new OrderManager(Runnable::run);
+        restored.restoreState(BinaryStateCodec.INSTANCE.decodeLazily(bytes, 200));
+
+        Order pending = restored.getPendingOrders().get(0);
+        restored.deleteOrder(pending);
+        assertTrue(Files.exists(multi), "Completed orders still paged out came from the file too");
+
+        // A paged list that can't tell its files counts as sharing every file until it's loaded
+        OrderManager unknown = new OrderManager(Runnable::run);
+        PagedOrderList paged = new PagedOrderList(1, 200, (offset, limit) -> List.of(fromFile.get(2)));
+        Order other = new Order("Delivery", 1609490000100L, List.of(new Item("Pie", 1, 4.0)), "Bakery", Order.OrderStatus.PENDING);
+        other.setSourceFile(multi.toString());
+        unknown.restoreState(new OrderPersistence.OrderState(List.of(other), List.of(), paged));
+        unknown.deleteOrder(other);
+        assertTrue(Files.exists(multi));
+    }
+
+    @Test
+    void testWhenProjectedRunsAfterTheChange() {
+        List<Runnable> fxQueue = new ArrayList<>();
+        OrderManager queued = new OrderManager(fxQueue::add);
+        queued.addOrders(orders);
+        fxQueue.remove(0).run();
+
+        List<Integer> seen = new ArrayList<>();
+        queued.startOrder(orders.get(0));
+        queued.whenProjected(() -> {
+            seen.add(queued.getInProgressOrders().size());
+            return kotlin.Unit.INSTANCE;
+        });
+        assertTrue(seen.isEmpty(), "Nothing should run before the FX thread does");
+
+        fxQueue.remove(0).run();
+        assertEquals(List.of(1), seen, "The action should see the started order in the projection");
+    }
+
+    @Test
+    void testSummariesFollowTheLists() {
+        List<Runnable> fxQueue = new ArrayList<>();
+        OrderManager queued = new OrderManager(fxQueue::add);
+        List<java.util.Map<Order.OrderStatus, OrderSummary>> notified = new ArrayList<>();
+        queued.setOnSummaryChanged(summaries -> {
+            notified.add(summaries);
+            return kotlin.Unit.INSTANCE;
+        });
+
+        queued.addOrders(orders);
+        queued.startOrders(List.of(orders.get(0), orders.get(1)), OrderManager.BatchMode.ALL_OR_NOTHING);
+        queued.completeOrder(orders.get(0));
+        queued.updateOrderItems(orders.get(1), List.of(new Item("Burger", 3, 8.99), new Item("Shake", 2, 4.5)));
+
+        // Read without waiting for the FX thread
+        OrderSummary pending = queued.summaryOf(Order.OrderStatus.PENDING);
+        assertEquals(3, pending.getCount());
+        assertEquals(3 * 8.99, pending.getRevenue(), 0.001);
+        assertEquals(3L, pending.getItemUnits());
+        OrderSummary inProgress = queued.summaryOf(Order.OrderStatus.IN_PROGRESS);
+        assertEquals(1, inProgress.getCount());
+        assertEquals(3 * 8.99 + 9.0, inProgress.getRevenue(), 0.001);
+        assertEquals(5L, inProgress.getItemUnits());
+        assertEquals(1, queued.summaryOf(Order.OrderStatus.COMPLETED).getCount());
+
+        fxQueue.remove(0).run();
+        assertEquals(1, notified.size(), "The listener should run once per projection batch");
+        assertEquals(queued.summaries(), notified.get(0));
+    }
+}
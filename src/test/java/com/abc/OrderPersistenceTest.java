@@ -7,10 +7,15 @@ import org.junit.jupiter.api.io.TempDir;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.io.File;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 class OrderPersistenceTest {
 
@@ -51,6 +56,16 @@ class OrderPersistenceTest {
         pendingOrders = Arrays.asList(testOrder1);
         inProgressOrders = Arrays.asList(testOrder2);
         completedOrders = Arrays.asList();
+
+        // Saves and clears go to a temp store, never to the state files in the working directory
+        OrderPersistence.INSTANCE.useStore(OrderPersistence.INSTANCE.openStore("json", tempDir));
+        OrderPersistence.INSTANCE.useJournal(tempDir.resolve("orders_journal.ndjson").toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        OrderPersistence.INSTANCE.useDefaultJournal();
+        OrderPersistence.INSTANCE.useStore(OrderPersistence.INSTANCE.openStore("json", Path.of("")));
     }
 
     @Test
@@ -143,4 +158,104 @@ class OrderPersistenceTest {
         OrderPersistence.INSTANCE.saveOrderState(pendingOrders, inProgressOrders, completedOrders);
         assertTrue(OrderPersistence.INSTANCE.hasSavedState(), "Should have saved state after saving");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testChangeRewritesOnlyTouchedLists() throws Exception {
+        List<Order> pending = new ArrayList<>(pendingOrders);
+        List<Order> inProgress = new ArrayList<>(inProgressOrders);
+        assertTrue(OrderPersistence.INSTANCE.saveOrderState(pending, inProgress, completedOrders));
+
+        // Start the pending order
+        OrderFingerprint fingerprint = OrderFingerprint.Companion.of(testOrder1);
+        inProgress.add(pending.remove(0));
+        OrderPersistence.INSTANCE.persistChange(
+                List.of(OrderJournal.Record.Companion.transition(OrderJournal.Op.START, fingerprint, testOrder1.getId())),
+                () -> new OrderPersistence.OrderState(pending, inProgress, completedOrders));
+
+        Path state = tempDir.resolve("orders_state");
+        assertTrue(Files.exists(state.resolve("pending-000002")));
+        assertTrue(Files.exists(state.resolve("in_progress-000002")));
+        assertTrue(Files.exists(state.resolve("completed-000001")), "Completed list should not be rewritten");
+        assertEquals(2, OrderPersistence.INSTANCE.loadOrderState().getInProgressOrders().size());
+    }
+
+    @Test
+    void testAsyncChangeIsSavedAsItWasSubmitted() throws Exception {
+        OrderPersistence.INSTANCE.setAsyncWrites(true);
+        try {
+            Item item = new Item("Soup", 1, 5.0);
+            Order order = new Order("Delivery", 1609459200000L, List.of(item), "Cafe", Order.OrderStatus.PENDING);
+            List<Order> pending = new ArrayList<>(List.of(order));
+            CompletableFuture<Boolean> saved = OrderPersistence.INSTANCE.persistChange(
+                    List.of(OrderJournal.Record.Companion.add(order)),
+                    () -> new OrderPersistence.OrderState(pending, List.of(), List.of()));
+
+            // Changed after the change was handed over, while the writer may still be saving it
+            item.setQuantity(99);
+            pending.clear();
+
+            assertTrue(saved.get(10, TimeUnit.SECONDS));
+            OrderPersistence.OrderState loaded = OrderPersistence.INSTANCE.loadOrderState();
+            assertEquals(1, loaded.getPendingOrders().size());
+            assertEquals(1, loaded.getPendingOrders().get(0).getItemsOrEmpty().get(0).getQuantity());
+        } finally {
+            OrderPersistence.INSTANCE.setAsyncWrites(false);
+        }
+    }
+
+    @Test
+    void testAsyncJournalChangeCopiesStateOnlyForSnapshot() throws Exception {
+        OrderPersistence.INSTANCE.setJournalEnabled(true);
+        OrderPersistence.INSTANCE.setAsyncWrites(true);
+        OrderPersistence.INSTANCE.setSnapshotEveryRecords(2);
+        try {
+            AtomicInteger stateReads = new AtomicInteger();
+            List<Order> pending = new ArrayList<>(List.of(testOrder1));
+            assertTrue(OrderPersistence.INSTANCE.persistChange(
+                    List.of(OrderJournal.Record.Companion.add(testOrder1)),
+                    () -> {
+                        stateReads.incrementAndGet();
+                        return new OrderPersistence.OrderState(pending, List.of(), List.of());
+                    }).get(10, TimeUnit.SECONDS));
+            assertEquals(0, stateReads.get(), "Appending to the journal should not copy the orders");
+
+            // The second record makes a snapshot due, so this change hands over the orders
+            pending.add(testOrder2);
+            assertTrue(OrderPersistence.INSTANCE.persistChange(
+                    List.of(OrderJournal.Record.Companion.add(testOrder2)),
+                    () -> {
+                        stateReads.incrementAndGet();
+                        return new OrderPersistence.OrderState(pending, List.of(), List.of());
+                    }).get(10, TimeUnit.SECONDS));
+            assertEquals(1, stateReads.get());
+            OrderPersistence.INSTANCE.flush(10_000);
+
+            assertEquals(2, OrderPersistence.INSTANCE.loadOrderState().getPendingOrders().size());
+        } finally {
+            OrderPersistence.INSTANCE.setSnapshotEveryRecords(500);
+            OrderPersistence.INSTANCE.setAsyncWrites(false);
+            OrderPersistence.INSTANCE.setJournalEnabled(false);
+        }
+    }
+
+    @Test
+    void testJournalStaysWhereItWasPointed() throws Exception {
+        Path journal = tempDir.resolve("orders_journal.ndjson");
+        OrderPersistence.INSTANCE.setJournalEnabled(true);
+        try {
+            List<Order> pending = new ArrayList<>(List.of(testOrder1));
+            assertTrue(OrderPersistence.INSTANCE.persistChange(
+                    List.of(OrderJournal.Record.Companion.add(testOrder1)),
+                    () -> new OrderPersistence.OrderState(pending, List.of(), List.of())).get(10, TimeUnit.SECONDS));
+            assertTrue(Files.exists(journal), "Change should be appended to the journal that was set");
+
+            OrderPersistence.OrderState loaded = OrderPersistence.INSTANCE.loadOrderState();
+            assertEquals(1, loaded.getPendingOrders().size(), "Journal should be replayed from its own location");
+
+            OrderPersistence.INSTANCE.clearSavedState();
+            assertFalse(Files.exists(journal));
+        } finally {
+            OrderPersistence.INSTANCE.setJournalEnabled(false);
+        }
+    }
+}
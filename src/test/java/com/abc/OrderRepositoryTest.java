@@ -0,0 +1,69 @@
+package com.abc;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+class OrderRepositoryTest {
+
+    private OrderRepository repository;
+
+    private Order order(String source) {
+        return new Order("Delivery", 1609459200000L, List.of(new Item("Burger", 1, 8.99)), source, Order.OrderStatus.PENDING);
+    }
+
+    @BeforeEach
+    void setUp() {
+        repository = new OrderRepository();
+    }
+
+    @Test
+    void testInsertAssignsIdAndRejectsDuplicates() {
+        Order order = order("Grubhub");
+        assertTrue(repository.insert(order, Order.OrderStatus.PENDING, false));
+        assertNotEquals(0L, order.getId());
+        assertSame(order, repository.get(order.getId()));
+
+        Order sameContent = order("Grubhub");
+        assertTrue(repository.isDuplicate(sameContent));
+        assertFalse(repository.insert(sameContent, Order.OrderStatus.PENDING, false));
+        assertFalse(repository.contains(sameContent));
+        assertEquals(1, repository.getSize());
+
+        assertTrue(repository.insert(sameContent, Order.OrderStatus.PENDING, true));
+        assertNotEquals(order.getId(), sameContent.getId());
+    }
+
+    @Test
+    void testStatusFollowsMovesAndSurvivesEdits() {
+        Order order = order("Grubhub");
+        repository.insert(order, Order.OrderStatus.PENDING, false);
+        repository.move(order, Order.OrderStatus.IN_PROGRESS);
+
+        // Editing changes neither the id nor where the order is tracked
+        order.setItems(List.of(new Item("Fries", 3, 3.99)));
+        repository.refresh(order);
+        assertEquals(Order.OrderStatus.IN_PROGRESS, repository.statusOf(order));
+        assertFalse(repository.isDuplicate(order(order.getSource())));
+
+        // An equal copy is not the tracked order
+        Order copy = order.copy(order.getType(), order.getOrder_date(), order.getItems(), order.getSource(), order.getStatus());
+        copy.setId(order.getId());
+        assertNull(repository.statusOf(copy));
+
+        assertTrue(repository.remove(order));
+        assertNull(repository.statusOf(order));
+        assertNull(repository.get(order.getId()));
+        assertFalse(repository.remove(order));
+    }
+
+    @Test
+    void testIdCannotBeReplaced() {
+        Order order = order("Grubhub");
+        order.setId(42L);
+        order.setId(42L);
+        assertThrows(IllegalStateException.class, () -> order.setId(43L));
+    }
+}
@@ -0,0 +1,319 @@
+package com.abc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+class OrderStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Order order(String type, long date, Order.OrderStatus status) {
+        return new Order(type, date, List.of(new Item("Burger", 1, 8.99)), "Cafe", status);
+    }
+
+    private OrderPersistence.OrderState sampleState() {
+        return new OrderPersistence.OrderState(
+                List.of(order("A", 1, Order.OrderStatus.PENDING), order("B", 2, Order.OrderStatus.PENDING)),
+                List.of(order("C", 3, Order.OrderStatus.IN_PROGRESS)),
+                List.of());
+    }
+
+    private void checkBackend(OrderStore store) {
+        assertFalse(store.hasState());
+        assertNull(store.loadState());
+
+        store.saveState(sampleState());
+        OrderPersistence.OrderState loaded = store.loadState();
+        assertNotNull(loaded);
+        assertEquals(sampleState().getPendingOrders(), loaded.getPendingOrders());
+        assertEquals(Order.OrderStatus.IN_PROGRESS, loaded.getInProgressOrders().get(0).getStatus());
+
+        // A shorter list replaces the longer one completely
+        store.saveState(new OrderPersistence.OrderState(List.of(order("A", 1, Order.OrderStatus.PENDING)), List.of(), List.of()));
+        assertEquals(1, store.loadState().getPendingOrders().size());
+
+        List<Order> canceled = new ArrayList<>();
+        for (int i = 1; i <= 25; i++) {
+            canceled.add(order("X", i, Order.OrderStatus.PENDING));
+        }
+        store.appendCanceled(canceled);
+        assertEquals(25, store.canceledCount());
+
+        List<Long> page = new ArrayList<>();
+        store.forEachCanceled(20, 10, o -> {
+            page.add(o.getOrder_date());
+            return kotlin.Unit.INSTANCE;
+        });
+        assertEquals(List.of(21L, 22L, 23L, 24L, 25L), page);
+    }
+
+    @Test
+    void testFileStore() throws Exception {
+        try (OrderStore store = OrderPersistence.INSTANCE.openStore("json", tempDir)) {
+            checkBackend(store);
+        }
+    }
+
+    @Test
+    void testMVStore() throws Exception {
+        try (OrderStore store = OrderPersistence.INSTANCE.openStore("mvstore", tempDir)) {
+            checkBackend(store);
+        }
+    }
+
+    @Test
+    void testMVStoreKeepsCompletedSummaryForLazyLoad() throws Exception {
+        List<Order> completed = List.of(order("D", 4, Order.OrderStatus.COMPLETED), order("E", 5, Order.OrderStatus.COMPLETED));
+        try (OrderStore store = OrderPersistence.INSTANCE.openStore("mvstore", tempDir)) {
+            store.saveState(new OrderPersistence.OrderState(List.of(), List.of(), completed));
+        }
+        try (OrderStore store = OrderPersistence.INSTANCE.openStore("mvstore", tempDir)) {
+            PagedOrderList lazy = (PagedOrderList) store.loadStateLazily().getCompletedOrders();
+            assertEquals(OrderSummary.Companion.of(completed), lazy.getSummary());
+            assertFalse(lazy.isLoaded(0), "The summary shouldn't need the orders parsed");
+
+            // Saving other lists keeps it
+            store.saveState(sampleState(), Set.of(Order.OrderStatus.PENDING));
+            assertEquals(OrderSummary.Companion.of(completed), ((PagedOrderList) store.loadStateLazily().getCompletedOrders()).getSummary());
+        }
+    }
+
+    private List<Order> completedWithIds(long firstDate, long lastDate) {
+        List<Order> orders = new ArrayList<>();
+        for (long date = firstDate; date <= lastDate; date++) {
+            Order order = order("C" + date, date, Order.OrderStatus.COMPLETED);
+            order.setId(100 + date);
+            orders.add(order);
+        }
+        return orders;
+    }
+
+    private List<Long> ids(List<Order> orders) {
+        return orders.stream().map(Order::getId).toList();
+    }
+
+    @Test
+    void testMVStoreSavesLazyListWithoutDecodingIt() throws Exception {
+        try (OrderStore store = OrderPersistence.INSTANCE.openStore("mvstore", tempDir)) {
+            store.saveState(new OrderPersistence.OrderState(List.of(), List.of(), completedWithIds(1, 5)));
+        }
+        try (OrderStore store = OrderPersistence.INSTANCE.openStore("mvstore", tempDir)) {
+            PagedOrderList completed = (PagedOrderList) store.loadStateLazily().getCompletedOrders();
+            completed.remove(0);
+            completed.add(completedWithIds(6, 6).get(0));
+            store.saveState(new OrderPersistence.OrderState(List.of(), List.of(), completed), Set.of(Order.OrderStatus.COMPLETED));
+            assertFalse(completed.isLoaded(1), "Orders the list hasn't loaded are stored already");
+        }
+        try (OrderStore store = OrderPersistence.INSTANCE.openStore("mvstore", tempDir)) {
+            List<Order> expected = completedWithIds(2, 6);
+            assertEquals(OrderSummary.Companion.of(expected), ((PagedOrderList) store.loadStateLazily().getCompletedOrders()).getSummary());
+            assertEquals(ids(expected), ids(store.loadState().getCompletedOrders()));
+        }
+    }
+
+    @Test
+    void testMVStoreFindsOrdersByIdAndDate() throws Exception {
+        try (MVStoreOrderStore store = new MVStoreOrderStore(tempDir.resolve("orders.mv"))) {
+            List<Order> completed = new ArrayList<>(completedWithIds(1, 5));
+            Collections.reverse(completed);
+            store.saveState(new OrderPersistence.OrderState(List.of(), List.of(), completed));
+
+            assertEquals("C3", store.findOrder(Order.OrderStatus.COMPLETED, 103).getType());
+            assertNull(store.findOrder(Order.OrderStatus.PENDING, 103));
+
+            List<Long> dates = new ArrayList<>();
+            store.forEachOrderBetween(Order.OrderStatus.COMPLETED, 2, 5, o -> {
+                dates.add(o.getOrder_date());
+                return kotlin.Unit.INSTANCE;
+            });
+            assertEquals(List.of(2L, 3L, 4L), dates);
+            assertEquals(ids(completedWithIds(1, 5)), ids(store.loadState().getCompletedOrders()), "Lists load in date order");
+        }
+    }
+
+    // Saves only the pending list; the completed list passed in must not reach the store
+    private void checkPartialSave(OrderStore store) {
+        store.saveState(sampleState());
+        OrderPersistence.OrderState changed = new OrderPersistence.OrderState(
+                List.of(order("D", 4, Order.OrderStatus.PENDING)),
+                sampleState().getInProgressOrders(),
+                List.of(order("Not saved", 5, Order.OrderStatus.COMPLETED)));
+        store.saveState(changed, Set.of(Order.OrderStatus.PENDING));
+
+        OrderPersistence.OrderState loaded = store.loadState();
+        assertEquals(changed.getPendingOrders(), loaded.getPendingOrders());
+        assertEquals(1, loaded.getInProgressOrders().size());
+        assertTrue(loaded.getCompletedOrders().isEmpty());
+    }
+
+    @Test
+    void testFileStoreRewritesOnlyChangedLists() throws Exception {
+        try (OrderStore store = OrderPersistence.INSTANCE.openStore("json", tempDir)) {
+            checkPartialSave(store);
+        }
+        Path state = tempDir.resolve("orders_state");
+        assertTrue(Files.exists(state.resolve("pending-000002")));
+        assertTrue(Files.exists(state.resolve("in_progress-000001")), "Unchanged lists keep their file");
+        assertTrue(Files.exists(state.resolve("completed-000001")));
+        assertFalse(Files.exists(state.resolve("completed-000002")));
+    }
+
+    @Test
+    void testMVStoreWritesOnlyChangedLists() throws Exception {
+        try (OrderStore store = OrderPersistence.INSTANCE.openStore("mvstore", tempDir)) {
+            checkPartialSave(store);
+        }
+    }
+
+    @Test
+    void testFileStoreReadsAndRetiresSingleStateFile() throws Exception {
+        new SnapshotFile(tempDir.resolve("orders_state.json")).write(
+                new ObjectMapper().writeValueAsBytes(sampleState()), false);
+
+        try (OrderStore store = OrderPersistence.INSTANCE.openStore("json", tempDir)) {
+            assertTrue(store.hasState());
+            OrderPersistence.OrderState loaded = store.loadState();
+            assertEquals(2, loaded.getPendingOrders().size());
+
+            store.saveState(loaded, Set.of(Order.OrderStatus.PENDING));
+            assertFalse(Files.exists(tempDir.resolve("orders_state.json")));
+            assertTrue(Files.exists(tempDir.resolve("orders_state.json.migrated")));
+            assertEquals(1, store.loadState().getInProgressOrders().size(), "Lists missing from the new layout are written too");
+        }
+    }
+
+    @Test
+    void testClearingFileStoreKeepsSingleStateFile() throws Exception {
+        new SnapshotFile(tempDir.resolve("orders_state.json")).write(
+                new ObjectMapper().writeValueAsBytes(sampleState()), false);
+
+        try (OrderStore store = OrderPersistence.INSTANCE.openStore("json", tempDir)) {
+            store.clearState();
+            assertFalse(store.hasState());
+            assertTrue(Files.exists(tempDir.resolve("orders_state.json.migrated")), "The old state file should be kept, not deleted");
+        }
+    }
+
+    @Test
+    void testFileStorePrunesExpiredCanceledSegments() throws Exception {
+        Path directory = tempDir.resolve("canceled_orders");
+        CanceledOrderArchive archive = new CanceledOrderArchive(directory, 512, 0);
+        for (int i = 1; i <= 40; i++) {
+            assertTrue(archive.append(List.of(order("X", i, Order.OrderStatus.PENDING))));
+        }
+        archive.close();
+
+        // Age the sealed segments; the active one holds the newest orders and isn't pruned
+        FileTime old = FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(60));
+        long active = 0;
+        try (var files = Files.list(directory)) {
+            for (Path segment : files.toList()) {
+                String name = segment.getFileName().toString();
+                if (name.endsWith(".gz")) {
+                    Files.setLastModifiedTime(segment, old);
+                } else if (name.endsWith(".ndjson")) {
+                    active = Files.readAllLines(segment).stream().filter(line -> !line.isBlank()).count();
+                }
+            }
+        }
+        assertTrue(active < 40, "Some segments should have been sealed");
+
+        OrderPersistence.INSTANCE.setCanceledRetentionDays(30);
+        try (OrderStore store = OrderPersistence.INSTANCE.openStore("json", tempDir)) {
+            assertEquals(active, store.canceledCount(), "Segments older than the retention period should be dropped");
+        } finally {
+            OrderPersistence.INSTANCE.setCanceledRetentionDays(0);
+        }
+    }
+
+    @Test
+    void testMigrationBetweenBackends() throws Exception {
+        try (OrderStore json = OrderPersistence.INSTANCE.openStore("json", tempDir.resolve("json"));
+             OrderStore mv = OrderPersistence.INSTANCE.openStore("mvstore", tempDir.resolve("mv"))) {
+            json.saveState(sampleState());
+            json.appendCanceled(List.of(order("X", 9, Order.OrderStatus.PENDING)));
+
+            OrderStoreMigration.Result result = OrderStoreMigration.INSTANCE.migrate(json, mv);
+
+            assertEquals(3, result.getOrders());
+            assertEquals(1, result.getCanceledOrders());
+            assertEquals(sampleState().getInProgressOrders(), mv.loadState().getInProgressOrders());
+            assertEquals(1, mv.canceledCount());
+        }
+    }
+
+    @Test
+    void testMigrationCarriesJournalRecords() throws Exception {
+        try (OrderStore json = OrderPersistence.INSTANCE.openStore("json", tempDir.resolve("json"));
+             OrderStore mv = OrderPersistence.INSTANCE.openStore("mvstore", tempDir.resolve("mv"));
+             OrderJournal journal = new OrderJournal(tempDir.resolve("json").resolve("orders_journal.ndjson"))) {
+            json.saveState(sampleState());
+            Order added = order("D", 4, Order.OrderStatus.PENDING);
+            assertTrue(journal.append(List.of(OrderJournal.Record.Companion.add(added))));
+
+            OrderStoreMigration.Result result = OrderStoreMigration.INSTANCE.migrate(json, mv, journal);
+
+            assertEquals(4, result.getOrders(), "The order only in the journal should be migrated too");
+            assertEquals(3, mv.loadState().getPendingOrders().size());
+            assertEquals("D", mv.loadState().getPendingOrders().get(2).getType());
+        }
+    }
+
+    private List<Order> canceled(int count) {
+        List<Order> orders = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            orders.add(order("X", i, Order.OrderStatus.PENDING));
+        }
+        return orders;
+    }
+
+    @Test
+    void testLegacyCanceledFileIsMigratedOnce() throws Exception {
+        Path legacy = tempDir.resolve("canceledOrders.json");
+        new ObjectMapper().writeValue(legacy.toFile(), canceled(3));
+        try (OrderStore store = OrderPersistence.INSTANCE.openStore("json", tempDir)) {
+            assertEquals(3, store.canceledCount());
+            store.appendCanceled(canceled(2));
+        }
+
+        // Restored by a checkout after the migration
+        new ObjectMapper().writeValue(legacy.toFile(), canceled(3));
+        try (OrderStore store = OrderPersistence.INSTANCE.openStore("json", tempDir)) {
+            assertEquals(5, store.canceledCount(), "The legacy file should not be appended again");
+        }
+    }
+
+    @Test
+    void testFailedCanceledMigrationKeepsTheArchive() throws Exception {
+        try (OrderStore store = OrderPersistence.INSTANCE.openStore("json", tempDir)) {
+            store.appendCanceled(canceled(25));
+        }
+
+        // More than one chunk of orders, then a damaged entry
+        String orders = new ObjectMapper().writeValueAsString(canceled(1500));
+        Path legacy = tempDir.resolve("canceledOrders.json");
+        Files.writeString(legacy, orders.substring(0, orders.length() - 1) + ", {\"order_date\": [}]");
+        try (OrderStore store = OrderPersistence.INSTANCE.openStore("json", tempDir)) {
+            assertEquals(25, store.canceledCount(), "Orders archived before the migration should survive it");
+        }
+        assertTrue(Files.exists(legacy));
+        assertFalse(Files.exists(tempDir.resolve("canceledOrders.json.migrated")));
+    }
+
+    @Test
+    void testUnknownBackendIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> OrderPersistence.INSTANCE.openStore("csv", tempDir));
+    }
+}
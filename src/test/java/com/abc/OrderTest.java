@@ -4,6 +4,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -51,6 +52,37 @@ class OrderTest {
         assertEquals(0.0, total, 0.001, "Total should be 0 when items list is empty");
     }
 
+    @Test
+    void testTotalIsCachedUntilItemsChange() {
+        // Arrange
+        order.setItems(Arrays.asList(item1, item2));
+        assertEquals(31.00, order.calculateTotal(), 0.001);
+        assertEquals(5L, order.itemUnits());
+
+        // Act: an in-place edit keeps the cached sums until they're refreshed
+        item1.setQuantity(4);
+        assertEquals(31.00, order.calculateTotal(), 0.001);
+        order.refreshTotals();
+
+        // Assert
+        assertEquals(56.00, order.calculateTotal(), 0.001, "Refreshed total should include the edit");
+        assertEquals(7L, order.itemUnits());
+        order.setItems(List.of(item2));
+        assertEquals(6.00, order.calculateTotal(), 0.001, "A new item list should be summed again");
+    }
+
+    @Test
+    void testTotalIsExactInCents() {
+        // Arrange: ten dimes, which don't add up to 1.0 as doubles
+        List<Item> dimes = new ArrayList<>();
+        for (int i = 0; i < 10; i++) dimes.add(new Item("Dime", 1, 0.10));
+        order.setItems(dimes);
+
+        // Assert
+        assertEquals(100L, order.totalCents());
+        assertEquals(1.0, order.calculateTotal());
+    }
+
     @Test
     void testIsValidWithValidOrder() {
         // Arrange
@@ -102,13 +134,29 @@ class OrderTest {
         order2.setType("Restaurant");
         order2.setSource("Test");
         order2.setOrder_date(1609459200000L);
-        order2.setItems(Arrays.asList(item2)); // Different item but same count
+        order2.setItems(Arrays.asList(item1.copy()));
 
         // Act & Assert
-        assertEquals(order1, order2, "Orders should be equal when type, source, date, and item count match");
+        assertEquals(order1, order2, "Orders should be equal when type, source, date, and items match");
         assertEquals(order1.hashCode(), order2.hashCode(), "Equal orders should have same hash code");
     }
 
+    @Test
+    void testNotEqualsWithDifferentItemsOrIds() {
+        // Arrange
+        Order order1 = new Order("Restaurant", 1609459200000L, Arrays.asList(item1), "Test", Order.OrderStatus.PENDING);
+        Order order2 = new Order("Restaurant", 1609459200000L, Arrays.asList(item2), "Test", Order.OrderStatus.PENDING);
+        Order order3 = new Order("Restaurant", 1609459200000L, Arrays.asList(item1.copy()), "Test", Order.OrderStatus.PENDING);
+        order1.setId(1L);
+        order3.setId(2L);
+
+        // Act & Assert
+        assertNotEquals(order1, order2, "Orders with the same item count but different items should not be equal");
+        assertNotEquals(order1, order3, "Different orders with the same content should not be equal");
+        assertTrue(order1.sameContentAs(order3), "Content comparison should ignore ids");
+        assertFalse(order1.sameContentAs(order2));
+    }
+
     @Test
     void testNotEquals() {
         // Arrange
@@ -0,0 +1,71 @@
+package com.abc;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class PagedOrderListTest {
+
+    private final List<Integer> loadedOffsets = new ArrayList<>();
+
+    private PagedOrderList list(int size, int pageSize) {
+        return new PagedOrderList(size, pageSize, (offset, limit) -> {
+            loadedOffsets.add(offset);
+            List<Order> page = new ArrayList<>();
+            for (int i = offset; i < offset + limit; i++) {
+                Order order = new Order();
+                order.setOrder_date(i);
+                page.add(order);
+            }
+            return page;
+        });
+    }
+
+    @Test
+    void testOnlyReadPagesAreLoaded() {
+        PagedOrderList orders = list(1000, 100);
+
+        assertEquals(1000, orders.size());
+        assertEquals(250L, orders.get(250).getOrder_date());
+        assertEquals(299L, orders.get(299).getOrder_date());
+        assertEquals(999L, orders.get(999).getOrder_date());
+
+        assertEquals(List.of(200, 900), loadedOffsets);
+        assertEquals(3, orders.loaded().size());
+    }
+
+    @Test
+    void testMutationsKeepPositions() {
+        PagedOrderList orders = list(300, 100);
+        Order first = orders.get(0);
+        Order added = new Order();
+        added.setOrder_date(5000);
+
+        orders.add(added);
+        assertTrue(orders.remove(first));
+        orders.remove(0);
+
+        assertEquals(299, orders.size());
+        assertEquals(2L, orders.get(0).getOrder_date());
+        assertEquals(299L, orders.get(297).getOrder_date());
+        assertSame(added, orders.get(298));
+        assertEquals(298, orders.indexOf(added));
+    }
+
+    @Test
+    void testCopyIsIndependentAndStaysLazy() {
+        PagedOrderList orders = list(300, 100);
+        Order first = orders.get(0);
+
+        PagedOrderList copy = orders.copy();
+        orders.clear();
+
+        assertEquals(300, copy.size());
+        assertSame(first, copy.get(0));
+        assertEquals(List.of(0), loadedOffsets);
+        assertEquals(150L, copy.get(150).getOrder_date());
+        assertEquals(List.of(0, 100), loadedOffsets);
+    }
+}
@@ -0,0 +1,91 @@
+package com.abc;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+class PersistenceWriterTest {
+
+    private OrderJournal.Record record(long date) {
+        Order order = new Order();
+        order.setOrder_date(date);
+        return OrderJournal.Record.Companion.add(order);
+    }
+
+    @Test
+    void testBurstIsCommittedAsOneGroup() {
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        PersistenceWriter writer = new PersistenceWriter(10_000, 1_000, (records, state) -> {
+            batchSizes.add(records.size());
+            return true;
+        });
+
+        for (int i = 0; i < 50; i++) {
+            writer.submit(List.of(record(i + 1)), new OrderPersistence.OrderState());
+        }
+        assertTrue(writer.flush(5_000));
+        writer.close();
+
+        assertEquals(List.of(50), batchSizes, "Queued changes should be written in one commit");
+        assertEquals(1L, writer.getCommitCount());
+    }
+
+    @Test
+    void testMaxBatchTriggersCommitWithoutFlush() throws Exception {
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        PersistenceWriter writer = new PersistenceWriter(60_000, 5, (records, state) -> {
+            batchSizes.add(records.size());
+            return true;
+        });
+
+        for (int i = 0; i < 5; i++) {
+            writer.submit(List.of(record(i + 1)), new OrderPersistence.OrderState());
+        }
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (writer.getCommitCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        writer.close();
+
+        assertEquals(5, (int) batchSizes.get(0));
+    }
+
+    @Test
+    void testLatestStateWins() {
+        List<OrderPersistence.OrderState> states = Collections.synchronizedList(new ArrayList<>());
+        PersistenceWriter writer = new PersistenceWriter(10_000, 1_000, (records, state) -> {
+            states.add(state);
+            return true;
+        });
+
+        Order order = new Order();
+        writer.submit(List.of(), new OrderPersistence.OrderState());
+        writer.submit(List.of(), new OrderPersistence.OrderState(List.of(order), List.of(), List.of()));
+        writer.flush(5_000);
+        writer.close();
+
+        assertEquals(1, states.size());
+        assertEquals(1, states.get(0).getPendingOrders().size());
+    }
+
+    @Test
+    void testFailedCommitIsReported() throws Exception {
+        PersistenceWriter writer = new PersistenceWriter(10_000, 1_000, (records, state) -> false);
+
+        CompletableFuture<Boolean> first = writer.submit(List.of(record(1)), new OrderPersistence.OrderState());
+        CompletableFuture<Boolean> second = writer.submit(List.of(record(2)), new OrderPersistence.OrderState());
+        writer.flush(5_000);
+        writer.close();
+
+        assertFalse(first.get(5, TimeUnit.SECONDS));
+        assertFalse(second.get(5, TimeUnit.SECONDS));
+        assertEquals(1L, writer.getFailedCommitCount());
+        assertEquals(0L, writer.getCommitCount());
+    }
+}
@@ -0,0 +1,76 @@
+package com.abc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+class PollingIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testNewFileIsReadyAfterItSettles() throws Exception {
+        // Arrange
+        PollingIndex index = new PollingIndex("*.{json,xml}");
+        Path file = tempDir.resolve("order.json");
+        Files.writeString(file, "{}");
+
+        // Act & Assert
+        PollingIndex.SweepResult first = index.sweep(tempDir, name -> false);
+        assertTrue(first.getReady().isEmpty(), "New file should settle for one sweep first");
+        assertEquals(1, first.getChanged());
+        assertTrue(first.hasActivity());
+
+        PollingIndex.SweepResult second = index.sweep(tempDir, name -> false);
+        assertEquals(List.of(file), second.getReady(), "Unchanged file should be ready on the next sweep");
+
+        PollingIndex.SweepResult third = index.sweep(tempDir, name -> false);
+        assertTrue(third.getReady().isEmpty(), "Handled files should not be reported again");
+        assertFalse(third.hasActivity(), "Idle sweep should report no activity");
+        assertEquals(1, third.getScanned());
+    }
+
+    @Test
+    void testChangedAndRemovedFiles() throws Exception {
+        // Arrange
+        PollingIndex index = new PollingIndex("*.{json,xml}");
+        Path file = tempDir.resolve("order.xml");
+        Files.writeString(file, "<orders/>");
+        index.sweep(tempDir, name -> false);
+        index.sweep(tempDir, name -> false);
+
+        // Act - rewrite with a different size and mtime
+        Files.writeString(file, "<orders></orders>");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+        PollingIndex.SweepResult changed = index.sweep(tempDir, name -> false);
+        PollingIndex.SweepResult ready = index.sweep(tempDir, name -> false);
+
+        Files.delete(file);
+        PollingIndex.SweepResult removed = index.sweep(tempDir, name -> false);
+
+        // Assert
+        assertEquals(1, changed.getChanged(), "Rewrite should be detected");
+        assertEquals(List.of(file), ready.getReady(), "Rewritten file should be reported again once settled");
+        assertEquals(1, removed.getRemoved(), "Deleted file should drop out of the index");
+        assertEquals(0, index.getSize());
+    }
+
+    @Test
+    void testExcludedFilesAreSkipped() throws Exception {
+        // Arrange
+        PollingIndex index = new PollingIndex("*.{json,xml}");
+        Files.writeString(tempDir.resolve("orders_out.json"), "{}");
+
+        // Act
+        PollingIndex.SweepResult sweep = index.sweep(tempDir, name -> name.equals("orders_out.json"));
+
+        // Assert
+        assertEquals(0, sweep.getScanned(), "Excluded files should not be indexed");
+    }
+}
@@ -0,0 +1,65 @@
+package com.abc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+class SnapshotFileTest {
+
+    @TempDir
+    Path tempDir;
+
+    private String read(SnapshotFile file) {
+        return file.read(bytes -> new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testWriteAndReadBack() {
+        SnapshotFile file = new SnapshotFile(tempDir.resolve("state.json"));
+        file.write("{\"a\":1}".getBytes(StandardCharsets.UTF_8), true);
+
+        assertEquals("{\"a\":1}", read(file));
+        assertFalse(Files.exists(tempDir.resolve("state.json.tmp")));
+    }
+
+    @Test
+    void testCorruptSnapshotFallsBackToPreviousGeneration() throws Exception {
+        Path path = tempDir.resolve("state.json");
+        SnapshotFile file = new SnapshotFile(path);
+        file.write("first".getBytes(StandardCharsets.UTF_8), false);
+        file.write("second".getBytes(StandardCharsets.UTF_8), false);
+        assertEquals("second", read(file));
+
+        // Flip a byte in the live file so its checksum no longer matches
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[0] = 'X';
+        Files.write(path, bytes);
+
+        assertEquals("first", read(file));
+    }
+
+    @Test
+    void testUnfinishedTempFileIsIgnored() throws Exception {
+        Path path = tempDir.resolve("state.json");
+        SnapshotFile file = new SnapshotFile(path);
+        file.write("good".getBytes(StandardCharsets.UTF_8), false);
+
+        // Crash after the live file was moved aside but before the new one was complete
+        Files.move(path, tempDir.resolve("state.json.prev"), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        Files.writeString(tempDir.resolve("state.json.tmp"), "{\"half");
+
+        assertEquals("good", read(file));
+    }
+
+    @Test
+    void testLegacyFileWithoutTrailerIsRead() throws Exception {
+        Path path = tempDir.resolve("state.json");
+        Files.writeString(path, "{\"legacy\":true}");
+
+        assertEquals("{\"legacy\":true}", read(new SnapshotFile(path)));
+    }
+}
@@ -0,0 +1,110 @@
+package com.abc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+class StreamingJsonOrderImporterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private List<Order> read(String fileName, String content) throws IOException {
+        Path file = tempDir.resolve(fileName);
+        Files.writeString(file, content);
+        return StreamingJsonOrderImporter.INSTANCE.readAllOrders(file.toString());
+    }
+
+    @Test
+    void testReadsWrappedOrder() throws IOException {
+        // Act
+        List<Order> orders = read("wrapped.json", """
+                {
+                  "order": {
+                    "type": "pickup",
+                    "order_date": 1515354694451,
+                    "items": [ { "name": "Hot Dog", "quantity": 2, "price": 8.99 } ],
+                    "source": "Grubhub",
+                    "status": "PENDING"
+                  }
+                }
+                """);
+
+        // Assert
+        assertEquals(1, orders.size(), "Should read the wrapped order");
+        Order order = orders.get(0);
+        assertEquals("pickup", order.getTypeOrDefault(), "Order type should match");
+        assertEquals("Grubhub", order.getSource(), "Order source should match");
+        assertEquals(1515354694451L, order.getOrder_date(), "Order date should match");
+        assertEquals(8.99, order.getItemsOrEmpty().get(0).getPrice(), 0.001, "Item price should match");
+    }
+
+    @Test
+    void testReadsArrayOfWrappedAndBareOrders() throws IOException {
+        // Act
+        List<Order> orders = read("array.json", """
+                [
+                  { "order": { "type": "togo", "order_date": 1, "items": [ { "name": "A", "quantity": 1, "price": 1.0 } ] } },
+                  { "type": "delivery", "order_date": 2, "items": [ { "name": "B", "quantity": 1, "price": 2.0 } ] }
+                ]
+                """);
+
+        // Assert
+        assertEquals(2, orders.size(), "Should read both array entries");
+        assertEquals("togo", orders.get(0).getTypeOrDefault(), "Wrapped entry should be unwrapped");
+        assertEquals("delivery", orders.get(1).getTypeOrDefault(), "Bare entry should be read directly");
+    }
+
+    @Test
+    void testReadsNewlineDelimitedOrdersAndSkipsInvalidOnes() throws IOException {
+        // Act
+        List<Order> orders = read("batch.json",
+                "{\"order\": {\"type\": \"A\", \"order_date\": 1, \"items\": [{\"name\": \"X\", \"quantity\": 1, \"price\": 1.0}]}}\n" +
+                "{\"type\": \"B\", \"order_date\": 0, \"items\": []}\n" +
+                "{\"type\": \"C\", \"order_date\": 3, \"extra\": {\"nested\": [1, 2]}, \"items\": [{\"name\": \"Y\", \"quantity\": \"2\", \"price\": \"4.5\"}]}\n");
+
+        // Assert
+        assertEquals(2, orders.size(), "Invalid order should be skipped");
+        assertEquals("A", orders.get(0).getTypeOrDefault());
+        Item item = orders.get(1).getItemsOrEmpty().get(0);
+        assertEquals(2, item.getQuantity(), "String quantity should be coerced");
+        assertEquals(450L, item.getPriceCents(), "String price should be coerced");
+        assertEquals(0, (int) orders.get(0).getSourceIndex());
+        assertEquals(2, (int) orders.get(1).getSourceIndex(), "Skipped entries should still count toward the position");
+    }
+
+    @Test
+    void testForEachOrderStreamsIncrementally() throws IOException {
+        // Arrange
+        Path file = tempDir.resolve("stream.json");
+        Files.writeString(file,
+                "{\"type\": \"A\", \"order_date\": 1, \"items\": [{\"name\": \"X\", \"quantity\": 1, \"price\": 1.0}]}\n" +
+                "{\"type\": \"B\", \"order_date\": 2, \"items\": [{\"name\": \"Y\", \"quantity\": 1, \"price\": 1.0}]}\n");
+        List<String> seen = new ArrayList<>();
+
+        // Act
+        StreamingJsonOrderImporter.INSTANCE.forEachOrder(file.toString(), order -> {
+            seen.add(order.getTypeOrDefault());
+            return kotlin.Unit.INSTANCE;
+        });
+
+        // Assert
+        assertEquals(List.of("A", "B"), seen, "Orders should be handed out in file order");
+    }
+
+    @Test
+    void testMalformedFileImportsNothing() throws IOException {
+        // Act
+        List<Order> orders = read("truncated.json",
+                "[{\"type\": \"A\", \"order_date\": 1, \"items\": [{\"name\": \"X\", \"quantity\": 1, \"price\": 1.0}]}, {\"type\": ");
+
+        // Assert
+        assertTrue(orders.isEmpty(), "Half-written files should not import any orders");
+    }
+}
@@ -139,4 +139,73 @@ class XmlOrderImporterTest {
         // Assert
         assertEquals(0, results.size(), "Should return empty list for non-existent directory");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testStreamingImporterMatchesDomForTagAliases() throws IOException {
+        // Arrange
+        String aliasXml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<orders>\n" +
+                "    <order>\n" +
+                "        <order_type>Delivery</order_type>\n" +
+                "        <vendor>Alias Vendor</vendor>\n" +
+                "        <date>2021-01-01</date>\n" +
+                "        <products>\n" +
+                "            <product><product_name>Taco</product_name><qty>3</qty><unit_price>$2.50</unit_price></product>\n" +
+                "            <item><name>Salsa</name><count>1</count><cost>0.75</cost></item>\n" +
+                "        </products>\n" +
+                "    </order>\n" +
+                "    <order>\n" +
+                "        <type>Pickup</type>\n" +
+                "        <source>Second</source>\n" +
+                "        <order_date>1609459200000</order_date>\n" +
+                "    </order>\n" +
+                "</orders>";
+        Path xmlFile = tempDir.resolve("alias_orders.xml");
+        Files.writeString(xmlFile, aliasXml);
+
+        // Act
+        OrderIn.INSTANCE.setStreamingXml(false);
+        OrderIn.ImportResult dom = OrderIn.INSTANCE.importFromXml(xmlFile.toString());
+        OrderIn.INSTANCE.setStreamingXml(true);
+        OrderIn.ImportResult stax = OrderIn.INSTANCE.importFromXml(xmlFile.toString());
+
+        // Assert
+        assertEquals(2, stax.getSuccessCount(), "Should stream both orders");
+        assertSameContent(dom.getImportedOrders(), stax.getImportedOrders(), "StAX and DOM imports should match");
+
+        Order first = stax.getImportedOrders().get(0);
+        assertEquals("Delivery", first.getTypeOrDefault(), "Type alias should be used");
+        assertEquals("Alias Vendor", first.getSource(), "Source alias should be used");
+        assertEquals("Salsa", first.getItemsOrEmpty().get(0).getName(), "<item> tags come before <product> tags");
+        assertEquals(3, first.getItemsOrEmpty().get(1).getQuantity(), "Quantity alias should be used");
+        assertEquals(2.50, first.getItemsOrEmpty().get(1).getPrice(), 0.001, "Price alias should be cleaned and parsed");
+
+        Order second = stax.getImportedOrders().get(1);
+        assertEquals(1609459200000L, second.getOrder_date(), "Epoch millis date should be parsed");
+        assertEquals("Unknown Item", second.getItemsOrEmpty().get(0).getName(), "Order without items gets a default item");
+        assertEquals(1, (int) second.getSourceIndex(), "Order element position should be recorded");
+        assertEquals(1, (int) dom.getImportedOrders().get(1).getSourceIndex());
+    }
+
+    @Test
+    void testStreamingImporterRejectsMalformedFile() throws IOException {
+        // Arrange
+        Path xmlFile = tempDir.resolve("truncated.xml");
+        Files.writeString(xmlFile, validXmlContent.substring(0, validXmlContent.length() - 20));
+
+        // Act
+        OrderIn.ImportResult result = OrderIn.INSTANCE.importFromXml(xmlFile.toString());
+
+        // Assert
+        assertEquals(0, result.getSuccessCount(), "Half-written files should not import any orders");
+        assertTrue(result.hasErrors(), "Malformed XML should be reported");
+    }
+
+    // Importers give each order its own id, so runs are compared by content
+    private static void assertSameContent(List<Order> expected, List<Order> actual, String message) {
+        assertEquals(expected.size(), actual.size(), message);
+        for (int i = 0; i < expected.size(); i++) {
+            assertTrue(expected.get(i).sameContentAs(actual.get(i)), message + ": " + expected.get(i) + " vs " + actual.get(i));
+        }
+    }
+}